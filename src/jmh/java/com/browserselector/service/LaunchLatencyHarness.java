@@ -0,0 +1,249 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import com.browserselector.model.UrlRule;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures click-to-launch latency: from starting {@code Main} with a URL to
+ * the browser process running.
+ *
+ * The "browser" is a shell script that appends its start time and argv to a
+ * log file. The harness gives each run a scratch home directory holding a
+ * database with that stub and one rule, starts {@code Main} with
+ * {@code browserswitch.trace} on, and lines up the trace marks against its
+ * own start time and the stub's. Two scenarios run: a URL matching the rule,
+ * and one matching nothing, where the selector picks the stub through the
+ * {@code browserswitch.selector.autoSelect} hook. Without a display the
+ * selector runs headless and skips building its window; run under
+ * {@code xvfb-run} to include it.
+ *
+ * Needs Linux: the stub uses GNU date for nanosecond timestamps.
+ *
+ * <pre>
+ * mvn -Pbenchmarks -DskipTests test-compile exec:exec@launch-latency [-Dlatency.args="--runs 100"]
+ * </pre>
+ */
+public final class LaunchLatencyHarness {
+
+    private static final String STUB_ID = "stub";
+    private static final String RULE_URL = "https://docs.example.com/guide";
+    private static final String SELECTOR_URL = "https://unmatched.example.org/page";
+    private static final Duration RUN_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final String[] STEPS = {"jvmStart", "dbOpen", "matching", "route", "spawn", "total"};
+
+    private record Run(Map<String, Long> micros) {}
+
+    private final Path home;
+    private final Path stubLog;
+    private final Path mainLog;
+    private final boolean headless;
+
+    private LaunchLatencyHarness(Path home, boolean headless) {
+        this.home = home;
+        this.stubLog = home.resolve("stub.log");
+        this.mainLog = home.resolve("main.log");
+        this.headless = headless;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = 30;
+        int warmup = 3;
+        var out = Path.of("target", "launch-latency.json");
+        var headless = System.getenv("DISPLAY") == null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--runs" -> runs = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--out" -> out = Path.of(args[++i]);
+                case "--headless" -> headless = true;
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        var home = Files.createTempDirectory("browserswitch-latency");
+        var harness = new LaunchLatencyHarness(home, headless);
+        harness.setUp();
+
+        var results = new LinkedHashMap<String, List<Run>>();
+        results.put("rule", harness.measure(RULE_URL, false, warmup, runs));
+        results.put("selector", harness.measure(SELECTOR_URL, true, warmup, runs));
+
+        report(results, headless);
+        writeJson(out, results, headless);
+        System.out.println("Results written to " + out.toAbsolutePath());
+        deleteTree(home);
+    }
+
+    private void setUp() throws IOException {
+        var stub = home.resolve("stub-browser");
+        Files.writeString(stub, """
+            #!/bin/sh
+            echo "$(date +%%s%%N) $*" >> '%s'
+            """.formatted(stubLog));
+        Files.setPosixFilePermissions(stub, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        var dataDir = Files.createDirectories(home.resolve(".browserselector"));
+        var db = new DatabaseService(dataDir.resolve("browser_selector.db"));
+        try {
+            db.saveBrowser(new Browser(STUB_ID, "Stub Browser", stub));
+            db.saveRule(new UrlRule("*.example.com", STUB_ID));
+        } finally {
+            db.close();
+        }
+    }
+
+    private List<Run> measure(String url, boolean selector, int warmup, int runs) throws Exception {
+        var measured = new ArrayList<Run>();
+        for (int i = 0; i < warmup + runs; i++) {
+            var run = runOnce(url, selector);
+            if (i >= warmup) {
+                measured.add(run);
+            }
+        }
+        return measured;
+    }
+
+    private Run runOnce(String url, boolean selector) throws Exception {
+        Files.deleteIfExists(stubLog);
+
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Duser.home=" + home);
+        command.add("-Dbrowserswitch.trace=true");
+        if (selector) {
+            command.add("-Dbrowserswitch.selector.autoSelect=" + STUB_ID);
+        }
+        if (headless) {
+            command.add("-Djava.awt.headless=true");
+        }
+        command.add("com.browserselector.Main");
+        command.add(url);
+
+        // To a file rather than a pipe, so a Main that hangs can't block the read and the timeout still fires
+        var builder = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(mainLog.toFile());
+        // Keep the data directory under the scratch home
+        builder.environment().remove("APPDATA");
+
+        var started = epochMicros(Instant.now());
+        var process = builder.start();
+        if (!process.waitFor(RUN_TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+            throw new IllegalStateException("Main didn't exit within " + RUN_TIMEOUT.toSeconds() + " s:\n"
+                + new String(Files.readAllBytes(mainLog)));
+        }
+        var output = new String(Files.readAllBytes(mainLog));
+
+        var marks = new HashMap<String, Long>();
+        for (var line : output.lines().toList()) {
+            var parts = line.split(" ");
+            if (parts.length == 4 && parts[1].equals("trace")) {
+                marks.put(parts[2], Long.parseLong(parts[3]));
+            }
+        }
+        var browserStarted = stubStart(url);
+        if (browserStarted < 0 || !marks.keySet().containsAll(List.of("main", "db", "matched", "launch"))) {
+            throw new IllegalStateException("Incomplete run:\n" + output);
+        }
+
+        var micros = new LinkedHashMap<String, Long>();
+        micros.put("jvmStart", marks.get("main") - started);
+        micros.put("dbOpen", marks.get("db") - marks.get("main"));
+        micros.put("matching", marks.get("matched") - marks.get("db"));
+        micros.put("route", marks.get("launch") - marks.get("matched"));
+        micros.put("spawn", browserStarted - marks.get("launch"));
+        micros.put("total", browserStarted - started);
+        return new Run(micros);
+    }
+
+    // The stub may still be writing when Main exits
+    private long stubStart(String url) throws Exception {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (Files.exists(stubLog)) {
+                for (var line : Files.readAllLines(stubLog)) {
+                    var space = line.indexOf(' ');
+                    if (space > 0 && line.endsWith(url)) {
+                        return Long.parseLong(line.substring(0, space)) / 1_000;
+                    }
+                }
+            }
+            Thread.sleep(5);
+        }
+        return -1;
+    }
+
+    private static long epochMicros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
+    }
+
+    private static double percentile(List<Run> runs, String step, double p) {
+        var values = runs.stream().map(run -> run.micros().get(step)).sorted(Comparator.naturalOrder()).toList();
+        int rank = (int) Math.ceil(p / 100 * values.size());
+        return values.get(Math.max(0, rank - 1)) / 1_000.0;
+    }
+
+    private static void report(Map<String, List<Run>> results, boolean headless) {
+        System.out.printf(Locale.ROOT, "%nClick-to-launch latency in ms (%s)%n", headless ? "headless" : "with display");
+        for (var scenario : results.entrySet()) {
+            System.out.printf(Locale.ROOT, "%n%-10s %10s %10s %10s%n", scenario.getKey(), "p50", "p95", "p99");
+            for (var step : STEPS) {
+                System.out.printf(Locale.ROOT, "%-10s %10.1f %10.1f %10.1f%n", step,
+                    percentile(scenario.getValue(), step, 50),
+                    percentile(scenario.getValue(), step, 95),
+                    percentile(scenario.getValue(), step, 99));
+            }
+        }
+    }
+
+    private static void writeJson(Path out, Map<String, List<Run>> results, boolean headless) throws IOException {
+        var json = new StringBuilder("{\n  \"headless\": ").append(headless).append(",\n  \"scenarios\": {");
+        var firstScenario = true;
+        for (var scenario : results.entrySet()) {
+            json.append(firstScenario ? "\n" : ",\n");
+            firstScenario = false;
+            json.append("    \"").append(scenario.getKey()).append("\": {\n");
+            json.append("      \"runs\": ").append(scenario.getValue().size());
+            for (var step : STEPS) {
+                json.append(String.format(Locale.ROOT,
+                    ",%n      \"%s\": {\"p50\": %.3f, \"p95\": %.3f, \"p99\": %.3f}", step,
+                    percentile(scenario.getValue(), step, 50),
+                    percentile(scenario.getValue(), step, 95),
+                    percentile(scenario.getValue(), step, 99)));
+            }
+            json.append("\n    }");
+        }
+        json.append("\n  },\n  \"unit\": \"ms\"\n}\n");
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        Files.writeString(out, json);
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (var files = Files.walk(dir)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Setting;
+import com.browserselector.model.UrlRule;
+import com.browserselector.util.ParsedUrl;
+import com.browserselector.util.RuleCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rule lookup through {@link BrowserRepository#findMatchingRule}, the path
+ * every link click takes, against a SQLite database holding the generated
+ * rule set. Also measures what a rule edit costs: re-reading the rules
+ * table and rebuilding the matcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleMatchingBenchmark {
+
+    private static final int URLS = 4096;
+
+    @Param({"10", "1000", "10000", "100000"})
+    public int rules;
+
+    @Param({"index", "automaton"})
+    public String matcher;
+
+    private Path dir;
+    private DatabaseService db;
+    private BrowserRepository repository;
+    private List<UrlRule> ruleList;
+    private String[] urls;
+    private ParsedUrl[] parsed;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int next() {
+            return next++ & (URLS - 1);
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        var corpus = new RuleCorpus(RuleCorpus.SEED);
+        ruleList = corpus.rules(rules);
+        urls = corpus.urls(URLS).toArray(String[]::new);
+        parsed = new ParsedUrl[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            parsed[i] = ParsedUrl.parse(urls[i]);
+        }
+
+        dir = Files.createTempDirectory("browserswitch-bench");
+        db = new DatabaseService(dir.resolve("bench.db"));
+        db.saveRules(ruleList);
+        db.saveSetting(Setting.toggle(Setting.Toggle.AUTOMATON_MATCHING, matcher.equals("automaton")));
+        repository = new BrowserRepository(db);
+        repository.getRuleMatcher();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        db.close();
+        try (var files = Files.walk(dir)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public Optional<UrlRule> findMatchingRule(Cursor cursor) {
+        return repository.findMatchingRule(urls[cursor.next()]);
+    }
+
+    @Benchmark
+    public Optional<UrlRule> findMatchingRuleParsed(Cursor cursor) {
+        return repository.findMatchingRule(parsed[cursor.next()]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public RuleMatcher buildMatcher() {
+        return matcher.equals("automaton") ? RuleAutomaton.build(ruleList) : RuleIndex.build(ruleList);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<UrlRule> loadRules() {
+        return db.getAllRules();
+    }
+}
@@ -0,0 +1,83 @@
+package com.browserselector.util;
+
+import com.browserselector.model.UrlRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pattern against one URL, per pattern shape. {@code matches} is the
+ * uncached {@link PatternMatcher#matches} call (compile, parse, match);
+ * {@code compiledMatches} is the per-rule cost inside the rule index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternMatcherBenchmark {
+
+    private static final int URLS = 1024;
+
+    @Param({"plain", "subdomain", "path", "hostWildcard", "worstCase"})
+    public String shape;
+
+    private String[] patterns;
+    private PatternMatcher.Compiled[] compiled;
+    private String[] urls;
+    private ParsedUrl[] parsed;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        var corpus = new RuleCorpus(RuleCorpus.SEED);
+        var rules = corpus.rules(4096);
+        patterns = rules.stream()
+            .map(UrlRule::pattern)
+            .filter(this::hasShape)
+            .limit(URLS)
+            .toArray(String[]::new);
+        compiled = new PatternMatcher.Compiled[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            compiled[i] = PatternMatcher.compile(patterns[i]);
+        }
+        urls = corpus.urls(URLS).toArray(String[]::new);
+        parsed = new ParsedUrl[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            parsed[i] = ParsedUrl.parse(urls[i]);
+        }
+    }
+
+    private boolean hasShape(String pattern) {
+        return switch (shape) {
+            case "plain" -> !pattern.contains("*") && !pattern.contains("/");
+            case "subdomain" -> pattern.startsWith("*.");
+            case "path" -> pattern.contains("/");
+            case "hostWildcard" -> pattern.contains(".*.");
+            default -> pattern.startsWith("*") && !pattern.startsWith("*.");
+        };
+    }
+
+    @Benchmark
+    public boolean matches() {
+        int i = next++ & (URLS - 1);
+        return PatternMatcher.matches(patterns[i % patterns.length], urls[i]);
+    }
+
+    @Benchmark
+    public boolean compiledMatches() {
+        int i = next++ & (URLS - 1);
+        return compiled[i % compiled.length].matches(parsed[i]);
+    }
+}
@@ -0,0 +1,58 @@
+package com.browserselector.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Host and path extraction over generated URLs ({@code typical}) and ones
+ * that take the URI fallback ({@code unusual}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlUtilsBenchmark {
+
+    @Param({"typical", "unusual"})
+    public String urlSet;
+
+    private String[] urls;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        var list = urlSet.equals("typical")
+            ? new RuleCorpus(RuleCorpus.SEED).urls(1024)
+            : RuleCorpus.unusualUrls();
+        urls = list.toArray(String[]::new);
+    }
+
+    private String nextUrl() {
+        var url = urls[next];
+        next = next + 1 == urls.length ? 0 : next + 1;
+        return url;
+    }
+
+    @Benchmark
+    public String extractDomain() {
+        return UrlUtils.extractDomain(nextUrl());
+    }
+
+    @Benchmark
+    public String extractPath() {
+        return UrlUtils.extractPath(nextUrl());
+    }
+}
@@ -1,162 +1,211 @@
 package com.browserselector;
 
 import com.browserselector.model.Browser;
-import com.browserselector.model.Setting;
 import com.browserselector.service.BrowserDetector;
-import com.browserselector.service.DatabaseService;
-import com.browserselector.ui.SelectorDialog;
-import com.browserselector.ui.SettingsFrame;
+import com.browserselector.service.BrowserRepository;
+import com.browserselector.service.BrowserWatchService;
+import com.browserselector.service.BrowserLauncher;
+import com.browserselector.service.DaemonService;
+import com.browserselector.service.ScanSnapshot;
+import com.browserselector.ui.UiLauncher;
+import com.browserselector.util.AppPaths;
+import com.browserselector.util.Events;
+import com.browserselector.util.LaunchTrace;
+import com.browserselector.util.Metrics;
 import com.browserselector.util.UrlUtils;
-import com.formdev.flatlaf.FlatDarkLaf;
-import com.formdev.flatlaf.FlatLightLaf;
 
-import javax.swing.*;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
 
     private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
 
     public static void main(String[] args) {
-        // Set up look and feel
-        setupTheme();
+        LaunchTrace.mark("main");
+        var record = args.length > 0 && args[0].equals("--record");
+        if (record) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+            startRecording();
+        }
+        var command = args.length == 0 ? "--settings" : args[0];
 
-        // Initialize database
-        var db = DatabaseService.getInstance();
+        if (command.equals("--daemon")) {
+            runDaemon();
+            return;
+        }
 
-        // First run: scan for browsers
-        if (db.getAllBrowsers().isEmpty()) {
-            if (IS_WINDOWS) {
-                var detector = new BrowserDetector();
-                var browsers = detector.detectBrowsers();
-                for (var browser : browsers) {
-                    db.saveBrowser(browser);
-                }
-            } else {
-                // Demo mode for non-Windows (testing)
-                addDemoBrowsers(db);
+        if (command.equals("--stats")) {
+            System.out.print(Metrics.getInstance().aggregate().format());
+            return;
+        }
+
+        if (command.equals("--explain")) {
+            if (args.length < 2) {
+                System.err.println("Usage: --explain <url>");
+                return;
             }
+            System.out.print(BrowserRepository.getInstance().explainMatch(normalize(args[1])).format());
+            return;
         }
 
-        SwingUtilities.invokeLater(() -> {
-            if (args.length == 0 || args[0].equals("--settings")) {
-                // Open settings window
-                new SettingsFrame().setVisible(true);
-            } else {
-                // URL was passed - check for matching rule or show selector
-                var url = args[0];
-                System.out.println("[BrowserSwitch] Received URL: " + url);
-
-                // Validate URL
-                if (!UrlUtils.isValidUrl(url)) {
-                    url = UrlUtils.normalizeUrl(url);
-                    System.out.println("[BrowserSwitch] Normalized URL: " + url);
-                }
+        if (command.equals("--daemon-stop")) {
+            if (!DaemonService.forward(DaemonService.STOP)) {
+                System.out.println("[BrowserSwitch] No daemon running");
+            }
+            return;
+        }
 
-                // Check for existing rule
-                var matchingRule = db.findMatchingRule(url);
-                if (matchingRule.isPresent()) {
-                    var rule = matchingRule.get();
-                    System.out.println("[BrowserSwitch] Found matching rule: " + rule.pattern() + " -> " + rule.browserId());
-                    var browser = db.getBrowser(rule.browserId());
-
-                    if (browser.isPresent()) {
-                        System.out.println("[BrowserSwitch] Launching: " + browser.get().name());
-                        launchBrowser(browser.get(), url);
-                        return;
-                    }
-                }
+        // Hand off to a resident daemon if one is running, unless recording this process
+        var daemonCommand = command.equals("--settings")
+            ? DaemonService.SETTINGS
+            : DaemonService.OPEN + " " + command;
+        var forward = Events.phase("forward");
+        var forwarded = !record && DaemonService.forward(daemonCommand);
+        forward.done();
+        if (forwarded) {
+            System.out.println("[BrowserSwitch] Forwarded to daemon");
+            return;
+        }
 
-                // No matching rule - show selector
-                System.out.println("[BrowserSwitch] No matching rule, showing selector dialog...");
-                var dialog = new SelectorDialog(url);
-                dialog.setVisible(true);
-            }
-        });
+        // Initialize database
+        var database = Events.phase("database");
+        var db = BrowserRepository.getInstance();
+        // A daemon may be running, e.g. under --record; keep its snapshot in step with our writes
+        db.addListener((table, snapshot) -> DaemonService.forward(DaemonService.RELOAD));
+
+        // First run: scan for browsers
+        ensureBrowsers(db);
+        database.done();
+        LaunchTrace.mark("db");
+
+        if (command.equals("--settings")) {
+            // Open settings window
+            UiLauncher.showSettings();
+        } else {
+            // URL was passed - check for matching rule or show selector
+            routeUrl(db, command);
+        }
     }
 
-    private static void setupTheme() {
+    private static void runDaemon() {
+        // Warm up everything a link click needs
+        var db = BrowserRepository.getInstance();
+        ensureBrowsers(db);
+        db.getRuleMatcher();
+        UiLauncher.warmUp();
+
+        // A daemon may run for weeks; don't keep its metrics only until shutdown
+        Metrics.getInstance().flushEvery(Duration.ofMinutes(5));
+
+        // Pick up browsers and profiles installed while the daemon runs
         try {
-            var db = DatabaseService.getInstance();
-            var useSystemTheme = db.getToggle(Setting.Toggle.SYSTEM_THEME, true);
-            var useDarkTheme = db.getToggle(Setting.Toggle.DARK_THEME, false);
-
-            if (useSystemTheme) {
-                // Try to detect system theme (Windows 10/11)
-                var isDark = isSystemDarkMode();
-                if (isDark) {
-                    FlatDarkLaf.setup();
-                } else {
-                    FlatLightLaf.setup();
-                }
-            } else if (useDarkTheme) {
-                FlatDarkLaf.setup();
-            } else {
-                FlatLightLaf.setup();
-            }
-        } catch (Exception e) {
-            // Fallback to light theme
-            try {
-                FlatLightLaf.setup();
-            } catch (Exception ignored) {}
+            new BrowserWatchService(db).start();
+        } catch (IOException e) {
+            System.err.println("[BrowserSwitch] Could not watch for browser changes: " + e.getMessage());
         }
-    }
 
-    private static boolean isSystemDarkMode() {
+        var daemon = new DaemonService();
         try {
-            // Check Windows registry for dark mode setting
-            var process = Runtime.getRuntime().exec(new String[]{
-                "reg", "query",
-                "HKCU\\SOFTWARE\\Microsoft\\Windows\\CurrentVersion\\Themes\\Personalize",
-                "/v", "AppsUseLightTheme"
+            daemon.start(command -> {
+                if (command.equals(DaemonService.STOP)) {
+                    System.out.println("[BrowserSwitch] Daemon stopped");
+                    System.exit(0);
+                }
+                handleDaemonCommand(db, command);
             });
+            System.out.println("[BrowserSwitch] Daemon listening on " + DaemonService.defaultSocketPath());
+        } catch (IOException e) {
+            System.err.println("[BrowserSwitch] Could not start daemon: " + e.getMessage());
+            System.exit(1);
+        }
+    }
 
-            var reader = new java.io.BufferedReader(
-                new java.io.InputStreamReader(process.getInputStream()));
+    private static void handleDaemonCommand(BrowserRepository db, String command) {
+        if (command.equals(DaemonService.SETTINGS)) {
+            UiLauncher.showSettings();
+        } else if (command.startsWith(DaemonService.OPEN + " ")) {
+            routeUrl(db, command.substring(DaemonService.OPEN.length() + 1));
+        } else if (command.equals(DaemonService.RELOAD)) {
+            db.reload();
+        }
+    }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains("AppsUseLightTheme")) {
-                    // Value of 0 means dark mode, 1 means light mode
-                    return line.contains("0x0");
-                }
+    private static void ensureBrowsers(BrowserRepository db) {
+        if (db.getAllBrowsers().isEmpty()) {
+            if (IS_WINDOWS) {
+                // A full scan, since any stored snapshot no longer matches the table
+                var detector = new BrowserDetector();
+                db.applyBrowserScan(detector.scan(ScanSnapshot.EMPTY));
+            } else {
+                // Demo mode for non-Windows (testing)
+                addDemoBrowsers(db);
             }
-        } catch (Exception e) {
-            // Ignore and default to light mode
         }
-        return false;
     }
 
-    private static void launchBrowser(com.browserselector.model.Browser browser, String url) {
-        try {
-            var command = new java.util.ArrayList<String>();
-            command.add(browser.exePath().toString());
-
-            if (browser.profileArg() != null && !browser.profileArg().isBlank()) {
-                command.add(browser.profileArg());
+    /**
+     * Launches the browser of the matching rule, or shows the selector.
+     * Only the selector path loads Swing.
+     */
+    private static void routeUrl(BrowserRepository db, String url) {
+        System.out.println("[BrowserSwitch] Received URL: " + url);
+        url = normalize(url);
+
+        // Check for existing rule
+        var matchingRule = db.findMatchingRule(url);
+        LaunchTrace.mark("matched");
+        if (matchingRule.isPresent()) {
+            var rule = matchingRule.get();
+            System.out.println("[BrowserSwitch] Found matching rule: " + rule.pattern() + " -> " + rule.browserId());
+            var browser = db.getBrowser(rule.browserId());
+
+            if (browser.isPresent()) {
+                System.out.println("[BrowserSwitch] Launching: " + browser.get().name());
+                try {
+                    new BrowserLauncher().launch(browser.get(), url, false);
+                } catch (IOException e) {
+                    UiLauncher.showLaunchError(e);
+                }
+                return;
             }
+        }
 
-            command.add(url);
+        // No matching rule - show selector
+        System.out.println("[BrowserSwitch] No matching rule, showing selector dialog...");
+        UiLauncher.showSelector(url);
+    }
 
-            new ProcessBuilder(command).start();
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(null,
-                "Failed to launch browser: " + e.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
+    private static String normalize(String url) {
+        if (UrlUtils.isValidUrl(url)) return url;
+        var normalized = UrlUtils.normalizeUrl(url);
+        System.out.println("[BrowserSwitch] Normalized URL: " + normalized);
+        return normalized;
+    }
+
+    private static void startRecording() {
+        try {
+            var file = Events.startRecording(AppPaths.dataDir().resolve("recordings"));
+            System.out.println("[BrowserSwitch] Recording to " + file);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[BrowserSwitch] Could not start recording: " + e.getMessage());
         }
     }
 
-    private static void addDemoBrowsers(DatabaseService db) {
+    private static void addDemoBrowsers(BrowserRepository db) {
         // Demo browsers for testing on non-Windows platforms
-        db.saveBrowser(new Browser("chrome", "Google Chrome",
-            Path.of("/usr/bin/google-chrome"), null, null, "--incognito", false, null, true));
-        db.saveBrowser(new Browser("firefox", "Mozilla Firefox",
-            Path.of("/usr/bin/firefox"), null, null, "-private-window", false, null, true));
-        db.saveBrowser(new Browser("brave", "Brave Browser",
-            Path.of("/usr/bin/brave-browser"), null, null, "--incognito", false, null, true));
-        db.saveBrowser(new Browser("edge", "Microsoft Edge",
-            Path.of("/usr/bin/microsoft-edge"), null, null, "--incognito", false, null, true));
+        db.saveBrowsers(List.of(
+            new Browser("chrome", "Google Chrome",
+                Path.of("/usr/bin/google-chrome"), null, null, "--incognito", false, null, true),
+            new Browser("firefox", "Mozilla Firefox",
+                Path.of("/usr/bin/firefox"), null, null, "-private-window", false, null, true),
+            new Browser("brave", "Brave Browser",
+                Path.of("/usr/bin/brave-browser"), null, null, "--incognito", false, null, true),
+            new Browser("edge", "Microsoft Edge",
+                Path.of("/usr/bin/microsoft-edge"), null, null, "--incognito", false, null, true)
+        ));
     }
 }
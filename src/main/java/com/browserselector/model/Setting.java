@@ -9,6 +9,7 @@ public sealed interface Setting permits Setting.Toggle, Setting.Text {
         public static final String SHOW_INCOGNITO = "show_incognito";
         public static final String DARK_THEME = "dark_theme";
         public static final String SYSTEM_THEME = "system_theme";
+        public static final String AUTOMATON_MATCHING = "automaton_matching";
     }
 
     record Text(String key, String value) implements Setting {
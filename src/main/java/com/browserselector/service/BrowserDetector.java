@@ -1,18 +1,27 @@
 package com.browserselector.service;
 
 import com.browserselector.model.Browser;
-import com.sun.jna.platform.win32.Advapi32Util;
-import com.sun.jna.platform.win32.WinReg;
+import com.browserselector.util.Events;
+import com.browserselector.util.Metrics;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public final class BrowserDetector {
 
@@ -24,11 +33,6 @@ public final class BrowserDetector {
         "SOFTWARE\\WOW6432Node\\Clients\\StartMenuInternet"
     };
 
-    private static final WinReg.HKEY[] HKEYS = {
-        WinReg.HKEY_LOCAL_MACHINE,
-        WinReg.HKEY_CURRENT_USER
-    };
-
     // Linux desktop file locations
     private static final String[] LINUX_DESKTOP_PATHS = {
         "/usr/share/applications",
@@ -64,45 +68,315 @@ public final class BrowserDetector {
         })
     };
 
+    /**
+     * Wall-clock milestones of the last Linux scan, measured from its start:
+     * when every directory was listed, when every file was parsed, and when
+     * the results were merged. {@code statCallsSaved} is what resolving
+     * executables through an {@link ExecutableIndex} saved.
+     */
+    public record ScanTimings(long listedNanos, long parsedNanos, long mergedNanos,
+                              int desktopFiles, int indexedDirs, int reparsedFiles, long statCallsSaved) {
+        @Override
+        public String toString() {
+            return String.format("listed %.1f ms, parsed %.1f ms, merged %.1f ms, %d desktop files (%d reparsed), "
+                    + "%d dirs from mime cache, %d stat calls saved",
+                listedNanos / 1e6, parsedNanos / 1e6, mergedNanos / 1e6, desktopFiles, reparsedFiles, indexedDirs,
+                statCallsSaved);
+        }
+    }
+
+    /**
+     * The outcome of {@link #scan}: the browsers found, the snapshot to pass
+     * to the next scan, what changed since the previous one, and how many
+     * entries had to be parsed rather than reused.
+     */
+    public record ScanResult(List<Browser> browsers, ScanSnapshot snapshot, ScanDelta delta, int reparsed) {}
+
+    // A directory's files, their pending scans, and whether the mime cache chose them
+    private record Listing(List<Path> files, List<Future<ScanSnapshot.Entry>> entries, boolean indexed) {
+        static final Listing EMPTY = new Listing(List.of(), List.of(), false);
+    }
+
+    private static final String HTTP_HANDLER = "x-scheme-handler/http";
+    // The largest size IconCache renders
+    private static final int ICON_SIZE = 48;
+
+    private static final Metrics.Histogram SCAN_TIME = Metrics.getInstance().histogram("detect.scan");
+    private static final Metrics.Histogram LIST_TIME = Metrics.getInstance().histogram("detect.list");
+    private static final Metrics.Histogram PARSE_TIME = Metrics.getInstance().histogram("detect.parse");
+    private static final Metrics.Histogram MERGE_TIME = Metrics.getInstance().histogram("detect.merge");
+
+    private final List<Path> linuxDesktopDirs;
+    private final boolean useMimeCache;
+    private final RegistryReader registry;
+    // A fresh resolver per scan, so theme changes are noticed
+    private final Supplier<IconThemeResolver> iconThemes;
+    private volatile ScanTimings lastScanTimings;
+
+    public BrowserDetector() {
+        this(Arrays.stream(LINUX_DESKTOP_PATHS).map(Path::of).toList(), true, new WindowsRegistryReader());
+    }
+
+    BrowserDetector(List<Path> linuxDesktopDirs, boolean useMimeCache) {
+        this(linuxDesktopDirs, useMimeCache, new WindowsRegistryReader());
+    }
+
+    BrowserDetector(List<Path> linuxDesktopDirs, boolean useMimeCache, RegistryReader registry) {
+        this(linuxDesktopDirs, useMimeCache, registry, IconThemeResolver::forCurrentTheme);
+    }
+
+    BrowserDetector(List<Path> linuxDesktopDirs, boolean useMimeCache, RegistryReader registry,
+                    Supplier<IconThemeResolver> iconThemes) {
+        this.linuxDesktopDirs = List.copyOf(linuxDesktopDirs);
+        this.useMimeCache = useMimeCache;
+        this.registry = registry;
+        this.iconThemes = iconThemes;
+    }
+
     public List<Browser> detectBrowsers() {
-        if (IS_LINUX) {
-            return detectLinuxBrowsers();
+        return scan(ScanSnapshot.EMPTY).browsers();
+    }
+
+    /**
+     * Detects browsers, parsing only the desktop files or registry keys that
+     * were added or changed since {@code previous} and reusing its results
+     * for the rest.
+     */
+    public ScanResult scan(ScanSnapshot previous) {
+        long start = System.nanoTime();
+        var event = Events.enabled() ? new Events.BrowserScan() : null;
+        if (event != null) event.begin();
+        var result = IS_LINUX ? scanLinux(previous) : scanWindows(previous);
+        if (event != null) event.end();
+        SCAN_TIME.recordSince(start);
+        if (event != null && event.shouldCommit()) {
+            event.browsers = result.browsers().size();
+            event.reparsed = result.reparsed();
+            var timings = IS_LINUX ? lastScanTimings : null;
+            if (timings != null) {
+                event.listed = timings.listedNanos();
+                event.parsed = timings.parsedNanos();
+            }
+            event.commit();
         }
-        return detectWindowsBrowsers();
+        return result;
     }
 
-    private List<Browser> detectLinuxBrowsers() {
-        var browsers = new ArrayList<Browser>();
-        var seenIds = new java.util.HashSet<String>();
+    /**
+     * The directories whose desktop files {@link #scan} reads; empty off Linux.
+     */
+    List<Path> desktopDirs() {
+        return IS_LINUX ? linuxDesktopDirs : List.of();
+    }
+
+    /**
+     * Timings of the last Linux scan, or null if there hasn't been one.
+     */
+    public ScanTimings lastScanTimings() {
+        return lastScanTimings;
+    }
+
+    private static ScanResult result(ScanSnapshot previous, List<ScanSnapshot.Entry> entries, int reparsed) {
+        var snapshot = new ScanSnapshot(entries);
+        var browsers = snapshot.browsers();
+        return new ScanResult(browsers, snapshot, ScanDelta.between(previous.browsers(), browsers), reparsed);
+    }
+
+    List<Browser> detectLinuxBrowsers() {
+        return scanLinux(ScanSnapshot.EMPTY).browsers();
+    }
+
+    /**
+     * Lists every desktop directory and stats or parses every file on its
+     * own virtual thread. The results are merged in directory order, then
+     * file name order, so the first directory still wins when two define
+     * the same id.
+     */
+    ScanResult scanLinux(ScanSnapshot previous) {
+        var start = System.nanoTime();
+        var cached = previous.bySource();
+        var reparsed = new AtomicInteger();
+        var executables = ExecutableIndex.fromEnvironment();
+        var icons = iconThemes.get();
+        var listings = new ArrayList<Future<Listing>>();
+        long listed;
+        long parsed;
+        int fileCount = 0;
+        int indexedDirs = 0;
+        var entries = new ArrayList<ScanSnapshot.Entry>();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Each directory starts scanning its files as soon as it has listed them
+            for (var dir : linuxDesktopDirs) {
+                listings.add(executor.submit(() -> {
+                    var listing = listDesktopFiles(dir);
+                    var scans = listing.files().stream()
+                        .map(file -> executor.submit(() -> scanDesktopFile(file, cached, executables, icons, reparsed)))
+                        .toList();
+                    return new Listing(listing.files(), scans, listing.indexed());
+                }));
+            }
+
+            var scans = new ArrayList<List<Future<ScanSnapshot.Entry>>>();
+            for (var future : listings) {
+                var listing = join(future, Listing.EMPTY);
+                scans.add(listing.entries());
+                fileCount += listing.files().size();
+                indexedDirs += listing.indexed() ? 1 : 0;
+            }
+            listed = System.nanoTime() - start;
+
+            for (var files : scans) {
+                for (var file : files) {
+                    var entry = join(file, null);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                }
+            }
+            parsed = System.nanoTime() - start;
+        }
+
+        var result = result(previous, entries, reparsed.get());
+        var timings = new ScanTimings(listed, parsed, System.nanoTime() - start, fileCount, indexedDirs,
+            reparsed.get(), executables.statCallsSaved());
+        lastScanTimings = timings;
+        LIST_TIME.record(timings.listedNanos());
+        PARSE_TIME.record(timings.parsedNanos() - timings.listedNanos());
+        MERGE_TIME.record(timings.mergedNanos() - timings.parsedNanos());
+        System.out.println("[BrowserSwitch] Linux browser scan: " + timings);
+        return result;
+    }
 
-        for (var desktopPath : LINUX_DESKTOP_PATHS) {
-            var dir = Path.of(desktopPath);
-            if (!Files.exists(dir) || !Files.isDirectory(dir)) {
+    /**
+     * The file's snapshot entry: the cached one if its size and mtime are
+     * unchanged and what it resolved to still exists, otherwise a fresh parse.
+     */
+    private ScanSnapshot.Entry scanDesktopFile(Path file, Map<String, ScanSnapshot.Entry> cached,
+                                               ExecutableIndex executables, IconThemeResolver icons,
+                                               AtomicInteger reparsed) {
+        String stamp;
+        try {
+            var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            stamp = attributes.size() + "@" + attributes.lastModifiedTime();
+        } catch (IOException e) {
+            // Deleted since the directory was listed
+            return null;
+        }
+
+        var source = file.toString();
+        var entry = cached.get(source);
+        if (entry != null && entry.stamp().equals(stamp) && stillResolves(entry.browser())) {
+            return entry;
+        }
+        reparsed.incrementAndGet();
+        return new ScanSnapshot.Entry(source, stamp, parseDesktopFileQuietly(file, executables, icons));
+    }
+
+    private static boolean stillResolves(Browser browser) {
+        return browser == null
+            || (Files.exists(browser.exePath()) && (browser.iconPath() == null || Files.exists(browser.iconPath())));
+    }
+
+    /**
+     * The desktop files in a directory that may be browsers. When the
+     * directory's mimeinfo.cache is at least as new as the directory, only
+     * the files it lists as http handlers are returned; otherwise all of them.
+     */
+    private Listing listDesktopFiles(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return Listing.EMPTY;
+        }
+        if (useMimeCache) {
+            var candidates = mimeCacheCandidates(dir);
+            if (candidates != null) {
+                return new Listing(candidates, List.of(), true);
+            }
+        }
+        try (var stream = Files.list(dir)) {
+            var files = stream.filter(p -> p.toString().endsWith(".desktop"))
+                .sorted()
+                .toList();
+            return new Listing(files, List.of(), false);
+        } catch (IOException e) {
+            // Skip this directory
+            return Listing.EMPTY;
+        }
+    }
+
+    /**
+     * Desktop files named by the directory's mimeinfo.cache (and, if present,
+     * its mimeapps.list) as http handlers, or null if the cache is missing or
+     * older than the directory.
+     */
+    private static List<Path> mimeCacheCandidates(Path dir) {
+        var cache = dir.resolve("mimeinfo.cache");
+        try {
+            if (!Files.isRegularFile(cache)
+                    || Files.getLastModifiedTime(cache).compareTo(Files.getLastModifiedTime(dir)) < 0) {
+                return null;
+            }
+
+            var ids = new TreeSet<String>();
+            readHandlerIds(cache, ids, "[MIME Cache]");
+            var mimeApps = dir.resolve("mimeapps.list");
+            if (Files.isRegularFile(mimeApps)) {
+                readHandlerIds(mimeApps, ids, "[Added Associations]", "[Default Applications]");
+            }
+
+            // Desktop ids of files in subdirectories aren't part of a directory scan
+            return ids.stream()
+                .filter(id -> id.endsWith(".desktop") && id.indexOf('/') < 0)
+                .map(dir::resolve)
+                .filter(Files::isRegularFile)
+                .toList();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Collects the desktop ids listed for http(s) scheme handlers in the given sections
+    private static void readHandlerIds(Path file, Set<String> ids, String... sections) throws IOException {
+        var inSection = false;
+        for (var line : Files.readAllLines(file)) {
+            line = line.trim();
+            if (line.startsWith("[")) {
+                inSection = Arrays.asList(sections).contains(line);
                 continue;
             }
+            var idx = line.indexOf('=');
+            if (!inSection || idx <= 0 || !line.substring(0, idx).contains(HTTP_HANDLER)) continue;
 
-            try (var stream = Files.list(dir)) {
-                stream.filter(p -> p.toString().endsWith(".desktop"))
-                    .forEach(desktopFile -> {
-                        try {
-                            var browser = parseDesktopFile(desktopFile);
-                            if (browser != null && !seenIds.contains(browser.id())) {
-                                browsers.add(browser);
-                                seenIds.add(browser.id());
-                            }
-                        } catch (Exception e) {
-                            // Skip this desktop file
-                        }
-                    });
-            } catch (IOException e) {
-                // Skip this directory
+            for (var id : line.substring(idx + 1).split(";")) {
+                if (!id.isBlank()) {
+                    ids.add(id.trim());
+                }
             }
         }
+    }
 
-        return browsers;
+    private Browser parseDesktopFileQuietly(Path desktopFile, ExecutableIndex executables, IconThemeResolver icons) {
+        try {
+            return parseDesktopFile(desktopFile, executables, icons);
+        } catch (Exception e) {
+            // Skip this desktop file
+            return null;
+        }
+    }
+
+    private static <T> T join(Future<T> future, T fallback) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return fallback;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fallback;
+        }
     }
 
-    private Browser parseDesktopFile(Path desktopFile) throws IOException {
+    private Browser parseDesktopFile(Path desktopFile, ExecutableIndex executables, IconThemeResolver icons)
+            throws IOException {
         var properties = new HashMap<String, String>();
         var inDesktopEntry = false;
         var inAction = false;
@@ -137,7 +411,7 @@ public final class BrowserDetector {
 
         // Check if this is a browser (handles HTTP/HTTPS)
         var mimeType = properties.get("MimeType");
-        if (mimeType == null || !mimeType.contains("x-scheme-handler/http")) {
+        if (mimeType == null || !mimeType.contains(HTTP_HANDLER)) {
             return null;
         }
 
@@ -162,7 +436,7 @@ public final class BrowserDetector {
         }
 
         // Parse executable path from Exec (remove %u, %U, %f, %F, etc.)
-        var exePath = parseLinuxExec(exec);
+        var exePath = parseLinuxExec(exec, executables);
         if (exePath == null) {
             return null;
         }
@@ -175,7 +449,7 @@ public final class BrowserDetector {
         var incognitoArg = detectLinuxIncognitoArg(name, privateExec);
 
         // Resolve icon path
-        Path iconPath = resolveLinuxIcon(icon);
+        Path iconPath = resolveLinuxIcon(icon, icons);
 
         return new Browser(
             id,
@@ -190,7 +464,7 @@ public final class BrowserDetector {
         );
     }
 
-    private Path parseLinuxExec(String exec) {
+    private Path parseLinuxExec(String exec, ExecutableIndex executables) {
         if (exec == null || exec.isBlank()) {
             return null;
         }
@@ -203,12 +477,12 @@ public final class BrowserDetector {
         for (var part : parts) {
             if (part.startsWith("/") || part.startsWith("~")) {
                 var path = part.replace("~", System.getProperty("user.home"));
-                if (Files.exists(Path.of(path))) {
+                if (executables.exists(Path.of(path))) {
                     return Path.of(path);
                 }
             }
             // Try to find in PATH
-            var resolved = findInPath(part);
+            var resolved = executables.find(part);
             if (resolved != null) {
                 return resolved;
             }
@@ -217,41 +491,7 @@ public final class BrowserDetector {
         return null;
     }
 
-    private Path findInPath(String command) {
-        if (command == null || command.isBlank()) {
-            return null;
-        }
-
-        // If already absolute path
-        if (command.startsWith("/")) {
-            var path = Path.of(command);
-            return Files.exists(path) ? path : null;
-        }
-
-        // Search in PATH
-        var pathEnv = System.getenv("PATH");
-        if (pathEnv != null) {
-            for (var dir : pathEnv.split(":")) {
-                var path = Path.of(dir, command);
-                if (Files.exists(path) && Files.isExecutable(path)) {
-                    return path;
-                }
-            }
-        }
-
-        // Common locations
-        var commonPaths = new String[] {"/usr/bin/", "/usr/local/bin/", "/bin/", "/snap/bin/"};
-        for (var prefix : commonPaths) {
-            var path = Path.of(prefix + command);
-            if (Files.exists(path)) {
-                return path;
-            }
-        }
-
-        return null;
-    }
-
-    private Path resolveLinuxIcon(String icon) {
+    private Path resolveLinuxIcon(String icon, IconThemeResolver icons) {
         if (icon == null || icon.isBlank()) {
             return null;
         }
@@ -262,28 +502,9 @@ public final class BrowserDetector {
             return Files.exists(path) ? path : null;
         }
 
-        // Try to find icon in standard locations
-        var iconDirs = new String[] {
-            "/usr/share/icons/hicolor/256x256/apps",
-            "/usr/share/icons/hicolor/128x128/apps",
-            "/usr/share/icons/hicolor/64x64/apps",
-            "/usr/share/icons/hicolor/48x48/apps",
-            "/usr/share/icons/hicolor/scalable/apps",
-            "/usr/share/pixmaps"
-        };
-
-        var extensions = new String[] {"", ".png", ".svg", ".xpm"};
-
-        for (var dir : iconDirs) {
-            for (var ext : extensions) {
-                var path = Path.of(dir, icon + ext);
-                if (Files.exists(path)) {
-                    return path;
-                }
-            }
-        }
-
-        return null;
+        // Some desktop files name the icon with its extension
+        var name = IconThemeResolver.iconName(Path.of(icon));
+        return icons.find(name != null ? name : icon, ICON_SIZE, 1);
     }
 
     private String detectLinuxIncognitoArg(String browserName, String privateExec) {
@@ -303,28 +524,40 @@ public final class BrowserDetector {
         return "--incognito"; // Chrome, Edge, Brave, Chromium, etc.
     }
 
-    private List<Browser> detectWindowsBrowsers() {
-        var browsers = new ArrayList<Browser>();
+    /**
+     * Reads browsers from the StartMenuInternet registry keys, reusing the
+     * previous result for a key whose last-write times (its own, its open
+     * command's and its icon's) are unchanged.
+     */
+    ScanResult scanWindows(ScanSnapshot previous) {
+        var cached = previous.bySource();
+        var entries = new ArrayList<ScanSnapshot.Entry>();
         var seenIds = new java.util.HashSet<String>();
+        int reparsed = 0;
 
         // First, detect browsers from registry (traditional installation)
-        for (var hkey : HKEYS) {
+        for (var hive : RegistryReader.Hive.values()) {
             for (var registryPath : REGISTRY_PATHS) {
                 try {
-                    if (!Advapi32Util.registryKeyExists(hkey, registryPath)) {
+                    if (!registry.keyExists(hive, registryPath)) {
                         continue;
                     }
 
-                    var browserKeys = Advapi32Util.registryGetKeys(hkey, registryPath);
-                    for (var browserKey : browserKeys) {
-                        try {
-                            var browser = readWindowsBrowser(hkey, registryPath + "\\" + browserKey);
-                            if (browser != null && !seenIds.contains(browser.id())) {
-                                browsers.add(browser);
-                                seenIds.add(browser.id());
-                            }
-                        } catch (Exception e) {
-                            // Skip this browser entry
+                    for (var browserKey : registry.subKeys(hive, registryPath)) {
+                        var keyPath = registryPath + "\\" + browserKey;
+                        var source = hive + "\\" + keyPath;
+                        var stamp = registry.lastWriteTime(hive, keyPath)
+                            + "/" + registry.lastWriteTime(hive, keyPath + "\\shell\\open\\command")
+                            + "/" + registry.lastWriteTime(hive, keyPath + "\\DefaultIcon");
+
+                        var entry = cached.get(source);
+                        if (entry == null || !entry.stamp().equals(stamp) || !stillResolves(entry.browser())) {
+                            entry = new ScanSnapshot.Entry(source, stamp, readWindowsBrowser(hive, keyPath));
+                            reparsed++;
+                        }
+                        entries.add(entry);
+                        if (entry.browser() != null) {
+                            seenIds.add(entry.browser().id());
                         }
                     }
                 } catch (Exception e) {
@@ -354,38 +587,34 @@ public final class BrowserDetector {
                         null,
                         true
                     );
-                    browsers.add(browser);
+                    // A single exists() check, so there's nothing worth caching
+                    entries.add(new ScanSnapshot.Entry(pathStr, "", browser));
                     seenIds.add(knownBrowser.id());
                     break; // Found this browser, move to next
                 }
             }
         }
 
-        return browsers;
+        return result(previous, entries, reparsed);
     }
 
-    private Browser readWindowsBrowser(WinReg.HKEY hkey, String keyPath) {
+    private Browser readWindowsBrowser(RegistryReader.Hive hive, String keyPath) {
         try {
             // Read executable path
             var commandPath = keyPath + "\\shell\\open\\command";
-            if (!Advapi32Util.registryKeyExists(hkey, commandPath)) {
+            if (!registry.keyExists(hive, commandPath)) {
                 return null;
             }
 
-            var command = Advapi32Util.registryGetStringValue(hkey, commandPath, "");
+            var command = registry.defaultValue(hive, commandPath);
             var exePath = parseExePath(command);
             if (exePath == null || !Files.exists(exePath)) {
                 return null;
             }
 
             // Read display name
-            String name;
-            try {
-                name = Advapi32Util.registryGetStringValue(hkey, keyPath, "");
-                if (name == null || name.isBlank()) {
-                    name = exePath.getFileName().toString().replace(".exe", "");
-                }
-            } catch (Exception e) {
+            var name = registry.defaultValue(hive, keyPath);
+            if (name == null || name.isBlank()) {
                 name = exePath.getFileName().toString().replace(".exe", "");
             }
 
@@ -393,9 +622,8 @@ public final class BrowserDetector {
             Path iconPath = null;
             try {
                 var iconKeyPath = keyPath + "\\DefaultIcon";
-                if (Advapi32Util.registryKeyExists(hkey, iconKeyPath)) {
-                    var iconValue = Advapi32Util.registryGetStringValue(hkey, iconKeyPath, "");
-                    iconPath = parseIconPath(iconValue);
+                if (registry.keyExists(hive, iconKeyPath)) {
+                    iconPath = parseIconPath(registry.defaultValue(hive, iconKeyPath));
                 }
             } catch (Exception e) {
                 // No icon available
@@ -0,0 +1,53 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import com.browserselector.util.Events;
+import com.browserselector.util.LaunchTrace;
+import com.browserselector.util.Metrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+public final class BrowserLauncher {
+
+    private static final Metrics.Histogram SPAWN_TIME = Metrics.getInstance().histogram("launch.spawn");
+
+    public void launch(Browser browser, String url, boolean incognito) throws IOException {
+        var command = new ArrayList<String>();
+        command.add(browser.exePath().toString());
+
+        if (browser.profileArg() != null && !browser.profileArg().isBlank()) {
+            command.add(browser.profileArg());
+        }
+
+        if (incognito && browser.incognitoArg() != null) {
+            command.add(browser.incognitoArg());
+        }
+
+        command.add(url);
+
+        LaunchTrace.mark("launch");
+        // Discard output so a long-lived daemon never blocks the browser on a full pipe
+        long start = System.nanoTime();
+        var event = Events.enabled() ? new Events.Launch() : null;
+        if (event != null) event.begin();
+        try {
+            new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        } catch (IOException e) {
+            if (event != null) event.failed = true;
+            throw e;
+        } finally {
+            if (event != null) event.end();
+            if (event != null && event.shouldCommit()) {
+                event.browserId = browser.id();
+                event.profile = browser.isProfile();
+                event.incognito = incognito;
+                event.commit();
+            }
+        }
+        SPAWN_TIME.recordSince(start);
+    }
+}
@@ -0,0 +1,278 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import com.browserselector.model.Setting;
+import com.browserselector.model.UrlRule;
+import com.browserselector.util.Events;
+import com.browserselector.util.Metrics;
+import com.browserselector.util.ParsedUrl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory view of the browsers, url_rules and settings tables.
+ *
+ * Reads are served from an immutable {@link Snapshot}. Writes go through to
+ * {@link DatabaseService} first; the affected table is then re-read (so ids
+ * and ordering are whatever SQLite decided) and a new snapshot is published
+ * in one step. Listeners are told which table changed, on the writing thread.
+ */
+public final class BrowserRepository {
+
+    public enum Table { BROWSERS, RULES, SETTINGS }
+
+    @FunctionalInterface
+    public interface ChangeListener {
+        void changed(Table table, Snapshot snapshot);
+    }
+
+    public record Snapshot(List<Browser> browsers, Map<String, Browser> browsersById,
+                           List<UrlRule> rules, Map<String, String> settings) {
+
+        static Snapshot of(List<Browser> browsers, List<UrlRule> rules, Map<String, String> settings) {
+            var byId = new LinkedHashMap<String, Browser>();
+            for (var browser : browsers) {
+                byId.put(browser.id(), browser);
+            }
+            return new Snapshot(List.copyOf(browsers), Collections.unmodifiableMap(byId),
+                List.copyOf(rules), Map.copyOf(settings));
+        }
+
+        public List<Browser> enabledBrowsers() {
+            return browsers.stream().filter(Browser::enabled).toList();
+        }
+
+        public Optional<Browser> browser(String id) {
+            return Optional.ofNullable(browsersById.get(id));
+        }
+    }
+
+    private static final Metrics.Histogram MATCH_TIME = Metrics.getInstance().histogram("rules.match");
+    private static final Metrics.Histogram BUILD_TIME = Metrics.getInstance().histogram("rules.build");
+    private static final Metrics.Counter MATCHED = Metrics.getInstance().counter("rules.matched");
+    private static final Metrics.Counter UNMATCHED = Metrics.getInstance().counter("rules.unmatched");
+
+    private static BrowserRepository instance;
+
+    private final DatabaseService db;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot;
+    private RuleMatcher ruleMatcher;
+
+    BrowserRepository(DatabaseService db) {
+        this.db = db;
+        this.snapshot = Snapshot.of(db.getAllBrowsers(), db.getAllRules(), db.getAllSettings());
+    }
+
+    public static synchronized BrowserRepository getInstance() {
+        if (instance == null) {
+            instance = new BrowserRepository(DatabaseService.getInstance());
+        }
+        return instance;
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public void addListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Browser operations
+    public List<Browser> getAllBrowsers() {
+        return snapshot.browsers();
+    }
+
+    public List<Browser> getEnabledBrowsers() {
+        return snapshot.enabledBrowsers();
+    }
+
+    public Optional<Browser> getBrowser(String id) {
+        return snapshot.browser(id);
+    }
+
+    public void saveBrowser(Browser browser) {
+        db.saveBrowser(browser);
+        reload(Table.BROWSERS);
+    }
+
+    public void saveBrowsers(Collection<Browser> browsers) {
+        db.saveBrowsers(browsers);
+        reload(Table.BROWSERS);
+    }
+
+    /**
+     * The snapshot of the last browser scan, to pass to {@link BrowserDetector#scan}.
+     */
+    public ScanSnapshot scanSnapshot() {
+        return db.loadScanSnapshot();
+    }
+
+    /**
+     * Applies a rescan's delta to the browsers table, leaving enabled flags
+     * and profiles alone, and stores its snapshot.
+     */
+    public void applyBrowserScan(BrowserDetector.ScanResult result) {
+        db.applyBrowserScan(result.delta(), result.snapshot());
+        if (!result.delta().isEmpty()) {
+            reload(Table.BROWSERS);
+        }
+    }
+
+    public void applyProfileChanges(ScanDelta changes) {
+        if (changes.isEmpty()) return;
+        db.applyProfileChanges(changes);
+        reload(Table.BROWSERS);
+    }
+
+    public void deleteBrowser(String id) {
+        db.deleteBrowser(id);
+        reload(Table.BROWSERS);
+    }
+
+    // URL Rule operations
+    public List<UrlRule> getAllRules() {
+        return snapshot.rules();
+    }
+
+    public Optional<UrlRule> findMatchingRule(String url) {
+        return findMatchingRule(ParsedUrl.parse(url));
+    }
+
+    public Optional<UrlRule> findMatchingRule(ParsedUrl url) {
+        var matcher = getRuleMatcher();
+        var event = Events.enabled() ? new Events.RuleMatch() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        var match = matcher.findMatch(url);
+        MATCH_TIME.recordSince(start);
+        (match.isPresent() ? MATCHED : UNMATCHED).increment();
+        if (event != null) event.end();
+        if (event != null && event.shouldCommit()) {
+            event.host = url.host();
+            event.matcher = matcher.getClass().getSimpleName();
+            event.rules = matcher.size();
+            match.ifPresent(rule -> {
+                event.pattern = rule.pattern();
+                event.browserId = rule.browserId();
+            });
+            event.commit();
+        }
+        return match;
+    }
+
+    /**
+     * Every rule checked against the URL in priority order, and what
+     * {@link #findMatchingRule} makes of it. For showing why a URL routes
+     * where it does; far slower than matching.
+     */
+    public RuleExplanation explainMatch(String url) {
+        List<UrlRule> rules;
+        RuleMatcher matcher;
+        // Rules and matcher from the same snapshot, but not the walk: it times every
+        // rule, and holding the lock that long would stall routing and writes
+        synchronized (this) {
+            rules = snapshot.rules();
+            matcher = getRuleMatcher();
+        }
+        return RuleExplanation.explain(rules, ParsedUrl.parse(url), matcher);
+    }
+
+    /**
+     * The compiled rules, built on first use: a {@link RuleIndex}, or a
+     * {@link RuleAutomaton} when the automaton_matching setting is on.
+     */
+    public synchronized RuleMatcher getRuleMatcher() {
+        if (ruleMatcher == null) {
+            long start = System.nanoTime();
+            var current = snapshot;
+            ruleMatcher = Boolean.parseBoolean(current.settings().get(Setting.Toggle.AUTOMATON_MATCHING))
+                ? RuleAutomaton.build(current.rules())
+                : RuleIndex.build(current.rules());
+            BUILD_TIME.recordSince(start);
+        }
+        return ruleMatcher;
+    }
+
+    public void saveRule(UrlRule rule) {
+        db.saveRule(rule);
+        reload(Table.RULES);
+    }
+
+    public void saveRules(Collection<UrlRule> rules) {
+        db.saveRules(rules);
+        reload(Table.RULES);
+    }
+
+    public void deleteRule(int id) {
+        db.deleteRule(id);
+        reload(Table.RULES);
+    }
+
+    public void deleteRules(Collection<Integer> ids) {
+        db.deleteRules(ids);
+        reload(Table.RULES);
+    }
+
+    // Settings operations
+    public boolean getToggle(String key, boolean defaultValue) {
+        var value = snapshot.settings().get(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    public String getText(String key, String defaultValue) {
+        return snapshot.settings().getOrDefault(key, defaultValue);
+    }
+
+    public void saveSetting(Setting setting) {
+        db.saveSetting(setting);
+        reload(Table.SETTINGS);
+    }
+
+    /**
+     * Re-reads every table, after another process changed the database.
+     */
+    public void reload() {
+        for (var table : Table.values()) {
+            reload(table);
+        }
+    }
+
+    private void reload(Table table) {
+        Snapshot updated;
+        synchronized (this) {
+            var current = snapshot;
+            updated = switch (table) {
+                case BROWSERS -> Snapshot.of(db.getAllBrowsers(), current.rules(), current.settings());
+                case RULES -> Snapshot.of(current.browsers(), db.getAllRules(), current.settings());
+                case SETTINGS -> Snapshot.of(current.browsers(), current.rules(), db.getAllSettings());
+            };
+            snapshot = updated;
+
+            if (table == Table.RULES || (table == Table.SETTINGS && !sameMatcherSetting(current, updated))) {
+                ruleMatcher = null;
+            }
+        }
+
+        for (var listener : listeners) {
+            listener.changed(table, updated);
+        }
+    }
+
+    private static boolean sameMatcherSetting(Snapshot a, Snapshot b) {
+        var key = Setting.Toggle.AUTOMATON_MATCHING;
+        return Objects.equals(a.settings().get(key), b.settings().get(key));
+    }
+}
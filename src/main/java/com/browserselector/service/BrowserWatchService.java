@@ -0,0 +1,229 @@
+package com.browserselector.service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the browsers table current while the app is resident.
+ *
+ * Watches the desktop file directories and the directories holding the
+ * profile files {@link ProfileDetector} reads. Events are collected until
+ * the watched paths have been quiet for a moment (or a few seconds have
+ * passed since the first one) and then handled as one batch: a changed
+ * desktop file triggers an incremental rescan, a changed profile file
+ * re-detects the profiles of the browsers that read it. Batches are at
+ * least {@link #MIN_INTERVAL} apart, so a package upgrade touching hundreds
+ * of files costs a handful of rescans rather than hundreds.
+ *
+ * Changes reach the UI through {@link BrowserRepository} listeners.
+ * Directories that don't exist when the watcher starts aren't watched.
+ */
+public final class BrowserWatchService implements AutoCloseable {
+
+    private static final Duration QUIET_PERIOD = Duration.ofMillis(500);
+    private static final Duration MAX_DELAY = Duration.ofSeconds(5);
+    private static final Duration MIN_INTERVAL = Duration.ofSeconds(2);
+
+    // Events gathered for one batch
+    private static final class Batch {
+        boolean desktopChanged;
+        final Set<Path> profileFiles = new HashSet<>();
+    }
+
+    private final BrowserRepository repository;
+    private final BrowserDetector detector;
+    private final ProfileDetector profileDetector;
+    private final ProfileDetectionService profiles;
+    private final long quietNanos;
+    private final long maxDelayNanos;
+    private final long minIntervalNanos;
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final Set<Path> desktopDirs = new HashSet<>();
+    private volatile Set<Path> profileFiles = Set.of();
+    private WatchService watcher;
+    private volatile boolean running;
+
+    public BrowserWatchService(BrowserRepository repository) {
+        this(repository, new BrowserDetector(), new ProfileDetector(), QUIET_PERIOD, MAX_DELAY, MIN_INTERVAL);
+    }
+
+    BrowserWatchService(BrowserRepository repository, BrowserDetector detector, ProfileDetector profileDetector,
+                        Duration quietPeriod, Duration maxDelay, Duration minInterval) {
+        this.repository = repository;
+        this.detector = detector;
+        this.profileDetector = profileDetector;
+        this.profiles = new ProfileDetectionService(repository, profileDetector);
+        this.quietNanos = quietPeriod.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.minIntervalNanos = minInterval.toNanos();
+    }
+
+    /**
+     * Registers the watches and starts handling events on a background thread.
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+
+        watcher = FileSystems.getDefault().newWatchService();
+        for (var dir : detector.desktopDirs()) {
+            if (register(dir)) {
+                desktopDirs.add(dir);
+            }
+        }
+        registerProfileFiles();
+        running = true;
+        Thread.ofVirtual().name("browserswitch-watch").start(this::run);
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+
+    private synchronized boolean register(Path dir) {
+        if (watchedDirs.containsValue(dir)) return true;
+        if (!Files.isDirectory(dir)) return false;
+        try {
+            var key = dir.register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirs.put(key, dir);
+            return true;
+        } catch (IOException e) {
+            // Not watchable; changes here need a manual rescan
+            return false;
+        }
+    }
+
+    // Profile files are watched through their directories, which also catches atomic replaces
+    private void registerProfileFiles() {
+        var files = new HashSet<Path>();
+        for (var browser : repository.getAllBrowsers()) {
+            var source = browser.isProfile() ? null : profileDetector.profileSource(browser);
+            if (source != null && source.getParent() != null && register(source.getParent())) {
+                files.add(source);
+            }
+        }
+        profileFiles = Set.copyOf(files);
+    }
+
+    private void run() {
+        long lastBatch = System.nanoTime() - minIntervalNanos;
+        try {
+            while (running) {
+                var batch = new Batch();
+                collect(watcher.take(), batch);
+                long first = System.nanoTime();
+                long last = first;
+
+                while (true) {
+                    long readyAt = Math.max(Math.min(last + quietNanos, first + maxDelayNanos),
+                        lastBatch + minIntervalNanos);
+                    long wait = readyAt - System.nanoTime();
+                    if (wait <= 0) break;
+
+                    var key = watcher.poll(wait, TimeUnit.NANOSECONDS);
+                    if (key != null) {
+                        collect(key, batch);
+                        last = System.nanoTime();
+                    }
+                }
+
+                handle(batch);
+                lastBatch = System.nanoTime();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    private void collect(WatchKey key, Batch batch) {
+        Path dir;
+        synchronized (this) {
+            dir = watchedDirs.get(key);
+        }
+        var isDesktopDir = desktopDirs.contains(dir);
+
+        for (var event : key.pollEvents()) {
+            if (dir == null) continue;
+
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were dropped, so assume everything here changed
+                batch.desktopChanged |= isDesktopDir;
+                for (var file : profileFiles) {
+                    if (dir.equals(file.getParent())) {
+                        batch.profileFiles.add(file);
+                    }
+                }
+                continue;
+            }
+
+            var path = dir.resolve((Path) event.context());
+            var name = path.getFileName().toString();
+            if (isDesktopDir && (name.endsWith(".desktop") || name.equals("mimeinfo.cache") || name.equals("mimeapps.list"))) {
+                batch.desktopChanged = true;
+            }
+            if (profileFiles.contains(path)) {
+                batch.profileFiles.add(path);
+            }
+        }
+
+        if (!key.reset()) {
+            synchronized (this) {
+                watchedDirs.remove(key);
+            }
+        }
+    }
+
+    private void handle(Batch batch) {
+        try {
+            if (batch.desktopChanged) {
+                var result = detector.scan(repository.scanSnapshot());
+                repository.applyBrowserScan(result);
+                System.out.println("[BrowserSwitch] Browsers changed on disk: " + result.delta());
+                // New browsers may bring new profile files
+                registerProfileFiles();
+            }
+            for (var file : batch.profileFiles) {
+                refreshProfiles(file);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Re-detects the profiles of every browser reading {@code file}.
+     */
+    private void refreshProfiles(Path file) {
+        var parents = repository.getAllBrowsers().stream()
+            .filter(b -> !b.isProfile() && file.equals(profileDetector.profileSource(b)))
+            .toList();
+        if (parents.isEmpty()) return;
+        try {
+            profiles.apply(profiles.detectChanges(parents, ProfileDetectionService.Progress.NONE));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.browserselector.service;
+
+import com.browserselector.util.AppPaths;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Local socket that lets a resident process handle URLs for later launches.
+ *
+ * The daemon listens on a Unix-domain socket in the app data directory.
+ * A client sends one command line ("open &lt;url&gt;", "settings", "reload"
+ * or "stop") and waits for "ok". "reload" tells the daemon that another
+ * process wrote to the database. When no daemon is listening, or it doesn't
+ * answer in time, {@link #forward} returns false and the caller handles the
+ * URL itself.
+ *
+ * Each connection is served on its own virtual thread, and a client that
+ * doesn't send its command in time is dropped, so one stuck client can't
+ * hold up the next link click.
+ */
+public final class DaemonService {
+
+    public static final String OPEN = "open";
+    public static final String SETTINGS = "settings";
+    public static final String RELOAD = "reload";
+    public static final String STOP = "stop";
+
+    private static final String PING = "ping";
+    private static final String SOCKET_NAME = "daemon.sock";
+    private static final String OK = "ok";
+    private static final int MAX_COMMAND_LENGTH = 64 * 1024;
+    // Both sides send one short line at once, so a slow one is stuck rather than busy
+    static final Duration READ_TIMEOUT = Duration.ofSeconds(2);
+
+    private static volatile boolean active;
+
+    private final Path socketPath;
+    private ServerSocketChannel server;
+    private volatile boolean running;
+
+    public DaemonService() {
+        this(defaultSocketPath());
+    }
+
+    DaemonService(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    public static Path defaultSocketPath() {
+        return AppPaths.dataDir().resolve(SOCKET_NAME);
+    }
+
+    /**
+     * Sends a command to a running daemon.
+     *
+     * @return true if the daemon acknowledged it, false if none is running
+     *         or it didn't answer within {@link #READ_TIMEOUT}
+     */
+    public static boolean forward(String command) {
+        return forward(defaultSocketPath(), command);
+    }
+
+    static boolean forward(Path socketPath, String command) {
+        if (!Files.exists(socketPath)) {
+            return false;
+        }
+
+        try (var channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            writeLine(channel, command);
+            return OK.equals(readLine(channel, READ_TIMEOUT));
+        } catch (IOException e) {
+            // No daemon behind the socket file (stale), it went away mid-request, or it hangs
+            return false;
+        }
+    }
+
+    /**
+     * Binds the socket and serves commands on a background thread.
+     *
+     * @param handler receives every command; "stop" is delivered after the socket is closed
+     * @throws IOException if another daemon is already running or the socket can't be bound
+     */
+    public synchronized void start(Consumer<String> handler) throws IOException {
+        if (Files.exists(socketPath)) {
+            if (forward(socketPath, PING)) {
+                throw new IOException("A daemon is already listening on " + socketPath);
+            }
+            // Left behind by a daemon that didn't shut down cleanly
+            Files.deleteIfExists(socketPath);
+        }
+
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        running = true;
+        active = true;
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+
+        var thread = new Thread(() -> acceptLoop(handler), "browserswitch-daemon");
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            // Will be treated as stale on next start
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Whether this process is serving as the daemon, in which case windows
+     * must not exit the JVM when they close.
+     */
+    public static boolean isActive() {
+        return active;
+    }
+
+    private void acceptLoop(Consumer<String> handler) {
+        while (running) {
+            try {
+                var channel = server.accept();
+                Thread.ofVirtual().name("browserswitch-daemon-client").start(() -> serve(channel, handler));
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel client, Consumer<String> handler) {
+        try (var channel = client) {
+            var command = readLine(channel, READ_TIMEOUT);
+            if (command == null) return;
+
+            writeLine(channel, OK);
+
+            if (command.equals(STOP)) {
+                stop();
+            }
+            if (!command.equals(PING)) {
+                handler.accept(command);
+            }
+        } catch (SocketTimeoutException e) {
+            System.err.println("[BrowserSwitch] Dropped a daemon client: " + e.getMessage());
+        } catch (IOException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void writeLine(SocketChannel channel, String line) throws IOException {
+        var buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads one line, or returns null if the peer closed the connection or
+     * sent more than {@link #MAX_COMMAND_LENGTH} bytes first.
+     *
+     * @throws SocketTimeoutException if no full line arrived within {@code timeout}
+     */
+    private static String readLine(SocketChannel channel, Duration timeout) throws IOException {
+        var buffer = ByteBuffer.allocate(1024);
+        var bytes = new ByteArrayOutputStream();
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        // Channel reads ignore SO_TIMEOUT, so wait for data with a selector instead
+        channel.configureBlocking(false);
+        try (var selector = Selector.open()) {
+            channel.register(selector, SelectionKey.OP_READ);
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("no line within " + timeout.toMillis() + " ms");
+                }
+                if (selector.select(Math.max(1, remaining / 1_000_000)) == 0) continue;
+                selector.selectedKeys().clear();
+
+                if (channel.read(buffer) < 0) return null;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    var b = buffer.get();
+                    if (b == '\n') {
+                        return bytes.toString(StandardCharsets.UTF_8);
+                    }
+                    bytes.write(b);
+                }
+                buffer.clear();
+                if (bytes.size() > MAX_COMMAND_LENGTH) {
+                    return null;
+                }
+            }
+        } finally {
+            // Closing the selector deregistered the channel, so it can block again
+            channel.configureBlocking(true);
+        }
+    }
+}
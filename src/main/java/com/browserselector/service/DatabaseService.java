@@ -3,29 +3,58 @@ package com.browserselector.service;
 import com.browserselector.model.Browser;
 import com.browserselector.model.Setting;
 import com.browserselector.model.UrlRule;
-import com.browserselector.util.PatternMatcher;
+import com.browserselector.util.AppPaths;
+import com.browserselector.util.Events;
+import com.browserselector.util.Metrics;
 
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.sql.*;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-public final class DatabaseService {
+/**
+ * SQLite storage for browsers, rules and settings.
+ *
+ * All calls share one connection, opened on first use in WAL mode, and a
+ * cache of prepared statements keyed by their SQL. Access is serialized on
+ * the service. The connection is closed by {@link #close()} or on JVM exit.
+ * Run with {@code -Dbrowserswitch.db.trace=true} to log the latency of each call.
+ */
+public final class DatabaseService implements AutoCloseable {
 
     private static final String DB_NAME = "browser_selector.db";
+    private static final boolean TRACE = Boolean.getBoolean("browserswitch.db.trace");
+
+    // Negative cache_size is in KiB
+    private static final String[] PRAGMAS = {
+        "PRAGMA journal_mode=WAL",
+        "PRAGMA synchronous=NORMAL",
+        "PRAGMA temp_store=MEMORY",
+        "PRAGMA cache_size=-8192"
+    };
+
     private static DatabaseService instance;
     private final String dbUrl;
+    private Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Map<String, Metrics.Histogram> operationTimes = new HashMap<>();
+
+    @FunctionalInterface
+    private interface SqlCall<T> {
+        T run() throws SQLException;
+    }
 
     private DatabaseService() {
-        var appData = System.getenv("APPDATA");
-        var dbPath = appData != null
-            ? Paths.get(appData, "BrowserSwitch", DB_NAME)
-            : Paths.get(System.getProperty("user.home"), ".browserselector", DB_NAME);
+        this(AppPaths.dataDir().resolve(DB_NAME));
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "browserswitch-db-close"));
+    }
 
-        dbPath.getParent().toFile().mkdirs();
+    DatabaseService(Path dbPath) {
         this.dbUrl = "jdbc:sqlite:" + dbPath;
         initDatabase();
     }
@@ -37,6 +66,107 @@ public final class DatabaseService {
         return instance;
     }
 
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            connection = DriverManager.getConnection(dbUrl);
+            try (var stmt = connection.createStatement()) {
+                for (var pragma : PRAGMAS) {
+                    stmt.execute(pragma);
+                }
+            }
+        }
+        return connection;
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        var pstmt = statements.get(sql);
+        if (pstmt == null) {
+            pstmt = connection().prepareStatement(sql);
+            statements.put(sql, pstmt);
+        }
+        return pstmt;
+    }
+
+    /**
+     * Runs a call on the shared connection, logging the exception and
+     * returning {@code fallback} if it fails.
+     */
+    private synchronized <T> T execute(String operation, T fallback, SqlCall<T> call) {
+        long start = System.nanoTime();
+        // Null unless recording, so a plain launch never loads the JFR classes
+        var event = Events.enabled() ? new Events.Database() : null;
+        if (event != null) event.begin();
+        T result = fallback;
+        try {
+            result = call.run();
+            return result;
+        } catch (SQLException e) {
+            if (event != null) event.failed = true;
+            e.printStackTrace();
+            resetIfBroken();
+            return fallback;
+        } finally {
+            if (event != null) event.end();
+            if (event != null && event.shouldCommit()) {
+                event.operation = operation;
+                event.result(result);
+                event.commit();
+            }
+            operationTimes.computeIfAbsent(operation, op -> Metrics.getInstance().histogram("db." + op)).recordSince(start);
+            if (TRACE) {
+                System.out.printf("[BrowserSwitch] db %s took %.3f ms%n", operation, (System.nanoTime() - start) / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Runs a call as one transaction, rolling back if it throws.
+     */
+    private <T> T inTransaction(SqlCall<T> call) throws SQLException {
+        var conn = connection();
+        conn.setAutoCommit(false);
+        try {
+            var result = call.run();
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void resetIfBroken() {
+        try {
+            if (connection != null && !connection.isClosed()) return;
+        } catch (SQLException ignored) {
+            // Treat as closed
+        }
+        statements.clear();
+        connection = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (var pstmt : statements.values()) {
+            try {
+                pstmt.close();
+            } catch (SQLException ignored) {
+                // Closing anyway
+            }
+        }
+        statements.clear();
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            connection = null;
+        }
+    }
+
     private void initDatabase() {
         var schema = """
             CREATE TABLE IF NOT EXISTS browsers (
@@ -59,6 +189,17 @@ public final class DatabaseService {
                 created_at TEXT DEFAULT CURRENT_TIMESTAMP
             );
 
+            CREATE TABLE IF NOT EXISTS scan_snapshot (
+                position INTEGER PRIMARY KEY,
+                source TEXT NOT NULL,
+                stamp TEXT NOT NULL,
+                browser_id TEXT,
+                name TEXT,
+                exe_path TEXT,
+                icon_path TEXT,
+                incognito_arg TEXT
+            );
+
             CREATE TABLE IF NOT EXISTS settings (
                 key TEXT PRIMARY KEY,
                 value TEXT
@@ -68,118 +209,243 @@ public final class DatabaseService {
             INSERT OR IGNORE INTO settings (key, value) VALUES ('show_incognito', 'true');
             INSERT OR IGNORE INTO settings (key, value) VALUES ('dark_theme', 'false');
             INSERT OR IGNORE INTO settings (key, value) VALUES ('system_theme', 'true');
+            INSERT OR IGNORE INTO settings (key, value) VALUES ('automaton_matching', 'false');
             """;
 
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var stmt = conn.createStatement()) {
+        try (var stmt = connection().createStatement()) {
+            boolean hadSnapshot;
+            try (var rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'scan_snapshot'")) {
+                hadSnapshot = rs.next();
+            }
             for (var sql : schema.split(";")) {
                 if (!sql.isBlank()) {
                     stmt.execute(sql.trim());
                 }
             }
+            if (!hadSnapshot) {
+                // Browsers stored before scans kept a snapshot: list them under sources
+                // no scan produces, so the next rescan drops any it doesn't find again
+                stmt.execute("""
+                    INSERT INTO scan_snapshot (position, source, stamp, browser_id, name, exe_path, icon_path, incognito_arg)
+                    SELECT rowid, 'legacy:' || id, '', id, name, exe_path, icon_path, incognito_arg
+                    FROM browsers WHERE is_profile = 0
+                    """);
+            }
         } catch (SQLException e) {
+            close();
             throw new RuntimeException("Failed to initialize database", e);
         }
     }
 
     // Browser operations
     public List<Browser> getAllBrowsers() {
-        var browsers = new ArrayList<Browser>();
-        var sql = "SELECT * FROM browsers ORDER BY is_profile, name";
-
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var stmt = conn.createStatement();
-             var rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                browsers.add(browserFromResultSet(rs));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return browsers;
+        return queryBrowsers("getAllBrowsers", "SELECT * FROM browsers ORDER BY is_profile, name");
     }
 
     public List<Browser> getEnabledBrowsers() {
-        var browsers = new ArrayList<Browser>();
-        var sql = "SELECT * FROM browsers WHERE enabled = 1 ORDER BY is_profile, name";
-
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var stmt = conn.createStatement();
-             var rs = stmt.executeQuery(sql)) {
+        return queryBrowsers("getEnabledBrowsers", "SELECT * FROM browsers WHERE enabled = 1 ORDER BY is_profile, name");
+    }
 
-            while (rs.next()) {
-                browsers.add(browserFromResultSet(rs));
+    private List<Browser> queryBrowsers(String operation, String sql) {
+        return execute(operation, List.of(), () -> {
+            var browsers = new ArrayList<Browser>();
+            try (var rs = prepare(sql).executeQuery()) {
+                while (rs.next()) {
+                    browsers.add(browserFromResultSet(rs));
+                }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return browsers;
+            return browsers;
+        });
     }
 
     public Optional<Browser> getBrowser(String id) {
-        var sql = "SELECT * FROM browsers WHERE id = ?";
-
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var pstmt = conn.prepareStatement(sql)) {
-
+        return execute("getBrowser", Optional.empty(), () -> {
+            var pstmt = prepare("SELECT * FROM browsers WHERE id = ?");
             pstmt.setString(1, id);
             try (var rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return Optional.of(browserFromResultSet(rs));
-                }
+                return rs.next() ? Optional.of(browserFromResultSet(rs)) : Optional.empty();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return Optional.empty();
+        });
     }
 
+    private static final String SAVE_BROWSER_SQL = """
+        INSERT OR REPLACE INTO browsers
+        (id, name, exe_path, icon_path, profile_arg, incognito_arg, is_profile, parent_browser_id, enabled)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
     public void saveBrowser(Browser browser) {
-        var sql = """
-            INSERT OR REPLACE INTO browsers
-            (id, name, exe_path, icon_path, profile_arg, incognito_arg, is_profile, parent_browser_id, enabled)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
-            """;
+        execute("saveBrowser", null, () -> {
+            var pstmt = prepare(SAVE_BROWSER_SQL);
+            bindBrowser(pstmt, browser);
+            return pstmt.executeUpdate();
+        });
+    }
 
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, browser.id());
-            pstmt.setString(2, browser.name());
-            pstmt.setString(3, browser.exePath().toString());
-            pstmt.setString(4, browser.iconPath() != null ? browser.iconPath().toString() : null);
-            pstmt.setString(5, browser.profileArg());
-            pstmt.setString(6, browser.incognitoArg());
-            pstmt.setInt(7, browser.isProfile() ? 1 : 0);
-            pstmt.setString(8, browser.parentBrowserId());
-            pstmt.setInt(9, browser.enabled() ? 1 : 0);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Saves all browsers in one transaction.
+     */
+    public void saveBrowsers(Collection<Browser> browsers) {
+        if (browsers.isEmpty()) return;
+        execute("saveBrowsers", null, () -> inTransaction(() -> batchSaveBrowsers(browsers)));
     }
 
-    public void deleteBrowser(String id) {
-        var sql = "DELETE FROM browsers WHERE id = ?";
+    private int[] batchSaveBrowsers(Collection<Browser> browsers) throws SQLException {
+        var pstmt = prepare(SAVE_BROWSER_SQL);
+        for (var browser : browsers) {
+            bindBrowser(pstmt, browser);
+            pstmt.addBatch();
+        }
+        return pstmt.executeBatch();
+    }
 
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var pstmt = conn.prepareStatement(sql)) {
+    private static void bindBrowser(PreparedStatement pstmt, Browser browser) throws SQLException {
+        pstmt.setString(1, browser.id());
+        pstmt.setString(2, browser.name());
+        pstmt.setString(3, browser.exePath().toString());
+        pstmt.setString(4, browser.iconPath() != null ? browser.iconPath().toString() : null);
+        pstmt.setString(5, browser.profileArg());
+        pstmt.setString(6, browser.incognitoArg());
+        pstmt.setInt(7, browser.isProfile() ? 1 : 0);
+        pstmt.setString(8, browser.parentBrowserId());
+        pstmt.setInt(9, browser.enabled() ? 1 : 0);
+    }
 
+    /**
+     * Deletes the browser and forgets that a scan found it, so the next
+     * rescan adds it back if it is still installed.
+     */
+    public void deleteBrowser(String id) {
+        execute("deleteBrowser", null, () -> inTransaction(() -> {
+            var snapshot = prepare("DELETE FROM scan_snapshot WHERE browser_id = ?");
+            snapshot.setString(1, id);
+            snapshot.executeUpdate();
+            var pstmt = prepare("DELETE FROM browsers WHERE id = ?");
             pstmt.setString(1, id);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+            return pstmt.executeUpdate();
+        }));
     }
 
     public void clearBrowsers() {
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var stmt = conn.createStatement()) {
-            stmt.execute("DELETE FROM browsers");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        execute("clearBrowsers", null, () -> inTransaction(() -> {
+            prepare("DELETE FROM scan_snapshot").executeUpdate();
+            return prepare("DELETE FROM browsers").executeUpdate();
+        }));
+    }
+
+    private static final String UPSERT_DETECTED_BROWSER_SQL = """
+        INSERT INTO browsers (id, name, exe_path, icon_path, incognito_arg)
+        VALUES (?, ?, ?, ?, ?)
+        ON CONFLICT(id) DO UPDATE SET
+            name = excluded.name,
+            exe_path = excluded.exe_path,
+            icon_path = excluded.icon_path,
+            incognito_arg = excluded.incognito_arg
+        """;
+
+    /**
+     * Applies a rescan in one transaction: detected browsers are inserted or
+     * have their detected fields updated, keeping enabled and profile data;
+     * removed browsers go together with their profiles. The scan snapshot
+     * is stored alongside, for the next rescan.
+     */
+    public void applyBrowserScan(ScanDelta delta, ScanSnapshot snapshot) {
+        execute("applyBrowserScan", null, () -> inTransaction(() -> {
+            var upsert = prepare(UPSERT_DETECTED_BROWSER_SQL);
+            for (var browser : delta.added()) {
+                bindDetectedBrowser(upsert, browser);
+                upsert.addBatch();
+            }
+            for (var browser : delta.changed()) {
+                bindDetectedBrowser(upsert, browser);
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+
+            var delete = prepare("DELETE FROM browsers WHERE id = ? OR parent_browser_id = ?");
+            for (var id : delta.removed()) {
+                delete.setString(1, id);
+                delete.setString(2, id);
+                delete.addBatch();
+            }
+            delete.executeBatch();
+
+            prepare("DELETE FROM scan_snapshot").executeUpdate();
+            var insert = prepare("""
+                INSERT INTO scan_snapshot (position, source, stamp, browser_id, name, exe_path, icon_path, incognito_arg)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+                """);
+            int position = 0;
+            for (var entry : snapshot.entries()) {
+                var browser = entry.browser();
+                insert.setInt(1, position++);
+                insert.setString(2, entry.source());
+                insert.setString(3, entry.stamp());
+                insert.setString(4, browser != null ? browser.id() : null);
+                insert.setString(5, browser != null ? browser.name() : null);
+                insert.setString(6, browser != null ? browser.exePath().toString() : null);
+                insert.setString(7, browser != null && browser.iconPath() != null ? browser.iconPath().toString() : null);
+                insert.setString(8, browser != null ? browser.incognitoArg() : null);
+                insert.addBatch();
+            }
+            return insert.executeBatch();
+        }));
+    }
+
+    /**
+     * Saves added and changed profiles and deletes removed ones in one transaction.
+     */
+    public void applyProfileChanges(ScanDelta changes) {
+        if (changes.isEmpty()) return;
+        execute("applyProfileChanges", null, () -> inTransaction(() -> {
+            var upserts = new ArrayList<Browser>(changes.added());
+            upserts.addAll(changes.changed());
+            batchSaveBrowsers(upserts);
+
+            var delete = prepare("DELETE FROM browsers WHERE id = ?");
+            for (var id : changes.removed()) {
+                delete.setString(1, id);
+                delete.addBatch();
+            }
+            return delete.executeBatch();
+        }));
+    }
+
+    private static void bindDetectedBrowser(PreparedStatement pstmt, Browser browser) throws SQLException {
+        pstmt.setString(1, browser.id());
+        pstmt.setString(2, browser.name());
+        pstmt.setString(3, browser.exePath().toString());
+        pstmt.setString(4, browser.iconPath() != null ? browser.iconPath().toString() : null);
+        pstmt.setString(5, browser.incognitoArg());
+    }
+
+    /**
+     * The snapshot stored by the last {@link #applyBrowserScan}, or an empty
+     * one if there hasn't been a scan yet.
+     */
+    public ScanSnapshot loadScanSnapshot() {
+        return execute("loadScanSnapshot", ScanSnapshot.EMPTY, () -> {
+            var entries = new ArrayList<ScanSnapshot.Entry>();
+            try (var rs = prepare("SELECT * FROM scan_snapshot ORDER BY position").executeQuery()) {
+                while (rs.next()) {
+                    var id = rs.getString("browser_id");
+                    var iconPath = rs.getString("icon_path");
+                    var browser = id == null ? null : new Browser(
+                        id,
+                        rs.getString("name"),
+                        Path.of(rs.getString("exe_path")),
+                        iconPath != null ? Path.of(iconPath) : null,
+                        null,
+                        rs.getString("incognito_arg"),
+                        false,
+                        null,
+                        true
+                    );
+                    entries.add(new ScanSnapshot.Entry(rs.getString("source"), rs.getString("stamp"), browser));
+                }
+            }
+            return new ScanSnapshot(entries);
+        });
     }
 
     private Browser browserFromResultSet(ResultSet rs) throws SQLException {
@@ -199,60 +465,74 @@ public final class DatabaseService {
 
     // URL Rule operations
     public List<UrlRule> getAllRules() {
-        var rules = new ArrayList<UrlRule>();
-        var sql = "SELECT * FROM url_rules ORDER BY priority DESC, id";
-
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var stmt = conn.createStatement();
-             var rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                rules.add(ruleFromResultSet(rs));
+        return execute("getAllRules", List.of(), () -> {
+            var rules = new ArrayList<UrlRule>();
+            try (var rs = prepare("SELECT * FROM url_rules ORDER BY priority DESC, id").executeQuery()) {
+                while (rs.next()) {
+                    rules.add(ruleFromResultSet(rs));
+                }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return rules;
+            return rules;
+        });
     }
 
-    public Optional<UrlRule> findMatchingRule(String url) {
-        var rules = getAllRules();
-        return rules.stream()
-            .filter(rule -> PatternMatcher.matches(rule.pattern(), url))
-            .findFirst();
-    }
+    private static final String SAVE_RULE_SQL = """
+        INSERT OR REPLACE INTO url_rules (id, pattern, browser_id, priority)
+        VALUES (COALESCE(?, (SELECT id FROM url_rules WHERE pattern = ?)), ?, ?, ?)
+        """;
 
     public void saveRule(UrlRule rule) {
-        var sql = """
-            INSERT OR REPLACE INTO url_rules (id, pattern, browser_id, priority)
-            VALUES (COALESCE(?, (SELECT id FROM url_rules WHERE pattern = ?)), ?, ?, ?)
-            """;
+        execute("saveRule", null, () -> {
+            var pstmt = prepare(SAVE_RULE_SQL);
+            bindRule(pstmt, rule);
+            return pstmt.executeUpdate();
+        });
+    }
 
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var pstmt = conn.prepareStatement(sql)) {
+    /**
+     * Saves all rules in one transaction.
+     */
+    public void saveRules(Collection<UrlRule> rules) {
+        if (rules.isEmpty()) return;
+        execute("saveRules", null, () -> inTransaction(() -> {
+            var pstmt = prepare(SAVE_RULE_SQL);
+            for (var rule : rules) {
+                bindRule(pstmt, rule);
+                pstmt.addBatch();
+            }
+            return pstmt.executeBatch();
+        }));
+    }
 
-            pstmt.setObject(1, rule.id() > 0 ? rule.id() : null);
-            pstmt.setString(2, rule.pattern());
-            pstmt.setString(3, rule.pattern());
-            pstmt.setString(4, rule.browserId());
-            pstmt.setInt(5, rule.priority());
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    private static void bindRule(PreparedStatement pstmt, UrlRule rule) throws SQLException {
+        pstmt.setObject(1, rule.id() > 0 ? rule.id() : null);
+        pstmt.setString(2, rule.pattern());
+        pstmt.setString(3, rule.pattern());
+        pstmt.setString(4, rule.browserId());
+        pstmt.setInt(5, rule.priority());
     }
 
     public void deleteRule(int id) {
-        var sql = "DELETE FROM url_rules WHERE id = ?";
-
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var pstmt = conn.prepareStatement(sql)) {
-
+        execute("deleteRule", null, () -> {
+            var pstmt = prepare("DELETE FROM url_rules WHERE id = ?");
             pstmt.setInt(1, id);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+            return pstmt.executeUpdate();
+        });
+    }
+
+    /**
+     * Deletes all rules with the given ids in one transaction.
+     */
+    public void deleteRules(Collection<Integer> ids) {
+        if (ids.isEmpty()) return;
+        execute("deleteRules", null, () -> inTransaction(() -> {
+            var pstmt = prepare("DELETE FROM url_rules WHERE id = ?");
+            for (var id : ids) {
+                pstmt.setInt(1, id);
+                pstmt.addBatch();
+            }
+            return pstmt.executeBatch();
+        }));
     }
 
     private UrlRule ruleFromResultSet(ResultSet rs) throws SQLException {
@@ -282,47 +562,43 @@ public final class DatabaseService {
 
     // Settings operations
     public boolean getToggle(String key, boolean defaultValue) {
-        var sql = "SELECT value FROM settings WHERE key = ?";
-
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var pstmt = conn.prepareStatement(sql)) {
-
+        return execute("getToggle", defaultValue, () -> {
+            var pstmt = prepare("SELECT value FROM settings WHERE key = ?");
             pstmt.setString(1, key);
             try (var rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return Boolean.parseBoolean(rs.getString("value"));
-                }
+                return rs.next() ? Boolean.parseBoolean(rs.getString("value")) : defaultValue;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return defaultValue;
+        });
     }
 
     public String getText(String key, String defaultValue) {
-        var sql = "SELECT value FROM settings WHERE key = ?";
-
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var pstmt = conn.prepareStatement(sql)) {
-
+        return execute("getText", defaultValue, () -> {
+            var pstmt = prepare("SELECT value FROM settings WHERE key = ?");
             pstmt.setString(1, key);
             try (var rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getString("value");
+                return rs.next() ? rs.getString("value") : defaultValue;
+            }
+        });
+    }
+
+    /**
+     * Every setting that has a value, keyed by name.
+     */
+    public Map<String, String> getAllSettings() {
+        return execute("getAllSettings", Map.of(), () -> {
+            var settings = new HashMap<String, String>();
+            try (var rs = prepare("SELECT key, value FROM settings WHERE value IS NOT NULL").executeQuery()) {
+                while (rs.next()) {
+                    settings.put(rs.getString("key"), rs.getString("value"));
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return defaultValue;
+            return settings;
+        });
     }
 
     public void saveSetting(Setting setting) {
-        var sql = "INSERT OR REPLACE INTO settings (key, value) VALUES (?, ?)";
-
-        try (var conn = DriverManager.getConnection(dbUrl);
-             var pstmt = conn.prepareStatement(sql)) {
-
+        execute("saveSetting", null, () -> {
+            var pstmt = prepare("INSERT OR REPLACE INTO settings (key, value) VALUES (?, ?)");
             switch (setting) {
                 case Setting.Toggle t -> {
                     pstmt.setString(1, t.key());
@@ -333,9 +609,7 @@ public final class DatabaseService {
                     pstmt.setString(2, t.value());
                 }
             }
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+            return pstmt.executeUpdate();
+        });
     }
 }
@@ -0,0 +1,170 @@
+package com.browserselector.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the commands of {@code Exec=} lines for one browser scan.
+ *
+ * Each PATH directory (and each of the usual bin directories) is listed once,
+ * on first use, into a set of names, so a lookup is a few set probes instead
+ * of an exists/isExecutable pair per directory. Only a name that is actually
+ * listed is stat'ed, once, to follow symlinks and check it's executable.
+ * Lookups give the same answers as probing the filesystem directory by
+ * directory; {@link #statCallsSaved()} says how many calls that would have
+ * cost beyond what the index made, counting a directory listing as one call.
+ *
+ * Safe to share between the parses of a scan.
+ */
+final class ExecutableIndex {
+
+    private static final List<Path> COMMON_DIRS = List.of(
+        Path.of("/usr/bin"), Path.of("/usr/local/bin"), Path.of("/bin"), Path.of("/snap/bin"));
+
+    private final List<Path> pathDirs;
+    private final List<Path> commonDirs;
+    private final Set<Path> indexedDirs = new HashSet<>();
+    private final Map<Path, Set<String>> listings = new ConcurrentHashMap<>();
+    private final Map<Path, Boolean> exists = new ConcurrentHashMap<>();
+    private final Map<Path, Boolean> executable = new ConcurrentHashMap<>();
+    private final AtomicLong statCalls = new AtomicLong();
+    private final AtomicLong probingStatCalls = new AtomicLong();
+
+    ExecutableIndex(List<Path> pathDirs, List<Path> commonDirs) {
+        this.pathDirs = List.copyOf(pathDirs);
+        this.commonDirs = List.copyOf(commonDirs);
+        indexedDirs.addAll(pathDirs);
+        indexedDirs.addAll(commonDirs);
+    }
+
+    /**
+     * An index over this process's PATH and the usual bin directories.
+     */
+    static ExecutableIndex fromEnvironment() {
+        var pathEnv = System.getenv("PATH");
+        var pathDirs = pathEnv == null ? List.<Path>of()
+            : Arrays.stream(pathEnv.split(File.pathSeparator)).map(Path::of).toList();
+        return new ExecutableIndex(pathDirs, COMMON_DIRS);
+    }
+
+    /**
+     * The first executable named {@code command} on PATH, else the first
+     * existing file of that name in the usual bin directories, or null.
+     * An absolute command is returned if it exists.
+     */
+    Path find(String command) {
+        if (command == null || command.isBlank()) {
+            return null;
+        }
+
+        // If already absolute path
+        if (command.startsWith("/")) {
+            var path = Path.of(command);
+            return exists(path) ? path : null;
+        }
+        if (command.indexOf('/') >= 0) {
+            // Not a plain name, so no listing can answer it
+            return probe(command);
+        }
+
+        long probing = 0;
+        try {
+            for (var dir : pathDirs) {
+                probing++;
+                var path = dir.resolve(command);
+                if (!listing(dir).contains(command) || !cachedExists(path)) continue;
+                probing++;
+                if (cachedExecutable(path)) {
+                    return path;
+                }
+            }
+            for (var dir : commonDirs) {
+                probing++;
+                var path = dir.resolve(command);
+                if (listing(dir).contains(command) && cachedExists(path)) {
+                    return path;
+                }
+            }
+            return null;
+        } finally {
+            probingStatCalls.addAndGet(probing);
+        }
+    }
+
+    /**
+     * Whether {@code path} exists, answered from a listing when its
+     * directory is indexed.
+     */
+    boolean exists(Path path) {
+        probingStatCalls.incrementAndGet();
+        var dir = path.getParent();
+        var name = path.getFileName();
+        if (dir != null && name != null && indexedDirs.contains(dir) && !listing(dir).contains(name.toString())) {
+            return false;
+        }
+        return cachedExists(path);
+    }
+
+    /**
+     * Stat calls that probing each directory in turn would have made beyond
+     * the ones this index made. Negative while the listings haven't paid off.
+     */
+    long statCallsSaved() {
+        return probingStatCalls.get() - statCalls.get();
+    }
+
+    private Set<String> listing(Path dir) {
+        return listings.computeIfAbsent(dir, d -> {
+            statCalls.incrementAndGet();
+            var names = new HashSet<String>();
+            try (var stream = Files.newDirectoryStream(d)) {
+                for (var entry : stream) {
+                    names.add(entry.getFileName().toString());
+                }
+            } catch (IOException e) {
+                // Missing or unreadable; nothing found here
+            }
+            return names;
+        });
+    }
+
+    private boolean cachedExists(Path path) {
+        return exists.computeIfAbsent(path, p -> {
+            statCalls.incrementAndGet();
+            return Files.exists(p);
+        });
+    }
+
+    private boolean cachedExecutable(Path path) {
+        return executable.computeIfAbsent(path, p -> {
+            statCalls.incrementAndGet();
+            return Files.isExecutable(p);
+        });
+    }
+
+    // The pre-index lookup, for commands with a directory part
+    private Path probe(String command) {
+        for (var dir : pathDirs) {
+            var path = dir.resolve(command);
+            if (cachedExists(path) && cachedExecutable(path)) {
+                return path;
+            }
+        }
+        for (var dir : commonDirs) {
+            var path = dir.resolve(command);
+            if (cachedExists(path)) {
+                return path;
+            }
+        }
+        return null;
+    }
+}
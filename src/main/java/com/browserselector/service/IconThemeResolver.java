@@ -0,0 +1,462 @@
+package com.browserselector.service;
+
+import com.browserselector.util.AppPaths;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds icon files by name the way freedesktop icon themes define it.
+ *
+ * The configured theme, its {@code Inherits} chain and finally hicolor are
+ * read from their index.theme files, and every directory they list is read
+ * once into a name-to-files index, each file tagged with its directory's
+ * size bucket. A lookup is a map probe followed by a pick among that name's
+ * few files: the first exact size match in the nearest theme, else the
+ * closest size, else the pixmaps directories. Only PNG files are indexed:
+ * IconCache decodes through ImageIO, which can't read the spec's SVG and
+ * XPM, and a theme offering only those must not hide hicolor's PNG.
+ *
+ * The index is built on first use and cached to disk together with the
+ * directories searched and the modification times of every directory and
+ * index.theme it came from; it is rebuilt only when one of those changed.
+ */
+final class IconThemeResolver {
+
+    private static final String CACHE_HEADER = "browserswitch-icon-index 2";
+    private static final String FALLBACK_THEME = "hicolor";
+    // In order of preference, and only what ImageIO decodes
+    private static final String[] EXTENSIONS = {".png"};
+
+    enum Type { FIXED, SCALABLE, THRESHOLD }
+
+    /**
+     * One theme subdirectory's size bucket, from its index.theme section.
+     */
+    record Bucket(int theme, int size, int scale, Type type, int minSize, int maxSize, int threshold) {
+
+        boolean matches(int iconSize, int iconScale) {
+            if (scale != iconScale) return false;
+            return switch (type) {
+                case FIXED -> size == iconSize;
+                case SCALABLE -> minSize <= iconSize && iconSize <= maxSize;
+                case THRESHOLD -> size - threshold <= iconSize && iconSize <= size + threshold;
+            };
+        }
+
+        int distance(int iconSize, int iconScale) {
+            int wanted = iconSize * iconScale;
+            int min = switch (type) {
+                case FIXED -> size;
+                case SCALABLE -> minSize;
+                case THRESHOLD -> size - threshold;
+            } * scale;
+            int max = switch (type) {
+                case FIXED -> size;
+                case SCALABLE -> maxSize;
+                case THRESHOLD -> size + threshold;
+            } * scale;
+            if (wanted < min) return min - wanted;
+            if (wanted > max) return wanted - max;
+            return 0;
+        }
+    }
+
+    private record Candidate(Bucket bucket, Path path) {}
+
+    // Names to candidates in theme order, plus the stamps the cache is checked against
+    private record Index(Map<String, List<Candidate>> icons, Map<String, Path> pixmaps, Map<Path, Long> stamps) {}
+
+    private final String theme;
+    private final List<Path> baseDirs;
+    private final List<Path> pixmapDirs;
+    private final Path cacheFile;
+    private Index index;
+
+    IconThemeResolver(String theme, List<Path> baseDirs, List<Path> pixmapDirs, Path cacheFile) {
+        this.theme = theme;
+        this.baseDirs = List.copyOf(baseDirs);
+        this.pixmapDirs = List.copyOf(pixmapDirs);
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * A resolver for the user's GTK icon theme over the XDG data directories.
+     */
+    static IconThemeResolver forCurrentTheme() {
+        var home = Path.of(System.getProperty("user.home"));
+        var dataHome = System.getenv("XDG_DATA_HOME");
+        var dataDirs = System.getenv("XDG_DATA_DIRS");
+
+        var baseDirs = new ArrayList<Path>();
+        baseDirs.add(home.resolve(".icons"));
+        baseDirs.add((dataHome != null ? Path.of(dataHome) : home.resolve(".local/share")).resolve("icons"));
+        var pixmapDirs = new ArrayList<Path>();
+        for (var dir : (dataDirs != null && !dataDirs.isBlank() ? dataDirs : "/usr/local/share:/usr/share").split(":")) {
+            if (dir.isBlank()) continue;
+            baseDirs.add(Path.of(dir, "icons"));
+            pixmapDirs.add(Path.of(dir, "pixmaps"));
+        }
+
+        return new IconThemeResolver(configuredTheme(home), baseDirs, pixmapDirs,
+            AppPaths.dataDir().resolve("icon-theme.cache"));
+    }
+
+    // The theme GTK applications use, if set in their settings.ini
+    private static String configuredTheme(Path home) {
+        for (var version : List.of("gtk-4.0", "gtk-3.0")) {
+            var settings = home.resolve(".config").resolve(version).resolve("settings.ini");
+            try {
+                for (var line : Files.readAllLines(settings)) {
+                    var idx = line.indexOf('=');
+                    if (idx > 0 && line.substring(0, idx).trim().equals("gtk-icon-theme-name")) {
+                        var value = line.substring(idx + 1).trim();
+                        if (!value.isEmpty()) return value;
+                    }
+                }
+            } catch (IOException e) {
+                // Not configured here
+            }
+        }
+        return FALLBACK_THEME;
+    }
+
+    /**
+     * The file for icon {@code name} best suited to {@code size} px at
+     * {@code scale}, or null if no theme or pixmaps directory has it.
+     */
+    Path find(String name, int size, int scale) {
+        var current = index();
+        var candidates = current.icons().get(name);
+        if (candidates != null) {
+            int themeIndex = candidates.get(0).bucket().theme();
+            Candidate closest = null;
+            int closestDistance = Integer.MAX_VALUE;
+            for (var candidate : candidates) {
+                if (candidate.bucket().theme() != themeIndex) {
+                    // Done with the nearest theme that has the icon
+                    break;
+                }
+                if (candidate.bucket().matches(size, scale)) {
+                    return candidate.path();
+                }
+                int distance = candidate.bucket().distance(size, scale);
+                if (distance < closestDistance) {
+                    closest = candidate;
+                    closestDistance = distance;
+                }
+            }
+            return closest.path();
+        }
+        return current.pixmaps().get(name);
+    }
+
+    private synchronized Index index() {
+        if (index == null) {
+            index = readCache();
+            if (index == null) {
+                index = build();
+                writeCache(index);
+            }
+        }
+        return index;
+    }
+
+    private Index build() {
+        var stamps = new LinkedHashMap<Path, Long>();
+        var icons = new HashMap<String, List<Candidate>>();
+
+        var chain = themeChain(stamps);
+        for (int t = 0; t < chain.size(); t++) {
+            var sections = readIndexTheme(chain.get(t), stamps);
+            for (var entry : sections.entrySet()) {
+                var bucket = bucket(t, entry.getValue());
+                if (bucket == null) continue;
+                for (var base : baseDirs) {
+                    addIcons(base.resolve(chain.get(t)).resolve(entry.getKey()), bucket, icons, stamps);
+                }
+            }
+        }
+
+        // Earlier pixmaps directories win, then the preferred format
+        var pixmaps = new HashMap<String, Path>();
+        for (var dir : pixmapDirs) {
+            var inDir = new HashMap<String, Path>();
+            for (var file : list(dir, stamps)) {
+                var name = iconName(file);
+                if (name != null) {
+                    inDir.merge(name, file, IconThemeResolver::preferred);
+                }
+            }
+            inDir.forEach(pixmaps::putIfAbsent);
+        }
+        return new Index(icons, pixmaps, stamps);
+    }
+
+    // The theme, its Inherits depth first, then hicolor
+    private List<String> themeChain(Map<Path, Long> stamps) {
+        var chain = new ArrayList<String>();
+        addTheme(theme, chain, stamps);
+        if (!chain.contains(FALLBACK_THEME)) {
+            chain.add(FALLBACK_THEME);
+        }
+        return chain;
+    }
+
+    private void addTheme(String name, List<String> chain, Map<Path, Long> stamps) {
+        if (name.isBlank() || chain.contains(name)) return;
+        chain.add(name);
+        var inherits = readKey(name, "Inherits", stamps);
+        if (inherits == null) return;
+        for (var parent : inherits.split(",")) {
+            addTheme(parent.trim(), chain, stamps);
+        }
+    }
+
+    // The theme's first index.theme, by base directory order
+    private Path indexTheme(String name, Map<Path, Long> stamps) {
+        for (var base : baseDirs) {
+            var file = base.resolve(name).resolve("index.theme");
+            stamps.put(file, modified(file));
+            if (Files.isRegularFile(file)) return file;
+        }
+        return null;
+    }
+
+    private String readKey(String name, String key, Map<Path, Long> stamps) {
+        var sections = readSections(indexTheme(name, stamps));
+        var iconTheme = sections.get("Icon Theme");
+        return iconTheme != null ? iconTheme.get(key) : null;
+    }
+
+    /**
+     * The theme's directories, in the order index.theme lists them, with
+     * the keys of their sections.
+     */
+    private Map<String, Map<String, String>> readIndexTheme(String name, Map<Path, Long> stamps) {
+        var sections = readSections(indexTheme(name, stamps));
+        var directories = new LinkedHashMap<String, Map<String, String>>();
+        var iconTheme = sections.getOrDefault("Icon Theme", Map.of());
+        for (var key : List.of("Directories", "ScaledDirectories")) {
+            var value = iconTheme.get(key);
+            if (value == null) continue;
+            for (var dir : value.split(",")) {
+                dir = dir.trim();
+                if (!dir.isEmpty() && sections.containsKey(dir)) {
+                    directories.putIfAbsent(dir, sections.get(dir));
+                }
+            }
+        }
+        return directories;
+    }
+
+    private static Map<String, Map<String, String>> readSections(Path file) {
+        var sections = new HashMap<String, Map<String, String>>();
+        if (file == null) return sections;
+        try {
+            Map<String, String> current = null;
+            for (var line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                if (line.startsWith("[") && line.endsWith("]")) {
+                    current = sections.computeIfAbsent(line.substring(1, line.length() - 1), k -> new HashMap<>());
+                    continue;
+                }
+                var idx = line.indexOf('=');
+                if (current != null && idx > 0) {
+                    current.putIfAbsent(line.substring(0, idx).trim(), line.substring(idx + 1).trim());
+                }
+            }
+        } catch (IOException e) {
+            // Treat as an empty theme
+        }
+        return sections;
+    }
+
+    private static Bucket bucket(int theme, Map<String, String> keys) {
+        try {
+            int size = Integer.parseInt(keys.get("Size"));
+            int scale = Integer.parseInt(keys.getOrDefault("Scale", "1"));
+            var type = switch (keys.getOrDefault("Type", "Threshold")) {
+                case "Fixed" -> Type.FIXED;
+                case "Scalable" -> Type.SCALABLE;
+                default -> Type.THRESHOLD;
+            };
+            int minSize = Integer.parseInt(keys.getOrDefault("MinSize", String.valueOf(size)));
+            int maxSize = Integer.parseInt(keys.getOrDefault("MaxSize", String.valueOf(size)));
+            int threshold = Integer.parseInt(keys.getOrDefault("Threshold", "2"));
+            return new Bucket(theme, size, scale, type, minSize, maxSize, threshold);
+        } catch (NumberFormatException e) {
+            // Size is required
+            return null;
+        }
+    }
+
+    private static void addIcons(Path dir, Bucket bucket, Map<String, List<Candidate>> icons, Map<Path, Long> stamps) {
+        for (var file : list(dir, stamps)) {
+            var name = iconName(file);
+            if (name == null) continue;
+
+            var candidates = icons.computeIfAbsent(name, k -> new ArrayList<>());
+            var last = candidates.isEmpty() ? null : candidates.get(candidates.size() - 1);
+            if (last != null && last.bucket().equals(bucket) && last.path().getParent().equals(dir)) {
+                // Same directory, another format
+                candidates.set(candidates.size() - 1, new Candidate(bucket, preferred(last.path(), file)));
+            } else {
+                candidates.add(new Candidate(bucket, file));
+            }
+        }
+    }
+
+    private static List<Path> list(Path dir, Map<Path, Long> stamps) {
+        stamps.put(dir, modified(dir));
+        var files = new ArrayList<Path>();
+        if (!Files.isDirectory(dir)) return files;
+        try (var stream = Files.newDirectoryStream(dir)) {
+            for (var file : stream) {
+                files.add(file);
+            }
+        } catch (IOException e) {
+            // Unreadable; nothing found here
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * The icon name of a file, or null if it isn't in an icon format.
+     */
+    static String iconName(Path file) {
+        var fileName = file.getFileName().toString();
+        for (var extension : EXTENSIONS) {
+            if (fileName.endsWith(extension)) {
+                return fileName.substring(0, fileName.length() - extension.length());
+            }
+        }
+        return null;
+    }
+
+    // The earlier of EXTENSIONS
+    private static Path preferred(Path a, Path b) {
+        return extensionRank(b) < extensionRank(a) ? b : a;
+    }
+
+    private static int extensionRank(Path file) {
+        var fileName = file.getFileName().toString();
+        for (int i = 0; i < EXTENSIONS.length; i++) {
+            if (fileName.endsWith(EXTENSIONS[i])) return i;
+        }
+        return EXTENSIONS.length;
+    }
+
+    private static long modified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // Cache format: header, theme, searched directories, then stamp, bucket and icon lines
+    private Index readCache() {
+        if (cacheFile == null || !Files.isRegularFile(cacheFile)) return null;
+        try {
+            var lines = Files.readAllLines(cacheFile, StandardCharsets.UTF_8);
+            if (lines.size() < 3 || !lines.get(0).equals(CACHE_HEADER) || !lines.get(1).equals("theme\t" + theme)
+                    || !lines.get(2).equals(dirsLine())) {
+                return null;
+            }
+
+            var stamps = new LinkedHashMap<Path, Long>();
+            var buckets = new ArrayList<Bucket>();
+            var icons = new HashMap<String, List<Candidate>>();
+            var pixmaps = new HashMap<String, Path>();
+            for (var line : lines.subList(3, lines.size())) {
+                var fields = line.split("\t");
+                switch (fields[0]) {
+                    case "stamp" -> {
+                        var path = Path.of(fields[2]);
+                        var stamp = Long.parseLong(fields[1]);
+                        if (modified(path) != stamp) return null;
+                        stamps.put(path, stamp);
+                    }
+                    case "bucket" -> buckets.add(new Bucket(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Type.valueOf(fields[4]), Integer.parseInt(fields[5]),
+                        Integer.parseInt(fields[6]), Integer.parseInt(fields[7])));
+                    case "icon" -> icons.computeIfAbsent(fields[1], k -> new ArrayList<>())
+                        .add(new Candidate(buckets.get(Integer.parseInt(fields[2])), Path.of(fields[3])));
+                    case "pixmap" -> pixmaps.put(fields[1], Path.of(fields[2]));
+                    default -> {
+                        return null;
+                    }
+                }
+            }
+            return new Index(icons, pixmaps, stamps);
+        } catch (IOException | RuntimeException e) {
+            // Unreadable or from another version; rebuild
+            return null;
+        }
+    }
+
+    // A different XDG_DATA_DIRS finds different icons even where no stamp changed
+    private String dirsLine() {
+        var line = new StringBuilder("dirs");
+        for (var dir : baseDirs) {
+            line.append('\t').append(dir);
+        }
+        line.append("\tpixmaps");
+        for (var dir : pixmapDirs) {
+            line.append('\t').append(dir);
+        }
+        return line.toString();
+    }
+
+    private void writeCache(Index index) {
+        if (cacheFile == null) return;
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            var temp = Files.createTempFile(cacheFile.getParent(), "icon-theme", ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                out.write(CACHE_HEADER + "\n");
+                out.write("theme\t" + theme + "\n");
+                out.write(dirsLine() + "\n");
+                for (var stamp : index.stamps().entrySet()) {
+                    out.write("stamp\t" + stamp.getValue() + "\t" + stamp.getKey() + "\n");
+                }
+
+                var bucketIds = new HashMap<Bucket, Integer>();
+                for (var candidates : index.icons().values()) {
+                    for (var candidate : candidates) {
+                        if (bucketIds.putIfAbsent(candidate.bucket(), bucketIds.size()) == null) {
+                            var b = candidate.bucket();
+                            out.write(String.join("\t", "bucket", String.valueOf(b.theme()), String.valueOf(b.size()),
+                                String.valueOf(b.scale()), b.type().name(), String.valueOf(b.minSize()),
+                                String.valueOf(b.maxSize()), String.valueOf(b.threshold())) + "\n");
+                        }
+                    }
+                }
+                for (var entry : index.icons().entrySet()) {
+                    for (var candidate : entry.getValue()) {
+                        out.write("icon\t" + entry.getKey() + "\t" + bucketIds.get(candidate.bucket())
+                            + "\t" + candidate.path() + "\n");
+                    }
+                }
+                for (var entry : index.pixmaps().entrySet()) {
+                    out.write("pixmap\t" + entry.getKey() + "\t" + entry.getValue() + "\n");
+                }
+            }
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The disk cache is only an optimization
+        }
+    }
+}
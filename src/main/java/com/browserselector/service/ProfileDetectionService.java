@@ -0,0 +1,183 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import com.browserselector.util.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Detects the profiles of installed browsers and works out what changed.
+ *
+ * Each browser's profile file is read on its own virtual thread. Parsed
+ * profiles are cached per browser, keyed by the file's mtime and size, so
+ * an unchanged Local State or profiles.ini isn't read again. The result is
+ * a diff against the profiles already stored, which {@link #apply} writes
+ * in one transaction. Interrupting the calling thread cancels detection.
+ */
+public final class ProfileDetectionService {
+
+    @FunctionalInterface
+    public interface Progress {
+        Progress NONE = (browser, done, total) -> {};
+
+        /**
+         * Called from a worker thread as each browser's profiles are read.
+         */
+        void browserDone(Browser browser, int done, int total);
+    }
+
+    private record Cached(Browser parent, Path source, long modified, long size, List<Browser> profiles) {}
+
+    private record Detection(Browser parent, boolean sourceExists, List<Browser> profiles) {}
+
+    private static final Metrics.Histogram DETECT_TIME = Metrics.getInstance().histogram("profiles.detect");
+    private static final Metrics.Histogram READ_TIME = Metrics.getInstance().histogram("profiles.read");
+    private static final Metrics.Counter CACHE_HITS = Metrics.getInstance().counter("profiles.cacheHits");
+
+    private static ProfileDetectionService instance;
+
+    private final BrowserRepository repository;
+    private final ProfileDetector detector;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+    private final AtomicInteger reads = new AtomicInteger();
+
+    ProfileDetectionService(BrowserRepository repository, ProfileDetector detector) {
+        this.repository = repository;
+        this.detector = detector;
+    }
+
+    public static synchronized ProfileDetectionService getInstance() {
+        if (instance == null) {
+            instance = new ProfileDetectionService(BrowserRepository.getInstance(), new ProfileDetector());
+        }
+        return instance;
+    }
+
+    /**
+     * Profile changes across every stored browser.
+     */
+    public ScanDelta detectChanges(Progress progress) throws InterruptedException {
+        return detectChanges(repository.getAllBrowsers().stream().filter(b -> !b.isProfile()).toList(), progress);
+    }
+
+    /**
+     * Profile changes for the given browsers: new profiles, renamed ones
+     * (carrying over their enabled flag), and stored ones no longer in a
+     * profile file that still exists.
+     *
+     * @throws InterruptedException if the calling thread is interrupted; nothing is returned then
+     */
+    public ScanDelta detectChanges(Collection<Browser> parents, Progress progress) throws InterruptedException {
+        long start = System.nanoTime();
+        var snapshot = repository.snapshot();
+        var detected = new ArrayList<List<Browser>>();
+        var rescanned = new HashSet<String>();
+
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var completion = new ExecutorCompletionService<Detection>(executor);
+            for (var parent : parents) {
+                completion.submit(() -> detect(parent));
+            }
+
+            int total = parents.size();
+            for (int done = 1; done <= total; done++) {
+                Detection result;
+                try {
+                    result = completion.take().get();
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    throw e;
+                } catch (ExecutionException e) {
+                    // Skip this browser
+                    continue;
+                }
+                detected.add(result.profiles());
+                if (result.sourceExists()) {
+                    rescanned.add(result.parent().id());
+                }
+                progress.browserDone(result.parent(), done, total);
+            }
+        }
+
+        var added = new ArrayList<Browser>();
+        var changed = new ArrayList<Browser>();
+        var detectedIds = new HashSet<String>();
+        for (var profiles : detected) {
+            for (var profile : profiles) {
+                detectedIds.add(profile.id());
+                var existing = snapshot.browser(profile.id()).orElse(null);
+                if (existing == null) {
+                    added.add(profile);
+                } else if (!profile.equals(existing.withEnabled(true))) {
+                    // Also catches paths copied from a parent that a rescan updated
+                    changed.add(profile.withEnabled(existing.enabled()));
+                }
+            }
+        }
+        var removed = snapshot.browsers().stream()
+            .filter(b -> b.isProfile() && rescanned.contains(b.parentBrowserId()) && !detectedIds.contains(b.id()))
+            .map(Browser::id)
+            .toList();
+        DETECT_TIME.recordSince(start);
+        return new ScanDelta(added, changed, removed);
+    }
+
+    /**
+     * Writes a diff from {@link #detectChanges} to the browsers table.
+     */
+    public void apply(ScanDelta changes) {
+        repository.applyProfileChanges(changes);
+    }
+
+    /**
+     * How many profile files have been parsed, as opposed to served from the cache.
+     */
+    int reads() {
+        return reads.get();
+    }
+
+    private Detection detect(Browser parent) {
+        var source = detector.profileSource(parent);
+        if (source == null) {
+            return new Detection(parent, false, List.of());
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        } catch (IOException e) {
+            cache.remove(parent.id());
+            return new Detection(parent, false, List.of());
+        }
+
+        // Profiles inherit everything from their parent except the enabled flag
+        var key = parent.withEnabled(true);
+        var modified = attributes.lastModifiedTime().toMillis();
+        var cached = cache.get(parent.id());
+        if (cached != null && cached.parent().equals(key) && cached.source().equals(source)
+                && cached.modified() == modified && cached.size() == attributes.size()) {
+            CACHE_HITS.increment();
+            return new Detection(parent, true, cached.profiles());
+        }
+
+        reads.incrementAndGet();
+        long start = System.nanoTime();
+        var profiles = List.copyOf(detector.detectProfiles(parent));
+        READ_TIME.recordSince(start);
+        cache.put(parent.id(), new Cached(key, source, modified, attributes.size(), profiles));
+        return new Detection(parent, true, profiles);
+    }
+}
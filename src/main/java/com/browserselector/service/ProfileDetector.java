@@ -1,48 +1,110 @@
 package com.browserselector.service;
 
 import com.browserselector.model.Browser;
+import com.browserselector.util.Events;
+import com.browserselector.util.JsonReader;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
 
 public final class ProfileDetector {
 
+    private static final String FIREFOX_PROFILES = "profiles.ini";
+
+    /**
+     * A profile from Chromium's Local State: its directory under User Data,
+     * display name and avatar (e.g. "chrome://theme/IDR_PROFILE_AVATAR_26").
+     */
+    public record ChromiumProfile(String directory, String name, String avatarIcon) {}
+
+    private final Path localAppData;
+    private final Path appData;
+
+    public ProfileDetector() {
+        this(envPath("LOCALAPPDATA"), envPath("APPDATA"));
+    }
+
+    ProfileDetector(Path localAppData, Path appData) {
+        this.localAppData = localAppData;
+        this.appData = appData;
+    }
+
+    private static Path envPath(String name) {
+        var value = System.getenv(name);
+        return value != null ? Path.of(value) : null;
+    }
+
     public List<Browser> detectProfiles(Browser parentBrowser) {
-        var profiles = new ArrayList<Browser>();
+        var source = profileSource(parentBrowser);
+        if (source == null || !Files.exists(source)) {
+            return new ArrayList<>();
+        }
+
+        var event = Events.enabled() ? new Events.ProfileRead() : null;
+        if (event != null) event.begin();
+        var profiles = source.getFileName().toString().equals(FIREFOX_PROFILES)
+            ? detectFirefoxProfiles(parentBrowser, source)
+            : detectChromiumProfiles(parentBrowser, source);
+        if (event != null) event.end();
+        if (event != null && event.shouldCommit()) {
+            event.browserId = parentBrowser.id();
+            event.source = source.toString();
+            event.size = source.toFile().length();
+            event.profiles = profiles.size();
+            event.commit();
+        }
+        return profiles;
+    }
+
+    /**
+     * The file the browser's profiles are read from: Chromium's Local State
+     * or Firefox's profiles.ini. Null if the browser has no known profile file.
+     */
+    public Path profileSource(Browser parentBrowser) {
         var browserName = parentBrowser.name().toLowerCase();
 
         if (browserName.contains("chrome") || browserName.contains("chromium")) {
-            profiles.addAll(detectChromiumProfiles(parentBrowser, "Google\\Chrome"));
+            return chromiumLocalState("Google\\Chrome");
         } else if (browserName.contains("edge")) {
-            profiles.addAll(detectChromiumProfiles(parentBrowser, "Microsoft\\Edge"));
+            return chromiumLocalState("Microsoft\\Edge");
         } else if (browserName.contains("brave")) {
-            profiles.addAll(detectChromiumProfiles(parentBrowser, "BraveSoftware\\Brave-Browser"));
+            return chromiumLocalState("BraveSoftware\\Brave-Browser");
         } else if (browserName.contains("opera")) {
-            profiles.addAll(detectChromiumProfiles(parentBrowser, "Opera Software\\Opera Stable"));
+            return chromiumLocalState("Opera Software\\Opera Stable");
         } else if (browserName.contains("firefox")) {
-            profiles.addAll(detectFirefoxProfiles(parentBrowser));
+            return appData != null ? appData.resolve(Path.of("Mozilla", "Firefox", FIREFOX_PROFILES)) : null;
         }
 
-        return profiles;
+        return null;
+    }
+
+    private Path chromiumLocalState(String appDataPath) {
+        if (localAppData == null) return null;
+
+        return localAppData.resolve(appDataPath).resolve("User Data").resolve("Local State");
     }
 
-    private List<Browser> detectChromiumProfiles(Browser parent, String appDataPath) {
+    private List<Browser> detectChromiumProfiles(Browser parent, Path localStatePath) {
         var profiles = new ArrayList<Browser>();
-        var localAppData = System.getenv("LOCALAPPDATA");
-        if (localAppData == null) return profiles;
 
-        var userDataPath = Path.of(localAppData, appDataPath, "User Data");
-        var localStatePath = userDataPath.resolve("Local State");
+        try (var reader = Files.newBufferedReader(localStatePath, StandardCharsets.UTF_8)) {
+            for (var profile : readChromiumProfiles(reader)) {
+                // Skip default profile if it's just "Person 1"
+                if (profile.directory().equals("Default") && "Person 1".equals(profile.name())) {
+                    continue;
+                }
 
-        if (!Files.exists(localStatePath)) return profiles;
+                var profileId = parent.id() + "-" + profile.directory().toLowerCase().replace(" ", "-");
+                var displayName = parent.name() + " (" + profile.name() + ")";
+                var profileArg = "--profile-directory=\"" + profile.directory() + "\"";
 
-        try {
-            var content = Files.readString(localStatePath);
-            profiles.addAll(parseChromiumProfiles(parent, content));
+                profiles.add(parent.withProfile(profileId, displayName, profileArg));
+            }
         } catch (IOException e) {
             // Can't read profiles
         }
@@ -50,40 +112,68 @@ public final class ProfileDetector {
         return profiles;
     }
 
-    private List<Browser> parseChromiumProfiles(Browser parent, String localStateContent) {
-        var profiles = new ArrayList<Browser>();
-
-        // Simple JSON parsing for profile_info_cache
-        // Format: "Profile N": { "name": "Profile Name", ... }
-        var pattern = Pattern.compile("\"(Profile \\d+|Default)\"\\s*:\\s*\\{[^}]*\"name\"\\s*:\\s*\"([^\"]+)\"");
-        var matcher = pattern.matcher(localStateContent);
-
-        while (matcher.find()) {
-            var profileDir = matcher.group(1);
-            var profileName = matcher.group(2);
-
-            // Skip default profile if it's just "Person 1"
-            if (profileDir.equals("Default") && profileName.equals("Person 1")) {
+    /**
+     * The profiles in a Chromium Local State file's profile.info_cache.
+     *
+     * The file is streamed: only info_cache is read into memory, the rest
+     * is skipped, and reading stops once info_cache has been read. Entries
+     * without a name are left out.
+     */
+    static List<ChromiumProfile> readChromiumProfiles(Reader reader) throws IOException {
+        var profiles = new ArrayList<ChromiumProfile>();
+        var json = new JsonReader(reader);
+        if (json.peek() != JsonReader.Kind.OBJECT) return profiles;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            if (!json.nextName().equals("profile") || json.peek() != JsonReader.Kind.OBJECT) {
+                json.skipValue();
                 continue;
             }
-
-            var profileId = parent.id() + "-" + profileDir.toLowerCase().replace(" ", "-");
-            var displayName = parent.name() + " (" + profileName + ")";
-            var profileArg = "--profile-directory=\"" + profileDir + "\"";
-
-            profiles.add(parent.withProfile(profileId, displayName, profileArg));
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!json.nextName().equals("info_cache") || json.peek() != JsonReader.Kind.OBJECT) {
+                    json.skipValue();
+                    continue;
+                }
+                json.beginObject();
+                while (json.hasNext()) {
+                    var directory = json.nextName();
+                    var profile = json.peek() == JsonReader.Kind.OBJECT ? readProfile(json, directory) : null;
+                    if (profile == null) {
+                        json.skipValue();
+                    } else if (profile.name() != null) {
+                        profiles.add(profile);
+                    }
+                }
+                return profiles;
+            }
+            json.endObject();
         }
-
         return profiles;
     }
 
-    private List<Browser> detectFirefoxProfiles(Browser parent) {
-        var profiles = new ArrayList<Browser>();
-        var appData = System.getenv("APPDATA");
-        if (appData == null) return profiles;
+    private static ChromiumProfile readProfile(JsonReader json, String directory) throws IOException {
+        String name = null;
+        String avatar = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            var key = json.nextName();
+            var kind = json.peek();
+            if (key.equals("name") && kind != JsonReader.Kind.OBJECT && kind != JsonReader.Kind.ARRAY) {
+                name = json.nextString();
+            } else if (key.equals("avatar_icon") && kind != JsonReader.Kind.OBJECT && kind != JsonReader.Kind.ARRAY) {
+                avatar = json.nextString();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return new ChromiumProfile(directory, name, avatar);
+    }
 
-        var profilesIni = Path.of(appData, "Mozilla", "Firefox", "profiles.ini");
-        if (!Files.exists(profilesIni)) return profiles;
+    private List<Browser> detectFirefoxProfiles(Browser parent, Path profilesIni) {
+        var profiles = new ArrayList<Browser>();
 
         try {
             var lines = Files.readAllLines(profilesIni);
@@ -0,0 +1,26 @@
+package com.browserselector.service;
+
+import java.util.List;
+
+/**
+ * The read-only registry access {@link BrowserDetector} needs, so tests can
+ * stand in a fake for the Windows registry.
+ */
+interface RegistryReader {
+
+    enum Hive { LOCAL_MACHINE, CURRENT_USER }
+
+    boolean keyExists(Hive hive, String path);
+
+    List<String> subKeys(Hive hive, String path);
+
+    /**
+     * The key's default value, or null if it has none.
+     */
+    String defaultValue(Hive hive, String path);
+
+    /**
+     * When the key was last written, in epoch milliseconds, or -1 if it doesn't exist.
+     */
+    long lastWriteTime(Hive hive, String path);
+}
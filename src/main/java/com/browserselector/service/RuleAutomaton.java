@@ -0,0 +1,99 @@
+package com.browserselector.service;
+
+import com.browserselector.model.UrlRule;
+import com.browserselector.util.GlobAutomaton;
+import com.browserselector.util.ParsedUrl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Alternative to {@link RuleIndex} for very large rule sets.
+ *
+ * Plain and {@code *.domain} rules are still looked up in the index's host
+ * trie. Every other pattern is compiled into one {@link GlobAutomaton}, so a
+ * single pass over host + path finds the best of them instead of testing
+ * path rules one by one. If the automaton outgrows its memory cap, matching
+ * falls back to the index for the rest of this matcher's life.
+ */
+public final class RuleAutomaton implements RuleMatcher {
+
+    static final long DEFAULT_MEMORY_LIMIT = 32L * 1024 * 1024;
+
+    private final RuleIndex index;
+    private final GlobAutomaton automaton;
+    private final int[] ranks;
+    // "*.x" also matches the bare domain x, which the glob itself doesn't cover
+    private final Map<String, Integer> bareDomains = new HashMap<>();
+    private boolean reportedFallback;
+
+    private RuleAutomaton(List<UrlRule> rules, long memoryLimitBytes) {
+        this.index = RuleIndex.build(rules);
+
+        var scanned = index.scannedRules();
+        this.ranks = new int[scanned.size()];
+        for (int i = 0; i < scanned.size(); i++) {
+            var entry = scanned.get(i);
+            ranks[i] = entry.rank();
+            var bare = entry.compiled().bareDomain();
+            if (bare != null) {
+                bareDomains.merge(bare, entry.rank(), Math::min);
+            }
+        }
+        this.automaton = GlobAutomaton.compile(
+            scanned.stream().map(entry -> entry.compiled().glob()).toList(), memoryLimitBytes);
+    }
+
+    public static RuleAutomaton build(List<UrlRule> rules) {
+        return new RuleAutomaton(rules, DEFAULT_MEMORY_LIMIT);
+    }
+
+    static RuleAutomaton build(List<UrlRule> rules, long memoryLimitBytes) {
+        return new RuleAutomaton(rules, memoryLimitBytes);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    public boolean isOverBudget() {
+        return automaton.isOverBudget();
+    }
+
+    @Override
+    public Optional<UrlRule> findMatch(ParsedUrl url) {
+        var domain = url.host();
+        var hostAndPath = url.hostAndPath();
+
+        // The automaton checks the domain as a prefix of host + path
+        if (!RuleIndex.isIndexable(url) || !hostAndPath.startsWith(domain)) {
+            return index.findMatch(url);
+        }
+
+        var match = automaton.firstMatch(hostAndPath, domain.length());
+        if (match == GlobAutomaton.OVER_BUDGET) {
+            reportFallback();
+            return index.findMatch(url);
+        }
+
+        var best = index.lookupHost(domain);
+        if (match != GlobAutomaton.NO_MATCH) {
+            best = Math.min(best, ranks[match]);
+        }
+        var bare = bareDomains.get(domain);
+        if (bare != null) {
+            best = Math.min(best, bare);
+        }
+        return best == Integer.MAX_VALUE ? Optional.empty() : Optional.of(index.ruleAt(best));
+    }
+
+    private synchronized void reportFallback() {
+        if (!reportedFallback) {
+            reportedFallback = true;
+            System.out.println("[BrowserSwitch] Rule automaton over its memory cap, using per-rule matching");
+        }
+    }
+}
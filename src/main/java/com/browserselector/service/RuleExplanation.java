@@ -0,0 +1,106 @@
+package com.browserselector.service;
+
+import com.browserselector.model.UrlRule;
+import com.browserselector.util.ParsedUrl;
+import com.browserselector.util.PatternMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Why a URL routes where it does: every rule checked against it in the
+ * order {@link RuleIndex} ranks them, which branch of
+ * {@link PatternMatcher.Compiled#matches} accepted it, and how long the
+ * check took.
+ *
+ * The index and automaton skip most rules, so this walks them all the way
+ * {@link RuleMatcher} defines the result, and keeps what the live matcher
+ * returned next to it so a disagreement between the two shows up.
+ *
+ * @param winner  the first matching rule
+ * @param routed  what {@link BrowserRepository#findMatchingRule} returns
+ */
+public record RuleExplanation(ParsedUrl url, String matcher, List<Evaluation> evaluations,
+                              Optional<UrlRule> winner, Optional<UrlRule> routed) {
+
+    // Each check is timed this many times and the fastest kept, to filter out scheduling noise
+    private static final int REPEATS = 5;
+
+    /**
+     * @param nanos the fastest of {@value #REPEATS} runs of the check
+     */
+    public record Evaluation(int rank, UrlRule rule, PatternMatcher.Branch branch, long nanos) {
+        public boolean matched() {
+            return branch.matched();
+        }
+    }
+
+    static RuleExplanation explain(List<UrlRule> rules, ParsedUrl url, RuleMatcher matcher) {
+        var sorted = new ArrayList<>(rules);
+        sorted.sort(RuleIndex.RULE_ORDER);
+
+        var evaluations = new ArrayList<Evaluation>(sorted.size());
+        UrlRule winner = null;
+        for (var rule : sorted) {
+            var compiled = PatternMatcher.compile(rule.pattern());
+            var branch = PatternMatcher.Branch.NONE;
+            var fastest = Long.MAX_VALUE;
+            for (int i = 0; i < REPEATS; i++) {
+                long start = System.nanoTime();
+                branch = compiled.explain(url);
+                fastest = Math.min(fastest, System.nanoTime() - start);
+            }
+            evaluations.add(new Evaluation(evaluations.size() + 1, rule, branch, fastest));
+            if (winner == null && branch.matched()) {
+                winner = rule;
+            }
+        }
+        return new RuleExplanation(url, matcher.getClass().getSimpleName(), List.copyOf(evaluations),
+            Optional.ofNullable(winner), matcher.findMatch(url));
+    }
+
+    /**
+     * True if the live matcher picked the same rule as the rule-by-rule walk.
+     */
+    public boolean consistent() {
+        return winner.equals(routed);
+    }
+
+    public long totalNanos() {
+        return evaluations.stream().mapToLong(Evaluation::nanos).sum();
+    }
+
+    /**
+     * A plain-text report, as printed by --explain.
+     */
+    public String format() {
+        var out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "URL      %s%nHost     %s%nPath     %s%nMatcher  %s, %d rule(s)%n",
+            url.raw(), url.host(), url.path(), matcher, evaluations.size()));
+
+        if (!evaluations.isEmpty()) {
+            int width = Math.min(48, evaluations.stream().mapToInt(e -> e.rule().pattern().length()).max().orElse(0));
+            width = Math.max(width, "Pattern".length());
+            var row = "%4s  %8s  %-" + width + "s  %-16s  %-26s  %8s%n";
+            out.append(String.format(Locale.ROOT, "%n" + row, "#", "Priority", "Pattern", "Browser", "Result", "ns"));
+            for (var e : evaluations) {
+                out.append(String.format(Locale.ROOT, row, e.rank(), e.rule().priority(), e.rule().pattern(),
+                    e.rule().browserId(), e.branch(), e.nanos()));
+            }
+            out.append(String.format(Locale.ROOT, "%nChecked %d rule(s) in %.3f ms%n",
+                evaluations.size(), totalNanos() / 1e6));
+        }
+
+        out.append(winner.map(rule -> String.format(Locale.ROOT, "Winner   %s -> %s (rule %d, priority %d)%n",
+            rule.pattern(), rule.browserId(), rule.id(), rule.priority()))
+            .orElse("Winner   none, the selector is shown\n"));
+        if (!consistent()) {
+            out.append("Warning  ").append(matcher).append(" routes to ")
+                .append(routed.map(rule -> rule.pattern() + " -> " + rule.browserId()).orElse("the selector"))
+                .append(" instead\n");
+        }
+        return out.toString();
+    }
+}
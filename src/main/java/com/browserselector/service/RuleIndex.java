@@ -0,0 +1,175 @@
+package com.browserselector.service;
+
+import com.browserselector.model.UrlRule;
+import com.browserselector.util.ParsedUrl;
+import com.browserselector.util.PatternMatcher;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable, precompiled view of the url_rules table.
+ *
+ * Rules are ranked by priority (descending) then id, and {@link #findMatch}
+ * returns the first rule in that order that {@link PatternMatcher#matches}
+ * would accept. Instead of testing every rule, patterns are sorted into:
+ * <ul>
+ *   <li>a reverse-label host trie for plain domains and {@code *.domain}
+ *       patterns, which both match the domain itself and any subdomain</li>
+ *   <li>exact-host buckets for path patterns with a literal host, which can
+ *       only ever match that one host</li>
+ *   <li>a generic list for everything else (wildcards in the host)</li>
+ * </ul>
+ */
+public final class RuleIndex implements RuleMatcher {
+
+    static final Comparator<UrlRule> RULE_ORDER =
+        Comparator.comparingInt(UrlRule::priority).reversed().thenComparingInt(UrlRule::id);
+
+    record Entry(int rank, UrlRule rule, PatternMatcher.Compiled compiled) {}
+
+    private static final class HostNode {
+        final Map<String, HostNode> children = new HashMap<>();
+        int bestRank = Integer.MAX_VALUE;
+    }
+
+    private final List<Entry> entries;
+    private final HostNode hostTrie = new HostNode();
+    private final Map<String, List<Entry>> pathRulesByHost = new HashMap<>();
+    private final List<Entry> genericRules = new ArrayList<>();
+    private final List<Entry> scannedRules = new ArrayList<>();
+
+    private RuleIndex(List<UrlRule> rules) {
+        var sorted = new ArrayList<>(rules);
+        sorted.sort(RULE_ORDER);
+
+        var all = new ArrayList<Entry>(sorted.size());
+        for (var rule : sorted) {
+            var entry = new Entry(all.size(), rule, PatternMatcher.compile(rule.pattern()));
+            all.add(entry);
+            classify(entry);
+        }
+        this.entries = List.copyOf(all);
+    }
+
+    public static RuleIndex build(List<UrlRule> rules) {
+        return new RuleIndex(rules);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public Optional<UrlRule> findMatch(ParsedUrl url) {
+        var domain = url.host();
+
+        // The indexed structures assume a host without '/' followed by an
+        // absolute (or empty) path. Anything else, e.g. a scheme-less URL that
+        // URI parses as a bare path, is evaluated rule by rule.
+        if (!isIndexable(url)) {
+            return scanAll(url);
+        }
+
+        var best = lookupHost(domain);
+
+        var hostRules = pathRulesByHost.get(domain);
+        if (hostRules != null) {
+            best = firstMatch(hostRules, url, best);
+        }
+        best = firstMatch(genericRules, url, best);
+
+        return best == Integer.MAX_VALUE ? Optional.empty() : Optional.of(entries.get(best).rule());
+    }
+
+    private void classify(Entry entry) {
+        var pattern = entry.compiled().pattern();
+
+        // "google.com" and "*.google.com" both match google.com and any subdomain
+        var host = pattern.startsWith("*.") ? pattern.substring(2) : pattern;
+        if (isLiteral(host) && host.indexOf('/') < 0) {
+            var node = hostTrie;
+            int end = host.length();
+            while (true) {
+                int dot = host.lastIndexOf('.', end - 1);
+                node = node.children.computeIfAbsent(host.substring(dot + 1, end), k -> new HostNode());
+                if (dot < 0) break;
+                end = dot;
+            }
+            node.bestRank = Math.min(node.bestRank, entry.rank());
+            return;
+        }
+
+        // "github.com/org/*" can only match when the host is exactly github.com
+        var slash = pattern.indexOf('/');
+        if (slash >= 0 && isLiteral(pattern.substring(0, slash))) {
+            pathRulesByHost.computeIfAbsent(pattern.substring(0, slash), k -> new ArrayList<>()).add(entry);
+            scannedRules.add(entry);
+            return;
+        }
+
+        genericRules.add(entry);
+        scannedRules.add(entry);
+    }
+
+    static boolean isIndexable(ParsedUrl url) {
+        var path = url.path();
+        return (path.isEmpty() || path.charAt(0) == '/') && url.host().indexOf('/') < 0;
+    }
+
+    /**
+     * Rules that are not in the host trie, in rank order.
+     */
+    List<Entry> scannedRules() {
+        return scannedRules;
+    }
+
+    UrlRule ruleAt(int rank) {
+        return entries.get(rank).rule();
+    }
+
+    /**
+     * Best rank among plain and {@code *.domain} rules matching the domain,
+     * or {@link Integer#MAX_VALUE}.
+     */
+    int lookupHost(String domain) {
+        var best = Integer.MAX_VALUE;
+        var node = hostTrie;
+        int end = domain.length();
+        while (true) {
+            int dot = domain.lastIndexOf('.', end - 1);
+            node = node.children.get(domain.substring(dot + 1, end));
+            if (node == null) break;
+            best = Math.min(best, node.bestRank);
+            if (dot < 0) break;
+            end = dot;
+        }
+        return best;
+    }
+
+    private static int firstMatch(List<Entry> candidates, ParsedUrl url, int best) {
+        for (var entry : candidates) {
+            if (entry.rank() >= best) break;
+            if (entry.compiled().matches(url)) {
+                return entry.rank();
+            }
+        }
+        return best;
+    }
+
+    private Optional<UrlRule> scanAll(ParsedUrl url) {
+        return entries.stream()
+            .filter(entry -> entry.compiled().matches(url))
+            .map(Entry::rule)
+            .findFirst();
+    }
+
+    private static boolean isLiteral(String pattern) {
+        return pattern.indexOf('*') < 0 && pattern.indexOf('?') < 0;
+    }
+}
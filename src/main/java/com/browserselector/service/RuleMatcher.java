@@ -0,0 +1,23 @@
+package com.browserselector.service;
+
+import com.browserselector.model.UrlRule;
+import com.browserselector.util.ParsedUrl;
+
+import java.util.Optional;
+
+/**
+ * Finds the rule a URL should be routed by: the highest-priority rule (lowest
+ * id on ties) whose pattern matches, as decided by
+ * {@link com.browserselector.util.PatternMatcher}.
+ */
+public interface RuleMatcher {
+
+    Optional<UrlRule> findMatch(ParsedUrl url);
+
+    default Optional<UrlRule> findMatch(String url) {
+        if (url == null) return Optional.empty();
+        return findMatch(ParsedUrl.parse(url));
+    }
+
+    int size();
+}
@@ -0,0 +1,59 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The difference between two scans: browsers that appeared, browsers whose
+ * detected fields changed, and ids of browsers that disappeared.
+ */
+public record ScanDelta(List<Browser> added, List<Browser> changed, List<String> removed) {
+
+    public ScanDelta {
+        added = List.copyOf(added);
+        changed = List.copyOf(changed);
+        removed = List.copyOf(removed);
+    }
+
+    public static ScanDelta between(List<Browser> before, List<Browser> after) {
+        var previous = before.stream().collect(Collectors.toMap(Browser::id, Function.identity(), (a, b) -> a));
+        var added = new ArrayList<Browser>();
+        var changed = new ArrayList<Browser>();
+        for (var browser : after) {
+            var old = previous.remove(browser.id());
+            if (old == null) {
+                added.add(browser);
+            } else if (!sameDetectedFields(old, browser)) {
+                changed.add(browser);
+            }
+        }
+        var removed = before.stream()
+            .map(Browser::id)
+            .filter(previous::containsKey)
+            .distinct()
+            .toList();
+        return new ScanDelta(added, changed, removed);
+    }
+
+    // The fields a scan produces; enabled and profile data belong to the user
+    private static boolean sameDetectedFields(Browser a, Browser b) {
+        return a.name().equals(b.name())
+            && a.exePath().equals(b.exePath())
+            && Objects.equals(a.iconPath(), b.iconPath())
+            && Objects.equals(a.incognitoArg(), b.incognitoArg());
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " added, " + changed.size() + " changed, " + removed.size() + " removed";
+    }
+}
@@ -0,0 +1,55 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a browser scan saw, in scan order: one entry per desktop file or
+ * registry key, with a stamp of its on-disk state and the browser parsed
+ * from it (null if it isn't one). A later scan reuses an entry whose stamp
+ * hasn't changed instead of parsing it again.
+ */
+public record ScanSnapshot(List<Entry> entries) {
+
+    public static final ScanSnapshot EMPTY = new ScanSnapshot(List.of());
+
+    /**
+     * @param source desktop file path or registry key
+     * @param stamp  size and mtime of the file, or last-write times of the key
+     */
+    public record Entry(String source, String stamp, Browser browser) {}
+
+    public ScanSnapshot {
+        entries = List.copyOf(entries);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    Map<String, Entry> bySource() {
+        var map = new HashMap<String, Entry>();
+        for (var entry : entries) {
+            map.put(entry.source(), entry);
+        }
+        return map;
+    }
+
+    /**
+     * The browsers found, with the first entry winning a duplicate id.
+     */
+    public List<Browser> browsers() {
+        var browsers = new LinkedHashMap<String, Browser>();
+        for (var entry : entries) {
+            if (entry.browser() != null) {
+                browsers.putIfAbsent(entry.browser().id(), entry.browser());
+            }
+        }
+        return new ArrayList<>(browsers.values());
+    }
+}
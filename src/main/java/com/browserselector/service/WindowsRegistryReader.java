@@ -0,0 +1,57 @@
+package com.browserselector.service;
+
+import com.sun.jna.platform.win32.Advapi32Util;
+import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.platform.win32.WinReg;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link RegistryReader} over the real registry, through JNA.
+ */
+final class WindowsRegistryReader implements RegistryReader {
+
+    private static WinReg.HKEY hkey(Hive hive) {
+        return switch (hive) {
+            case LOCAL_MACHINE -> WinReg.HKEY_LOCAL_MACHINE;
+            case CURRENT_USER -> WinReg.HKEY_CURRENT_USER;
+        };
+    }
+
+    @Override
+    public boolean keyExists(Hive hive, String path) {
+        return Advapi32Util.registryKeyExists(hkey(hive), path);
+    }
+
+    @Override
+    public List<String> subKeys(Hive hive, String path) {
+        return Arrays.asList(Advapi32Util.registryGetKeys(hkey(hive), path));
+    }
+
+    @Override
+    public String defaultValue(Hive hive, String path) {
+        try {
+            return Advapi32Util.registryGetStringValue(hkey(hive), path, "");
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public long lastWriteTime(Hive hive, String path) {
+        WinReg.HKEYByReference key;
+        try {
+            key = Advapi32Util.registryGetKey(hkey(hive), path, WinNT.KEY_READ);
+        } catch (Exception e) {
+            return -1;
+        }
+        try {
+            return Advapi32Util.registryQueryInfoKey(key.getValue(), 0).lpftLastWriteTime.toTime();
+        } catch (Exception e) {
+            return -1;
+        } finally {
+            Advapi32Util.registryCloseKey(key.getValue());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.browserselector.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs a window's long jobs one at a time, off the event dispatch thread.
+ *
+ * While a job runs, its phase and progress are shown in {@link #component()}
+ * along with a Cancel button, and the controls that start jobs are disabled.
+ * Cancelling interrupts the job's thread; a job that writes its results
+ * calls {@link Status#commit()} first, after which it can no longer be
+ * cancelled. A new job can't start until the previous one has actually
+ * returned, so two jobs never write at the same time. Everything except
+ * {@link Job#run} happens on the event dispatch thread.
+ */
+final class BackgroundTasks {
+
+    /**
+     * What a running job reports through. Safe to call from any thread.
+     */
+    interface Status {
+        void phase(String text);
+
+        /**
+         * Switches the progress bar from indeterminate to {@code done} of {@code total}.
+         */
+        void progress(int done, int total);
+
+        /**
+         * Ends the cancellable part of the job.
+         *
+         * @throws InterruptedException if the job has been cancelled
+         */
+        void commit() throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    interface Job<T> {
+        T run(Status status) throws Exception;
+    }
+
+    private record Update(String phase, int done, int total) {}
+
+    private final JPanel panel = new JPanel(new BorderLayout(8, 0));
+    private final JLabel label = new JLabel(" ");
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JButton cancelButton = new JButton("Cancel");
+    private final List<JComponent> controls = new ArrayList<>();
+    private Worker<?> running;
+
+    BackgroundTasks() {
+        panel.add(label, BorderLayout.CENTER);
+        panel.add(progressBar, BorderLayout.EAST);
+        panel.add(cancelButton, BorderLayout.WEST);
+        cancelButton.addActionListener(e -> cancel());
+        showRunning(false);
+    }
+
+    /**
+     * The status line, for the owning window to lay out.
+     */
+    JComponent component() {
+        return panel;
+    }
+
+    /**
+     * Controls to disable while any job runs.
+     */
+    void disableWhileRunning(JComponent... components) {
+        controls.addAll(List.of(components));
+    }
+
+    boolean isRunning() {
+        return running != null;
+    }
+
+    /**
+     * Starts {@code job} on a background thread and hands its result to
+     * {@code onDone} on the event dispatch thread. Nothing is handed over if
+     * the job is cancelled or fails; the status line says which.
+     *
+     * @return false, without starting anything, if another job is still running
+     */
+    <T> boolean start(String name, Job<T> job, Consumer<T> onDone) {
+        if (running != null) return false;
+
+        running = new Worker<>(name, job, onDone);
+        label.setText(name + "...");
+        progressBar.setIndeterminate(true);
+        showRunning(true);
+        running.execute();
+        return true;
+    }
+
+    /**
+     * Asks the running job, if any, to stop.
+     */
+    void cancel() {
+        if (running != null) {
+            running.requestCancel();
+        }
+    }
+
+    private void showRunning(boolean busy) {
+        progressBar.setVisible(busy);
+        cancelButton.setVisible(busy);
+        cancelButton.setEnabled(busy);
+        for (var control : controls) {
+            control.setEnabled(!busy);
+        }
+    }
+
+    private final class Worker<T> extends SwingWorker<T, Update> implements Status {
+
+        private final String name;
+        private final Job<T> job;
+        private final Consumer<T> onDone;
+        private volatile String phase;
+        private Thread thread;
+        private boolean cancelled;
+        private boolean committed;
+
+        Worker(String name, Job<T> job, Consumer<T> onDone) {
+            this.name = name;
+            this.job = job;
+            this.onDone = onDone;
+            this.phase = name;
+        }
+
+        // Not SwingWorker.cancel: its done() fires before the job has actually stopped
+        synchronized void requestCancel() {
+            if (cancelled || committed) return;
+            cancelled = true;
+            if (thread != null) {
+                thread.interrupt();
+            }
+            label.setText("Cancelling " + name.toLowerCase() + "...");
+            cancelButton.setEnabled(false);
+        }
+
+        private synchronized boolean isCancelRequested() {
+            return cancelled;
+        }
+
+        @Override
+        protected T doInBackground() throws Exception {
+            synchronized (this) {
+                if (cancelled) throw new InterruptedException();
+                thread = Thread.currentThread();
+            }
+            try {
+                return job.run(this);
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                    // A cancel that arrived too late to matter mustn't leak into the pool thread
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        @Override
+        public void phase(String text) {
+            phase = text;
+            publish(new Update(text, -1, -1));
+        }
+
+        @Override
+        public void progress(int done, int total) {
+            publish(new Update(phase, done, total));
+        }
+
+        @Override
+        public synchronized void commit() throws InterruptedException {
+            if (cancelled) throw new InterruptedException();
+            committed = true;
+            SwingUtilities.invokeLater(() -> cancelButton.setEnabled(false));
+        }
+
+        @Override
+        protected void process(List<Update> updates) {
+            if (running != this || isCancelRequested()) return;
+            var latest = updates.getLast();
+            label.setText(latest.phase());
+            if (latest.total() > 0) {
+                progressBar.setIndeterminate(false);
+                progressBar.setMaximum(latest.total());
+                progressBar.setValue(latest.done());
+            } else {
+                progressBar.setIndeterminate(true);
+            }
+        }
+
+        @Override
+        protected void done() {
+            running = null;
+            showRunning(false);
+            try {
+                var result = get();
+                if (isCancelRequested()) {
+                    label.setText(name + " cancelled");
+                    return;
+                }
+                label.setText(" ");
+                onDone.accept(result);
+            } catch (ExecutionException e) {
+                if (isCancelRequested()) {
+                    label.setText(name + " cancelled");
+                } else {
+                    e.getCause().printStackTrace();
+                    label.setText(name + " failed: " + e.getCause().getMessage());
+                }
+            } catch (InterruptedException e) {
+                // get() after completion doesn't block
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.browserselector.ui;
+
+import com.browserselector.model.Browser;
+import com.browserselector.util.AppPaths;
+import com.browserselector.util.Metrics;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import javax.swing.filechooser.FileSystemView;
+import java.awt.*;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Browser icons, decoded once and pre-scaled for the selector list.
+ *
+ * Each icon is kept as a 24 px {@link ImageIcon} backed by a multi-resolution
+ * image with 24, 32 and 48 px variants, so it stays sharp at 100-200%
+ * display scaling. The variants are also written as PNGs to a disk cache
+ * keyed by the icon's path and modification time, which spares later runs
+ * from decoding (on Windows, extracting from an .exe) again; writing an
+ * icon's new variants deletes those of its older versions. At most
+ * {@value #MAX_ENTRIES} icons, about 15 KB each, are held in memory.
+ */
+public final class IconCache {
+
+    static final int[] SIZES = {24, 32, 48};
+    private static final int MAX_ENTRIES = 64;
+    // How long an icon is trusted before its file's mtime is checked again
+    private static final long REVALIDATE_MILLIS = 60_000;
+
+    private static final Metrics.Histogram DECODE_TIME = Metrics.getInstance().histogram("icons.decode");
+    private static final Metrics.Histogram DISK_LOAD_TIME = Metrics.getInstance().histogram("icons.diskCache");
+
+    private static IconCache instance;
+
+    private record Entry(long modified, Icon icon, long checkedAt) {}
+
+    private final Path cacheDir;
+    private final Map<Path, Entry> entries;
+
+    IconCache(Path cacheDir, int maxEntries) {
+        this.cacheDir = cacheDir;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static synchronized IconCache getInstance() {
+        if (instance == null) {
+            instance = new IconCache(AppPaths.dataDir().resolve("icons"), MAX_ENTRIES);
+        }
+        return instance;
+    }
+
+    /**
+     * The icon at {@code iconPath}, or null if there is none or it can't be decoded.
+     */
+    public synchronized Icon iconFor(Path iconPath) {
+        if (iconPath == null) return null;
+
+        var now = System.currentTimeMillis();
+        var entry = entries.get(iconPath);
+        if (entry != null && now - entry.checkedAt() < REVALIDATE_MILLIS) {
+            return entry.icon();
+        }
+
+        long modified;
+        try {
+            modified = Files.getLastModifiedTime(iconPath).toMillis();
+        } catch (IOException e) {
+            // Missing file; remembered like an undecodable one
+            modified = -1;
+        }
+
+        var icon = entry != null && entry.modified() == modified
+            ? entry.icon()
+            : modified < 0 ? null : load(iconPath, modified);
+        entries.put(iconPath, new Entry(modified, icon, now));
+        return icon;
+    }
+
+    /**
+     * Loads the icons of the given browsers ahead of time.
+     */
+    public void preload(Collection<Browser> browsers) {
+        for (var browser : browsers) {
+            iconFor(browser.iconPath());
+        }
+    }
+
+    private Icon load(Path iconPath, long modified) {
+        long start = System.nanoTime();
+        var pathKey = pathKey(iconPath);
+        var key = pathKey + "-" + modified;
+        var variants = readCached(key);
+        if (variants == null) {
+            var source = decode(iconPath);
+            if (source == null) return null;
+
+            variants = new BufferedImage[SIZES.length];
+            for (int i = 0; i < SIZES.length; i++) {
+                variants[i] = scale(source, SIZES[i]);
+            }
+            writeCached(pathKey, key, variants);
+            DECODE_TIME.recordSince(start);
+        } else {
+            DISK_LOAD_TIME.recordSince(start);
+        }
+        return new ImageIcon(new BaseMultiResolutionImage(variants));
+    }
+
+    private static BufferedImage decode(Path path) {
+        var name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".exe") || name.endsWith(".dll") || name.endsWith(".ico")) {
+            return decodeSystemIcon(path);
+        }
+        try {
+            return ImageIO.read(path.toFile());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Executables carry their icon as a resource only the shell can extract
+    private static BufferedImage decodeSystemIcon(Path path) {
+        var size = SIZES[SIZES.length - 1];
+        var icon = FileSystemView.getFileSystemView().getSystemIcon(path.toFile(), size, size);
+        if (icon == null || icon.getIconWidth() <= 0) return null;
+
+        var image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+        var g = image.createGraphics();
+        icon.paintIcon(null, g, 0, 0);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Fits the image into a size x size square, halving step by step so
+     * large sources don't alias.
+     */
+    static BufferedImage scale(BufferedImage source, int size) {
+        var current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        var scale = Math.min((double) size / width, (double) size / height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        while (width / 2 >= targetWidth && height / 2 >= targetHeight) {
+            width /= 2;
+            height /= 2;
+            current = draw(current, width, height, width, height);
+        }
+        return draw(current, targetWidth, targetHeight, size, size);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, int canvasWidth, int canvasHeight) {
+        var image = new BufferedImage(canvasWidth, canvasHeight, BufferedImage.TYPE_INT_ARGB);
+        var g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(source, (canvasWidth - width) / 2, (canvasHeight - height) / 2, width, height, null);
+        g.dispose();
+        return image;
+    }
+
+    // Cache files are named <path key>-<mtime>-<size>.png, so an icon's older versions can be found
+    private static String pathKey(Path iconPath) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256")
+                .digest(iconPath.toAbsolutePath().toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private BufferedImage[] readCached(String key) {
+        var variants = new BufferedImage[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++) {
+            var file = cacheDir.resolve(key + "-" + SIZES[i] + ".png");
+            if (!Files.isRegularFile(file)) return null;
+            try {
+                variants[i] = ImageIO.read(file.toFile());
+            } catch (IOException e) {
+                return null;
+            }
+            if (variants[i] == null) return null;
+        }
+        return variants;
+    }
+
+    private void writeCached(String pathKey, String key, BufferedImage[] variants) {
+        try {
+            Files.createDirectories(cacheDir);
+            for (int i = 0; i < SIZES.length; i++) {
+                var file = cacheDir.resolve(key + "-" + SIZES[i] + ".png");
+                var temp = Files.createTempFile(cacheDir, key + "-", ".tmp");
+                try {
+                    ImageIO.write(variants[i], "png", temp.toFile());
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            pruneOlderVersions(pathKey, key);
+        } catch (IOException e) {
+            // The disk cache is only an optimization
+        }
+    }
+
+    // Variants and leftover temp files of the icon's earlier mtimes
+    private void pruneOlderVersions(String pathKey, String key) throws IOException {
+        try (var stream = Files.newDirectoryStream(cacheDir, pathKey + "-*")) {
+            for (var file : stream) {
+                if (!file.getFileName().toString().startsWith(key + "-")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
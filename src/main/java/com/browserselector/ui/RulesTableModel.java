@@ -0,0 +1,116 @@
+package com.browserselector.ui;
+
+import com.browserselector.model.Browser;
+import com.browserselector.model.UrlRule;
+import com.browserselector.service.BrowserRepository;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rules table, read straight from a repository snapshot.
+ *
+ * Cells are looked up when the table paints them, so only visible rows
+ * cost anything and showing 100k rules is as quick as showing ten.
+ * {@link #update} fires row events covering just the rows that differ
+ * from the previous snapshot, which keeps the selection and scroll
+ * position across edits.
+ */
+final class RulesTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"Pattern", "Browser", "Priority"};
+
+    private List<UrlRule> rules;
+    private Map<String, Browser> browsers;
+
+    RulesTableModel(BrowserRepository.Snapshot snapshot) {
+        this.rules = snapshot.rules();
+        this.browsers = snapshot.browsersById();
+    }
+
+    private static String browserName(Map<String, Browser> browsers, UrlRule rule) {
+        var browser = browsers.get(rule.browserId());
+        return browser != null ? browser.name() : rule.browserId();
+    }
+
+    /**
+     * The rule shown in {@code row}, or null if there is no such row.
+     */
+    UrlRule ruleAt(int row) {
+        return row >= 0 && row < rules.size() ? rules.get(row) : null;
+    }
+
+    /**
+     * Switches to {@code snapshot}'s rules, firing events for the rows
+     * between the first and last that changed.
+     */
+    void update(BrowserRepository.Snapshot snapshot) {
+        var oldRules = rules;
+        var oldBrowsers = browsers;
+        rules = snapshot.rules();
+        browsers = snapshot.browsersById();
+
+        int oldSize = oldRules.size();
+        int newSize = rules.size();
+        int common = Math.min(oldSize, newSize);
+
+        int start = 0;
+        while (start < common && sameRow(oldRules.get(start), oldBrowsers, rules.get(start))) {
+            start++;
+        }
+        if (start == oldSize && start == newSize) return;
+
+        int oldEnd = oldSize - 1;
+        int newEnd = newSize - 1;
+        while (oldEnd >= start && newEnd >= start && sameRow(oldRules.get(oldEnd), oldBrowsers, rules.get(newEnd))) {
+            oldEnd--;
+            newEnd--;
+        }
+
+        // Rows start..oldEnd became start..newEnd
+        int updatedEnd = Math.min(oldEnd, newEnd);
+        if (updatedEnd >= start) {
+            fireTableRowsUpdated(start, updatedEnd);
+        }
+        if (newEnd > oldEnd) {
+            fireTableRowsInserted(oldEnd + 1, newEnd);
+        } else if (oldEnd > newEnd) {
+            fireTableRowsDeleted(newEnd + 1, oldEnd);
+        }
+    }
+
+    private boolean sameRow(UrlRule before, Map<String, Browser> browsersBefore, UrlRule after) {
+        return before.equals(after) && browserName(browsersBefore, before).equals(browserName(browsers, after));
+    }
+
+    @Override
+    public int getRowCount() {
+        return rules.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 2 ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        var rule = rules.get(row);
+        return switch (column) {
+            case 0 -> rule.pattern();
+            case 1 -> browserName(browsers, rule);
+            default -> rule.priority();
+        };
+    }
+}
@@ -2,7 +2,8 @@ package com.browserselector.ui;
 
 import com.browserselector.model.Browser;
 import com.browserselector.model.UrlRule;
-import com.browserselector.service.DatabaseService;
+import com.browserselector.service.BrowserLauncher;
+import com.browserselector.service.BrowserRepository;
 import com.browserselector.util.PatternMatcher;
 import com.browserselector.util.UrlUtils;
 
@@ -11,43 +12,72 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 
 public class SelectorDialog extends JDialog {
 
     private final String url;
     private final String domain;
-    private final DatabaseService db;
-    private final List<Browser> browsers;
+    private final BrowserRepository db;
     private final JFrame ownerFrame;
+    private final BrowserRepository.ChangeListener changeListener = this::onDataChanged;
+    private final List<KeyStroke> browserShortcuts = new ArrayList<>();
+    private List<Browser> browsers;
 
     private JList<Browser> browserList;
     private JCheckBox rememberCheckbox;
     private JTextField patternField;
     private boolean shiftPressed = false;
+    private KeyEventDispatcher shiftDispatcher;
 
     public SelectorDialog(String url) {
         super(createOwnerFrame(), "Select Browser", true);
         this.ownerFrame = (JFrame) getOwner();
         this.url = url;
         this.domain = UrlUtils.extractDomain(url);
-        this.db = DatabaseService.getInstance();
+        this.db = BrowserRepository.getInstance();
         this.browsers = db.getEnabledBrowsers();
 
         initUI();
         setupKeyBindings();
         centerOnScreen();
+        db.addListener(changeListener);
 
         // Dispose owner frame when dialog closes
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosed(WindowEvent e) {
+                // The focus manager outlives this dialog in a resident daemon
+                KeyboardFocusManager.getCurrentKeyboardFocusManager().removeKeyEventDispatcher(shiftDispatcher);
+                db.removeListener(changeListener);
                 if (ownerFrame != null) {
                     ownerFrame.dispose();
                 }
             }
         });
+
+        if (UiLauncher.AUTO_SELECT != null) {
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    autoSelect(UiLauncher.AUTO_SELECT);
+                }
+            });
+        }
+    }
+
+    private void autoSelect(String browserId) {
+        for (int i = 0; i < browsers.size(); i++) {
+            if (browsers.get(i).id().equals(browserId)) {
+                browserList.setSelectedIndex(i);
+                launchSelected();
+                return;
+            }
+        }
+        // Close rather than wait for a click that a benchmark run will never make
+        System.err.println("[BrowserSwitch] No browser " + browserId + " to auto-select");
+        dispose();
     }
 
     /**
@@ -184,37 +214,59 @@ public class SelectorDialog extends JDialog {
             JComponent.WHEN_IN_FOCUSED_WINDOW
         );
 
+        registerBrowserShortcuts();
+    }
+
+    // Shortcuts depend on the list, so they're replaced whenever it changes
+    private void registerBrowserShortcuts() {
+        for (var keyStroke : browserShortcuts) {
+            getRootPane().unregisterKeyboardAction(keyStroke);
+        }
+        browserShortcuts.clear();
+
         // Number keys 1-9 to select browser
         for (int i = 1; i <= 9 && i <= browsers.size(); i++) {
-            var index = i - 1;
-            getRootPane().registerKeyboardAction(
-                e -> {
-                    browserList.setSelectedIndex(index);
-                    launchSelected();
-                },
-                KeyStroke.getKeyStroke(Character.forDigit(i, 10), 0),
-                JComponent.WHEN_IN_FOCUSED_WINDOW
-            );
+            registerBrowserShortcut(KeyStroke.getKeyStroke(Character.forDigit(i, 10), 0), i - 1);
         }
 
         // First letter of browser name
         for (int i = 0; i < browsers.size(); i++) {
-            var browser = browsers.get(i);
-            var firstChar = Character.toLowerCase(browser.name().charAt(0));
-            var index = i;
-            getRootPane().registerKeyboardAction(
-                e -> {
-                    browserList.setSelectedIndex(index);
-                    launchSelected();
-                },
-                KeyStroke.getKeyStroke(firstChar),
-                JComponent.WHEN_IN_FOCUSED_WINDOW
-            );
+            var firstChar = Character.toLowerCase(browsers.get(i).name().charAt(0));
+            registerBrowserShortcut(KeyStroke.getKeyStroke(firstChar), i);
         }
     }
 
+    private void registerBrowserShortcut(KeyStroke keyStroke, int index) {
+        getRootPane().registerKeyboardAction(
+            e -> {
+                browserList.setSelectedIndex(index);
+                launchSelected();
+            },
+            keyStroke,
+            JComponent.WHEN_IN_FOCUSED_WINDOW
+        );
+        browserShortcuts.add(keyStroke);
+    }
+
+    private void onDataChanged(BrowserRepository.Table table, BrowserRepository.Snapshot snapshot) {
+        if (table != BrowserRepository.Table.BROWSERS) return;
+        SwingUtilities.invokeLater(() -> updateBrowsers(snapshot.enabledBrowsers()));
+    }
+
+    // Swaps in a changed browser list, e.g. one just installed, keeping the selection
+    private void updateBrowsers(List<Browser> updated) {
+        if (!isDisplayable() || updated.equals(browsers)) return;
+
+        var selected = browserList.getSelectedValue();
+        browsers = updated;
+        browserList.setListData(browsers.toArray(new Browser[0]));
+        int index = selected == null ? -1 : browsers.stream().map(Browser::id).toList().indexOf(selected.id());
+        browserList.setSelectedIndex(Math.max(index, 0));
+        registerBrowserShortcuts();
+    }
+
     private void addGlobalKeyListener() {
-        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(e -> {
+        shiftDispatcher = e -> {
             if (e.getID() == KeyEvent.KEY_PRESSED && e.getKeyCode() == KeyEvent.VK_SHIFT) {
                 shiftPressed = true;
                 browserList.repaint();
@@ -223,7 +275,8 @@ public class SelectorDialog extends JDialog {
                 browserList.repaint();
             }
             return false;
-        });
+        };
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().addKeyEventDispatcher(shiftDispatcher);
     }
 
     private void launchSelected() {
@@ -245,20 +298,7 @@ public class SelectorDialog extends JDialog {
 
     private void launchBrowser(Browser browser, String url, boolean incognito) {
         try {
-            var command = new java.util.ArrayList<String>();
-            command.add(browser.exePath().toString());
-
-            if (browser.profileArg() != null && !browser.profileArg().isBlank()) {
-                command.add(browser.profileArg());
-            }
-
-            if (incognito && browser.incognitoArg() != null) {
-                command.add(browser.incognitoArg());
-            }
-
-            command.add(url);
-
-            new ProcessBuilder(command).start();
+            new BrowserLauncher().launch(browser, url, incognito);
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this,
                 "Failed to launch browser: " + e.getMessage(),
@@ -293,6 +333,8 @@ public class SelectorDialog extends JDialog {
     }
 
     private class BrowserListRenderer extends DefaultListCellRenderer {
+        private static final EmptyBorder CELL_BORDER = new EmptyBorder(8, 10, 8, 10);
+
         @Override
         public Component getListCellRendererComponent(JList<?> list, Object value,
                 int index, boolean isSelected, boolean cellHasFocus) {
@@ -306,20 +348,11 @@ public class SelectorDialog extends JDialog {
                 }
                 setText(displayText);
 
-                // Load icon if available
-                if (browser.iconPath() != null && Files.exists(browser.iconPath())) {
-                    try {
-                        var icon = new ImageIcon(browser.iconPath().toString());
-                        var scaled = icon.getImage().getScaledInstance(24, 24, Image.SCALE_SMOOTH);
-                        setIcon(new ImageIcon(scaled));
-                    } catch (Exception e) {
-                        setIcon(UIManager.getIcon("FileView.computerIcon"));
-                    }
-                } else {
-                    setIcon(UIManager.getIcon("FileView.computerIcon"));
-                }
+                // Decoded and scaled once, then served from the cache on every repaint
+                var icon = IconCache.getInstance().iconFor(browser.iconPath());
+                setIcon(icon != null ? icon : UIManager.getIcon("FileView.computerIcon"));
 
-                setBorder(new EmptyBorder(8, 10, 8, 10));
+                setBorder(CELL_BORDER);
             }
 
             return this;
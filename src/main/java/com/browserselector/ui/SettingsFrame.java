@@ -4,6 +4,8 @@ import com.browserselector.model.Browser;
 import com.browserselector.model.Setting;
 import com.browserselector.model.UrlRule;
 import com.browserselector.service.*;
+import com.browserselector.util.Metrics;
+import com.browserselector.util.UrlUtils;
 import com.formdev.flatlaf.FlatDarkLaf;
 import com.formdev.flatlaf.FlatLightLaf;
 
@@ -12,42 +14,68 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class SettingsFrame extends JFrame {
 
     private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
 
-    private final DatabaseService db;
+    private final BrowserRepository db;
+    private final BrowserRepository.ChangeListener changeListener = this::onDataChanged;
     private final RegistryService registry;
     private final BrowserDetector browserDetector;
-    private final ProfileDetector profileDetector;
+    private final BackgroundTasks tasks = new BackgroundTasks();
 
     private JTabbedPane tabbedPane;
     private JTable rulesTable;
     private JTable browsersTable;
-    private DefaultTableModel rulesModel;
+    private RulesTableModel rulesModel;
     private DefaultTableModel browsersModel;
+    private DefaultTableModel metricsModel;
+    private JLabel metricsSince;
 
     private JCheckBox advancedModeCheck;
     private JCheckBox showIncognitoCheck;
     private JCheckBox darkThemeCheck;
     private JCheckBox systemThemeCheck;
+    private JCheckBox automatonMatchingCheck;
 
     private boolean advancedMode;
 
     public SettingsFrame() {
         super("Browser Switch - Settings");
-        this.db = DatabaseService.getInstance();
+        this.db = BrowserRepository.getInstance();
         this.registry = new RegistryService();
         this.browserDetector = new BrowserDetector();
-        this.profileDetector = new ProfileDetector();
         this.advancedMode = db.getToggle(Setting.Toggle.ADVANCED_MODE, false);
 
         loadAppIcon();
         initUI();
         loadData();
         centerOnScreen();
+        db.addListener(changeListener);
+    }
+
+    @Override
+    public void dispose() {
+        tasks.cancel();
+        db.removeListener(changeListener);
+        super.dispose();
+    }
+
+    // Writes reload the affected tables through here, after the current event
+    private void onDataChanged(BrowserRepository.Table table, BrowserRepository.Snapshot snapshot) {
+        if (table == BrowserRepository.Table.SETTINGS) return;
+        SwingUtilities.invokeLater(() -> {
+            if (!isDisplayable()) return;
+            // Rule rows show browser names, so both tables depend on browsers
+            loadRules();
+            if (advancedMode && table == BrowserRepository.Table.BROWSERS) {
+                loadBrowsers();
+            }
+        });
     }
 
     private void loadAppIcon() {
@@ -63,7 +91,8 @@ public class SettingsFrame extends JFrame {
     }
 
     private void initUI() {
-        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        // A resident daemon must outlive its settings window
+        setDefaultCloseOperation(DaemonService.isActive() ? DISPOSE_ON_CLOSE : EXIT_ON_CLOSE);
         setSize(700, 500);
 
         tabbedPane = new JTabbedPane();
@@ -74,12 +103,21 @@ public class SettingsFrame extends JFrame {
         // Browsers tab (advanced mode)
         if (advancedMode) {
             tabbedPane.addTab("Browsers", createBrowsersPanel());
+            var diagnostics = createDiagnosticsPanel();
+            tabbedPane.addTab("Diagnostics", diagnostics);
+            tabbedPane.addChangeListener(e -> {
+                if (tabbedPane.getSelectedComponent() == diagnostics) refreshDiagnostics();
+            });
         }
 
         // Settings tab
         tabbedPane.addTab("Settings", createSettingsPanel());
 
-        add(tabbedPane);
+        add(tabbedPane, BorderLayout.CENTER);
+
+        var statusPanel = tasks.component();
+        statusPanel.setBorder(new EmptyBorder(0, 10, 8, 10));
+        add(statusPanel, BorderLayout.SOUTH);
     }
 
     private JPanel createRulesPanel() {
@@ -87,12 +125,7 @@ public class SettingsFrame extends JFrame {
         panel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
         // Table
-        rulesModel = new DefaultTableModel(new String[]{"Pattern", "Browser", "Priority"}, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        rulesModel = new RulesTableModel(db.snapshot());
         rulesTable = new JTable(rulesModel);
         rulesTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         rulesTable.getColumnModel().getColumn(2).setPreferredWidth(60);
@@ -109,6 +142,10 @@ public class SettingsFrame extends JFrame {
         var deleteBtn = new JButton("Delete");
         deleteBtn.addActionListener(e -> deleteSelectedRule());
 
+        var explainBtn = new JButton("Test URL...");
+        explainBtn.addActionListener(e -> explainUrl());
+        tasks.disableWhileRunning(explainBtn);
+
         if (advancedMode) {
             var moveUpBtn = new JButton("Move Up");
             moveUpBtn.addActionListener(e -> moveRule(-1));
@@ -122,6 +159,7 @@ public class SettingsFrame extends JFrame {
 
         buttonPanel.add(addBtn);
         buttonPanel.add(deleteBtn);
+        buttonPanel.add(explainBtn);
 
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
@@ -178,6 +216,8 @@ public class SettingsFrame extends JFrame {
         var deleteBtn = new JButton("Delete");
         deleteBtn.addActionListener(e -> deleteSelectedBrowser());
 
+        tasks.disableWhileRunning(rescanBtn, detectProfilesBtn);
+
         buttonPanel.add(addBrowserBtn);
         buttonPanel.add(rescanBtn);
         buttonPanel.add(detectProfilesBtn);
@@ -188,6 +228,52 @@ public class SettingsFrame extends JFrame {
         return panel;
     }
 
+    private JPanel createDiagnosticsPanel() {
+        var panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // Table: timings in ms, counters only fill the count column
+        metricsModel = new DefaultTableModel(new String[]{"Metric", "Count", "Mean", "p50", "p95", "p99", "Max"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        var metricsTable = new JTable(metricsModel);
+        metricsTable.getColumnModel().getColumn(0).setPreferredWidth(200);
+        panel.add(new JScrollPane(metricsTable), BorderLayout.CENTER);
+
+        // Buttons
+        var buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+
+        var refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> refreshDiagnostics());
+        tasks.disableWhileRunning(refreshBtn);
+
+        metricsSince = new JLabel();
+        buttonPanel.add(refreshBtn);
+        buttonPanel.add(metricsSince);
+
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    private void refreshDiagnostics() {
+        tasks.start("Loading metrics", status -> Metrics.getInstance().aggregate(), report -> {
+            metricsModel.setRowCount(0);
+            report.histograms().forEach((name, summary) -> metricsModel.addRow(new Object[]{
+                name, summary.count(), formatMillis(summary.mean()), formatMillis(summary.p50()),
+                formatMillis(summary.p95()), formatMillis(summary.p99()), formatMillis(summary.max())}));
+            report.counters().forEach((name, value) -> metricsModel.addRow(new Object[]{name, value}));
+            metricsSince.setText(report.since() != null ? "Since " + report.since() : "No metrics recorded yet");
+        });
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", Metrics.Report.millis(nanos));
+    }
+
     private JPanel createSettingsPanel() {
         var panel = new JPanel(new BorderLayout(10, 10));
         panel.setBorder(new EmptyBorder(10, 10, 10, 10));
@@ -260,7 +346,13 @@ public class SettingsFrame extends JFrame {
         advancedModeCheck = new JCheckBox("Enable advanced mode", advancedMode);
         advancedModeCheck.addActionListener(e -> toggleAdvancedMode());
 
+        automatonMatchingCheck = new JCheckBox("Combined rule automaton (large rule sets)",
+            db.getToggle(Setting.Toggle.AUTOMATON_MATCHING, false));
+        automatonMatchingCheck.addActionListener(e ->
+            db.saveSetting(Setting.toggle(Setting.Toggle.AUTOMATON_MATCHING, automatonMatchingCheck.isSelected())));
+
         advancedPanel.add(advancedModeCheck);
+        advancedPanel.add(automatonMatchingCheck);
         advancedPanel.setMaximumSize(new Dimension(Integer.MAX_VALUE, advancedPanel.getPreferredSize().height + 20));
         settingsPanel.add(advancedPanel);
 
@@ -277,16 +369,11 @@ public class SettingsFrame extends JFrame {
     }
 
     private void loadRules() {
-        rulesModel.setRowCount(0);
-        for (var rule : db.getAllRules()) {
-            var browserName = db.getBrowser(rule.browserId())
-                .map(Browser::name)
-                .orElse(rule.browserId());
-            rulesModel.addRow(new Object[]{rule.pattern(), browserName, rule.priority()});
-        }
+        rulesModel.update(db.snapshot());
     }
 
     private void loadBrowsers() {
+        var selected = browsersTable.getSelectedRow();
         browsersModel.setRowCount(0);
         for (var browser : db.getAllBrowsers()) {
             browsersModel.addRow(new Object[]{
@@ -295,6 +382,13 @@ public class SettingsFrame extends JFrame {
                 browser.exePath().toString()
             });
         }
+        restoreSelection(browsersTable, selected);
+    }
+
+    private static void restoreSelection(JTable table, int row) {
+        if (row >= 0 && row < table.getRowCount()) {
+            table.setRowSelectionInterval(row, row);
+        }
     }
 
     private void addRule() {
@@ -332,37 +426,54 @@ public class SettingsFrame extends JFrame {
 
         if (browser != null) {
             db.saveRule(new UrlRule(pattern, browser.id()));
-            loadRules();
         }
     }
 
     private void deleteSelectedRule() {
-        var row = rulesTable.getSelectedRow();
-        if (row < 0) return;
-
-        var rules = db.getAllRules();
-        if (row < rules.size()) {
-            db.deleteRule(rules.get(row).id());
-            loadRules();
+        var rule = rulesModel.ruleAt(rulesTable.getSelectedRow());
+        if (rule != null) {
+            db.deleteRule(rule.id());
         }
     }
 
+    private void explainUrl() {
+        var url = JOptionPane.showInputDialog(this, "URL to test against the rules:", "Test URL",
+            JOptionPane.QUESTION_MESSAGE);
+        if (url == null || url.isBlank()) return;
+
+        var normalized = UrlUtils.isValidUrl(url.trim()) ? url.trim() : UrlUtils.normalizeUrl(url.trim());
+        tasks.start("Testing " + normalized, status -> db.explainMatch(normalized), explanation -> {
+            // Select the winning rule so it can be edited right away
+            explanation.winner().ifPresent(winner -> {
+                for (int row = 0; row < rulesModel.getRowCount(); row++) {
+                    if (rulesModel.ruleAt(row).id() == winner.id()) {
+                        rulesTable.setRowSelectionInterval(row, row);
+                        rulesTable.scrollRectToVisible(rulesTable.getCellRect(row, 0, true));
+                        break;
+                    }
+                }
+            });
+
+            var text = new JTextArea(explanation.format());
+            text.setEditable(false);
+            text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, text.getFont().getSize()));
+            var scroll = new JScrollPane(text);
+            scroll.setPreferredSize(new Dimension(760, 360));
+            JOptionPane.showMessageDialog(this, scroll, "Why This Rule", JOptionPane.INFORMATION_MESSAGE);
+        });
+    }
+
     private void moveRule(int direction) {
         var row = rulesTable.getSelectedRow();
-        if (row < 0) return;
-
-        var rules = db.getAllRules();
         var newRow = row + direction;
-        if (newRow < 0 || newRow >= rules.size()) return;
+        var rule1 = rulesModel.ruleAt(row);
+        var rule2 = rulesModel.ruleAt(newRow);
+        if (rule1 == null || rule2 == null) return;
 
         // Swap priorities
-        var rule1 = rules.get(row);
-        var rule2 = rules.get(newRow);
-
-        db.saveRule(rule1.withPriority(rule2.priority()));
-        db.saveRule(rule2.withPriority(rule1.priority()));
+        db.saveRules(List.of(rule1.withPriority(rule2.priority()), rule2.withPriority(rule1.priority())));
 
-        loadRules();
+        // The reload only updates the swapped rows, so the selection stays put
         rulesTable.setRowSelectionInterval(newRow, newRow);
     }
 
@@ -374,39 +485,33 @@ public class SettingsFrame extends JFrame {
                 JOptionPane.WARNING_MESSAGE);
             return;
         }
-        db.clearBrowsers();
-        var browsers = browserDetector.detectBrowsers();
-        for (var browser : browsers) {
-            db.saveBrowser(browser);
-        }
-        if (advancedMode) {
-            loadBrowsers();
-        }
-        JOptionPane.showMessageDialog(this,
-            "Found " + browsers.size() + " browser(s)",
+        tasks.start("Scanning browsers", status -> {
+            var result = browserDetector.scan(db.scanSnapshot());
+            status.commit();
+            status.phase("Saving " + result.delta());
+            db.applyBrowserScan(result);
+            return result;
+        }, result -> JOptionPane.showMessageDialog(this,
+            "Found " + result.browsers().size() + " browser(s): " + result.delta(),
             "Scan Complete",
-            JOptionPane.INFORMATION_MESSAGE);
+            JOptionPane.INFORMATION_MESSAGE));
     }
 
     private void detectProfiles() {
-        var browsers = db.getAllBrowsers().stream()
-            .filter(b -> !b.isProfile())
-            .toList();
-
-        int profileCount = 0;
-        for (var browser : browsers) {
-            var profiles = profileDetector.detectProfiles(browser);
-            for (var profile : profiles) {
-                db.saveBrowser(profile);
-                profileCount++;
-            }
-        }
-
-        loadBrowsers();
-        JOptionPane.showMessageDialog(this,
-            "Found " + profileCount + " profile(s)",
+        var service = ProfileDetectionService.getInstance();
+        tasks.start("Detecting profiles", status -> {
+            var changes = service.detectChanges((browser, done, total) -> {
+                status.phase("Read profiles of " + browser.name());
+                status.progress(done, total);
+            });
+            status.commit();
+            status.phase("Saving profiles: " + changes);
+            service.apply(changes);
+            return changes;
+        }, changes -> JOptionPane.showMessageDialog(this,
+            "Profiles: " + changes,
             "Profile Detection Complete",
-            JOptionPane.INFORMATION_MESSAGE);
+            JOptionPane.INFORMATION_MESSAGE));
     }
 
     private void addBrowserManually() {
@@ -488,7 +593,6 @@ public class SettingsFrame extends JFrame {
 
             var browser = new Browser(id, name, path, path, null, incognitoArg, false, null, true);
             db.saveBrowser(browser);
-            loadBrowsers();
 
             JOptionPane.showMessageDialog(this,
                 "Browser '" + name + "' added successfully.",
@@ -519,7 +623,6 @@ public class SettingsFrame extends JFrame {
 
             if (confirm == JOptionPane.YES_OPTION) {
                 db.deleteBrowser(browserId);
-                loadBrowsers();
             }
         }
     }
@@ -0,0 +1,147 @@
+package com.browserselector.ui;
+
+import com.browserselector.model.Setting;
+import com.browserselector.service.BrowserLauncher;
+import com.browserselector.service.BrowserRepository;
+import com.browserselector.util.Events;
+import com.formdev.flatlaf.FlatDarkLaf;
+import com.formdev.flatlaf.FlatLightLaf;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Single entry point from {@link com.browserselector.Main} into Swing.
+ *
+ * Main never references Swing, AWT or FlatLaf directly, so a URL that
+ * matches a rule is launched without loading any of them. The theme is set
+ * up the first time a window is actually shown.
+ */
+public final class UiLauncher {
+
+    // Benchmark hook: the browser id the selector picks by itself, as soon as it is shown
+    static final String AUTO_SELECT = System.getProperty("browserswitch.selector.autoSelect");
+
+    private static boolean themeReady;
+
+    private UiLauncher() {}
+
+    public static void showSelector(String url) {
+        // Until the dialog is on screen
+        var phase = Events.phase("selector");
+        setupTheme();
+        if (AUTO_SELECT != null && GraphicsEnvironment.isHeadless()) {
+            // No window can be shown, so take the selector's launch path without one
+            SwingUtilities.invokeLater(() -> {
+                phase.done();
+                launchAutoSelected(url);
+            });
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            var dialog = new SelectorDialog(url);
+            dialog.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    phase.done();
+                }
+            });
+            dialog.setVisible(true);
+        });
+    }
+
+    private static void launchAutoSelected(String url) {
+        var browser = BrowserRepository.getInstance().getBrowser(AUTO_SELECT);
+        if (browser.isEmpty()) {
+            System.err.println("[BrowserSwitch] No browser " + AUTO_SELECT + " to auto-select");
+            return;
+        }
+        try {
+            new BrowserLauncher().launch(browser.get(), url, false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static void showSettings() {
+        setupTheme();
+        SwingUtilities.invokeLater(() -> new SettingsFrame().setVisible(true));
+    }
+
+    public static void showLaunchError(Exception e) {
+        setupTheme();
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+            "Failed to launch browser: " + e.getMessage(),
+            "Error",
+            JOptionPane.ERROR_MESSAGE));
+    }
+
+    /**
+     * Loads the look and feel, AWT toolkit and browser icons ahead of time,
+     * for a resident daemon.
+     */
+    public static void warmUp() {
+        setupTheme();
+        Toolkit.getDefaultToolkit();
+        IconCache.getInstance().preload(BrowserRepository.getInstance().getEnabledBrowsers());
+    }
+
+    private static synchronized void setupTheme() {
+        if (themeReady) return;
+        themeReady = true;
+
+        try {
+            var db = BrowserRepository.getInstance();
+            var useSystemTheme = db.getToggle(Setting.Toggle.SYSTEM_THEME, true);
+            var useDarkTheme = db.getToggle(Setting.Toggle.DARK_THEME, false);
+
+            if (useSystemTheme) {
+                // Try to detect system theme (Windows 10/11)
+                var isDark = isSystemDarkMode();
+                if (isDark) {
+                    FlatDarkLaf.setup();
+                } else {
+                    FlatLightLaf.setup();
+                }
+            } else if (useDarkTheme) {
+                FlatDarkLaf.setup();
+            } else {
+                FlatLightLaf.setup();
+            }
+        } catch (Exception e) {
+            // Fallback to light theme
+            try {
+                FlatLightLaf.setup();
+            } catch (Exception ignored) {}
+        }
+    }
+
+    private static boolean isSystemDarkMode() {
+        try {
+            // Check Windows registry for dark mode setting
+            var process = Runtime.getRuntime().exec(new String[]{
+                "reg", "query",
+                "HKCU\\SOFTWARE\\Microsoft\\Windows\\CurrentVersion\\Themes\\Personalize",
+                "/v", "AppsUseLightTheme"
+            });
+
+            var reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains("AppsUseLightTheme")) {
+                    // Value of 0 means dark mode, 1 means light mode
+                    return line.contains("0x0");
+                }
+            }
+        } catch (Exception e) {
+            // Ignore and default to light mode
+        }
+        return false;
+    }
+}
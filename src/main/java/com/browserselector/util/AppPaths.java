@@ -0,0 +1,22 @@
+package com.browserselector.util;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public final class AppPaths {
+
+    private AppPaths() {}
+
+    /**
+     * Per-user directory for the database and other runtime files:
+     * %APPDATA%\BrowserSwitch on Windows, ~/.browserselector elsewhere.
+     */
+    public static Path dataDir() {
+        var appData = System.getenv("APPDATA");
+        var dir = appData != null
+            ? Paths.get(appData, "BrowserSwitch")
+            : Paths.get(System.getProperty("user.home"), ".browserselector");
+        dir.toFile().mkdirs();
+        return dir;
+    }
+}
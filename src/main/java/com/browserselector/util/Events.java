@@ -0,0 +1,269 @@
+package com.browserselector.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Flight Recorder events for the steps between a link click and a browser
+ * starting, so a slow run can be taken apart after the fact.
+ *
+ * Loading the first event class starts up the JFR runtime, which costs a
+ * launch about half a second, so callers create events only while
+ * {@link #enabled()}: after {@code --record}, or with the
+ * {@code browserswitch.events} system property for a recording started by
+ * {@code jcmd JFR.start}. This class itself touches no JFR type until
+ * {@link #startRecording} runs. Callers fill in fields only after
+ * {@code shouldCommit()} returns true.
+ */
+public final class Events {
+
+    // Keeps a daemon's recording from growing without bound
+    private static final long MAX_RECORDING_BYTES = 64L * 1024 * 1024;
+
+    private static volatile boolean enabled = Boolean.getBoolean("browserswitch.events");
+
+    private Events() {}
+
+    /**
+     * Whether event sites should create events at all.
+     */
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns event sites on, for a recording started some other way than {@link #startRecording}.
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * A started {@link Phase}, or a no-op when events are off.
+     */
+    public interface Span {
+        Span NONE = () -> {};
+
+        void done();
+    }
+
+    /**
+     * Starts timing the named phase; call {@link Span#done()} when it ends.
+     */
+    public static Span phase(String name) {
+        return enabled ? Phase.start(name) : Span.NONE;
+    }
+
+    @Name("browserswitch.Phase")
+    @Label("Startup Phase")
+    @Category("BrowserSwitch")
+    @StackTrace(false)
+    public static final class Phase extends Event implements Span {
+        @Label("Phase")
+        public String phase;
+
+        /**
+         * A started event for the named phase; {@link #commit()} it when the phase ends.
+         */
+        public static Phase start(String phase) {
+            var event = new Phase();
+            event.phase = phase;
+            event.begin();
+            return event;
+        }
+
+        @Override
+        public void done() {
+            commit();
+        }
+    }
+
+    @Name("browserswitch.Database")
+    @Label("Database Call")
+    @Category("BrowserSwitch")
+    @StackTrace(false)
+    public static final class Database extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Kind")
+        @Description("query, update or batch")
+        public String kind;
+
+        @Label("Rows")
+        @Description("Rows read or written, or -1 if unknown")
+        public long rows;
+
+        @Label("Failed")
+        public boolean failed;
+
+        /**
+         * Fills in kind and rows from what the call returned.
+         */
+        public void result(Object result) {
+            switch (result) {
+                case Integer count -> {
+                    kind = "update";
+                    rows = count;
+                }
+                case int[] counts -> {
+                    kind = "batch";
+                    // Drivers may report SUCCESS_NO_INFO (-2) per statement
+                    rows = 0;
+                    for (var count : counts) {
+                        rows += Math.max(0, count);
+                    }
+                }
+                case Collection<?> list -> {
+                    kind = "query";
+                    rows = list.size();
+                }
+                case Map<?, ?> map -> {
+                    kind = "query";
+                    rows = map.size();
+                }
+                case Optional<?> optional -> {
+                    kind = "query";
+                    rows = optional.isPresent() ? 1 : 0;
+                }
+                case null, default -> {
+                    kind = "query";
+                    rows = -1;
+                }
+            }
+        }
+    }
+
+    @Name("browserswitch.RuleMatch")
+    @Label("Rule Match")
+    @Category("BrowserSwitch")
+    @StackTrace(false)
+    public static final class RuleMatch extends Event {
+        @Label("Host")
+        public String host;
+
+        @Label("Matcher")
+        public String matcher;
+
+        @Label("Rules")
+        @Description("Rules the matcher holds")
+        public int rules;
+
+        @Label("Matched Pattern")
+        public String pattern;
+
+        @Label("Matched Browser")
+        public String browserId;
+    }
+
+    @Name("browserswitch.BrowserScan")
+    @Label("Browser Scan")
+    @Category("BrowserSwitch")
+    @StackTrace(false)
+    public static final class BrowserScan extends Event {
+        @Label("Browsers")
+        public int browsers;
+
+        @Label("Reparsed")
+        @Description("Desktop files or registry keys parsed rather than reused")
+        public int reparsed;
+
+        @Label("Listing")
+        @Description("Until every desktop directory was listed")
+        @Timespan
+        public long listed;
+
+        @Label("Parsing")
+        @Description("Until every desktop file was parsed")
+        @Timespan
+        public long parsed;
+    }
+
+    @Name("browserswitch.ProfileRead")
+    @Label("Profile Read")
+    @Category("BrowserSwitch")
+    @StackTrace(false)
+    public static final class ProfileRead extends Event {
+        @Label("Browser")
+        public String browserId;
+
+        @Label("Source")
+        public String source;
+
+        @Label("Size")
+        @DataAmount
+        public long size;
+
+        @Label("Profiles")
+        public int profiles;
+    }
+
+    @Name("browserswitch.Launch")
+    @Label("Browser Launch")
+    @Category("BrowserSwitch")
+    @StackTrace(false)
+    public static final class Launch extends Event {
+        @Label("Browser")
+        public String browserId;
+
+        @Label("Profile")
+        public boolean profile;
+
+        @Label("Incognito")
+        public boolean incognito;
+
+        @Label("Failed")
+        public boolean failed;
+    }
+
+    /**
+     * Starts a recording with the JDK's default settings plus these events,
+     * written to a timestamped file in {@code dir} when the JVM exits.
+     *
+     * @return the file the recording will be written to
+     */
+    public static Path startRecording(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        var file = dir.resolve("browserswitch-"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr");
+
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("Unreadable JFR configuration", e);
+        }
+        recording.setName("BrowserSwitch");
+        for (var type : List.of(Phase.class, Database.class, RuleMatch.class, BrowserScan.class,
+                ProfileRead.class, Launch.class)) {
+            recording.enable(type).withThreshold(Duration.ZERO);
+        }
+        recording.setToDisk(true);
+        recording.setMaxSize(MAX_RECORDING_BYTES);
+        recording.setDestination(file);
+        recording.setDumpOnExit(true);
+        recording.start();
+        enabled = true;
+        return file;
+    }
+}
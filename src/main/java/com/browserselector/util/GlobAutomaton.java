@@ -0,0 +1,248 @@
+package com.browserselector.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Many {@link GlobMatcher} patterns combined into one lazily built DFA.
+ *
+ * The NFAs of all patterns are laid side by side and determinized on demand:
+ * a DFA state is the set of NFA states reachable after some input, and its
+ * transitions are computed the first time a character is seen from it. Each
+ * state remembers the lowest pattern index whose NFA accepts in it, so one
+ * pass over the input yields the first matching pattern.
+ *
+ * The set of DFA states can grow exponentially with the number of
+ * wildcards, so their estimated memory is capped. Once the cap is hit the
+ * cache is dropped and {@link #firstMatch} returns {@link #OVER_BUDGET} for
+ * good, telling the caller to match pattern by pattern instead.
+ */
+public final class GlobAutomaton {
+
+    public static final int NO_MATCH = -1;
+    public static final int OVER_BUDGET = -2;
+
+    private static final byte ACCEPT = -1;
+
+    // Rough per-state overhead: object headers, the cache entry and the non-ASCII map
+    private static final int STATE_OVERHEAD_BYTES = 96;
+    private static final int ASCII_TABLE_BYTES = 128 * 4 + 16;
+    private static final int OTHER_TRANSITION_BYTES = 48;
+
+    private static final class State {
+        final int[] nfaStates;
+        final int firstAccept;
+        State[] ascii;
+        Map<Integer, State> other;
+
+        State(int[] nfaStates, int firstAccept) {
+            this.nfaStates = nfaStates;
+            this.firstAccept = firstAccept;
+        }
+    }
+
+    // Hash key for a sorted set of NFA states
+    private record StateSet(int[] states) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateSet other && Arrays.equals(states, other.states);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(states);
+        }
+    }
+
+    private final int patternCount;
+    private final long memoryLimitBytes;
+
+    // One entry per NFA state, patterns laid out one after the other
+    private final byte[] kinds;
+    private final int[] literals;
+    private final int[] owners;
+
+    private Map<StateSet, State> states = new HashMap<>();
+    private State start;
+    private long memoryUsed;
+    private boolean overBudget;
+
+    // Scratch space for computing transitions
+    private final int[] seen;
+    private int generation;
+    private int[] buffer = new int[16];
+
+    private GlobAutomaton(List<GlobMatcher> patterns, long memoryLimitBytes) {
+        this.patternCount = patterns.size();
+        this.memoryLimitBytes = memoryLimitBytes;
+
+        int total = 0;
+        for (var pattern : patterns) {
+            total += pattern.kinds().length + 1;
+        }
+        this.kinds = new byte[total];
+        this.literals = new int[total];
+        this.owners = new int[total];
+        this.seen = new int[total];
+
+        var starts = new ArrayList<Integer>(patterns.size());
+        int offset = 0;
+        for (int p = 0; p < patterns.size(); p++) {
+            var tokenKinds = patterns.get(p).kinds();
+            var tokenLiterals = patterns.get(p).literals();
+            starts.add(offset);
+            System.arraycopy(tokenKinds, 0, kinds, offset, tokenKinds.length);
+            System.arraycopy(tokenLiterals, 0, literals, offset, tokenLiterals.length);
+            Arrays.fill(owners, offset, offset + tokenKinds.length + 1, p);
+            offset += tokenKinds.length;
+            this.kinds[offset++] = ACCEPT;
+        }
+
+        generation++;
+        int count = 0;
+        for (int s : starts) {
+            count = add(s, count);
+        }
+        this.start = intern(count);
+    }
+
+    /**
+     * @param patterns in order of preference; {@link #firstMatch} returns indexes into this list
+     * @param memoryLimitBytes estimated size the DFA cache may grow to
+     */
+    public static GlobAutomaton compile(List<GlobMatcher> patterns, long memoryLimitBytes) {
+        return new GlobAutomaton(patterns, memoryLimitBytes);
+    }
+
+    public int patternCount() {
+        return patternCount;
+    }
+
+    public synchronized boolean isOverBudget() {
+        return overBudget;
+    }
+
+    /**
+     * Index of the first pattern matching either the whole input or its first
+     * {@code prefixLength} chars, {@link #NO_MATCH}, or {@link #OVER_BUDGET}.
+     */
+    public synchronized int firstMatch(CharSequence input, int prefixLength) {
+        if (overBudget) return OVER_BUDGET;
+
+        var state = start;
+        int best = Integer.MAX_VALUE;
+        int c;
+        for (int i = 0, len = input.length(); i < len && state.nfaStates.length > 0; i += Character.charCount(c)) {
+            if (i == prefixLength) {
+                best = Math.min(best, state.firstAccept);
+            }
+            c = Character.codePointAt(input, i);
+            state = next(state, c);
+            if (state == null) return OVER_BUDGET;
+        }
+        best = Math.min(best, state.firstAccept);
+        return best == Integer.MAX_VALUE ? NO_MATCH : best;
+    }
+
+    private State next(State state, int c) {
+        if (c < 128) {
+            if (state.ascii == null) {
+                if (!charge(ASCII_TABLE_BYTES)) return null;
+                state.ascii = new State[128];
+            }
+            var target = state.ascii[c];
+            if (target == null) {
+                target = step(state, c);
+                if (target == null) return null;
+                state.ascii[c] = target;
+            }
+            return target;
+        }
+
+        if (state.other == null) {
+            state.other = new HashMap<>();
+        }
+        var target = state.other.get(c);
+        if (target == null) {
+            if (!charge(OTHER_TRANSITION_BYTES)) return null;
+            target = step(state, c);
+            if (target == null) return null;
+            state.other.put(c, target);
+        }
+        return target;
+    }
+
+    private State step(State state, int c) {
+        boolean terminator = GlobMatcher.isLineTerminator(c);
+        generation++;
+        int count = 0;
+        for (int s : state.nfaStates) {
+            switch (kinds[s]) {
+                case GlobMatcher.LITERAL -> {
+                    if (literals[s] == c) count = add(s + 1, count);
+                }
+                case GlobMatcher.ANY -> {
+                    if (!terminator) count = add(s + 1, count);
+                }
+                case GlobMatcher.STAR -> {
+                    if (c != '/') count = add(s, count);
+                }
+                case GlobMatcher.DOUBLE_STAR -> {
+                    if (!terminator) count = add(s, count);
+                }
+                default -> {
+                    // Accepting states have no transitions
+                }
+            }
+        }
+        return intern(count);
+    }
+
+    // Adds an NFA state and everything reachable from it without input
+    private int add(int s, int count) {
+        while (seen[s] != generation) {
+            seen[s] = generation;
+            if (count == buffer.length) {
+                buffer = Arrays.copyOf(buffer, count * 2);
+            }
+            buffer[count++] = s;
+            if (kinds[s] != GlobMatcher.STAR && kinds[s] != GlobMatcher.DOUBLE_STAR) break;
+            s++;
+        }
+        return count;
+    }
+
+    private State intern(int count) {
+        var set = Arrays.copyOf(buffer, count);
+        Arrays.sort(set);
+        var key = new StateSet(set);
+
+        var existing = states.get(key);
+        if (existing != null) return existing;
+
+        if (!charge(STATE_OVERHEAD_BYTES + 4L * set.length)) return null;
+
+        int firstAccept = Integer.MAX_VALUE;
+        for (int s : set) {
+            if (kinds[s] == ACCEPT) {
+                firstAccept = Math.min(firstAccept, owners[s]);
+            }
+        }
+        var state = new State(set, firstAccept);
+        states.put(key, state);
+        return state;
+    }
+
+    private boolean charge(long bytes) {
+        memoryUsed += bytes;
+        if (memoryUsed <= memoryLimitBytes) return true;
+
+        overBudget = true;
+        states = Map.of();
+        start = null;
+        return false;
+    }
+}
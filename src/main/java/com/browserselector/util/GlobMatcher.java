@@ -0,0 +1,220 @@
+package com.browserselector.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Linear-time matcher for rule patterns.
+ *
+ * Supports the same syntax PatternMatcher used to translate into a regex:
+ * {@code *} matches any run of characters except '/', {@code **} any run
+ * of characters and {@code ?} exactly one character; everything else is
+ * literal. Like the regex it replaces, matching works on code points and
+ * {@code **} and {@code ?} never match a line terminator.
+ *
+ * The pattern is compiled into a token list and matched by simulating its
+ * NFA with one bit per token, so a match costs O(pattern x input) no matter
+ * how many wildcards the pattern has. Patterns of up to 63 tokens run in a
+ * single long without allocating.
+ */
+public final class GlobMatcher {
+
+    static final byte LITERAL = 0;
+    static final byte ANY = 1;
+    static final byte STAR = 2;
+    static final byte DOUBLE_STAR = 3;
+
+    private static final int WORD_STATES = 64;
+
+    private final String pattern;
+    private final byte[] kinds;
+    private final int[] literals;
+
+    // Single-word masks, used when there are fewer than 64 states
+    private final long[] asciiMasks;
+    private final int[] otherChars;
+    private final long[] otherMasks;
+    private final long anyMask;
+    private final long starMask;
+    private final long doubleStarMask;
+    private final long epsilonMask;
+
+    private GlobMatcher(String pattern) {
+        this.pattern = pattern;
+
+        var kinds = new byte[pattern.length()];
+        var literals = new int[pattern.length()];
+        int n = 0;
+        for (int i = 0; i < pattern.length(); i += Character.charCount(pattern.codePointAt(i))) {
+            int c = pattern.codePointAt(i);
+            if (c == '*') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                    kinds[n++] = DOUBLE_STAR;
+                    i++;
+                } else {
+                    kinds[n++] = STAR;
+                }
+            } else if (c == '?') {
+                kinds[n++] = ANY;
+            } else {
+                kinds[n] = LITERAL;
+                literals[n++] = c;
+            }
+        }
+        this.kinds = Arrays.copyOf(kinds, n);
+        this.literals = Arrays.copyOf(literals, n);
+
+        var ascii = new long[128];
+        var others = new ArrayList<Integer>();
+        long any = 0, star = 0, doubleStar = 0;
+        if (n < WORD_STATES) {
+            for (int i = 0; i < n; i++) {
+                long bit = 1L << i;
+                switch (this.kinds[i]) {
+                    case LITERAL -> {
+                        int c = this.literals[i];
+                        if (c < 128) {
+                            ascii[c] |= bit;
+                        } else if (!others.contains(c)) {
+                            others.add(c);
+                        }
+                    }
+                    case ANY -> any |= bit;
+                    case STAR -> star |= bit;
+                    default -> doubleStar |= bit;
+                }
+            }
+        }
+        this.asciiMasks = ascii;
+        this.otherChars = others.stream().mapToInt(Integer::intValue).toArray();
+        this.otherMasks = new long[otherChars.length];
+        for (int k = 0; k < otherChars.length; k++) {
+            for (int i = 0; i < n; i++) {
+                if (this.kinds[i] == LITERAL && this.literals[i] == otherChars[k]) {
+                    otherMasks[k] |= 1L << i;
+                }
+            }
+        }
+        this.anyMask = any;
+        this.starMask = star;
+        this.doubleStarMask = doubleStar;
+        this.epsilonMask = star | doubleStar;
+    }
+
+    public static GlobMatcher compile(String pattern) {
+        return new GlobMatcher(pattern);
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    // Token view for GlobAutomaton
+    byte[] kinds() {
+        return kinds;
+    }
+
+    int[] literals() {
+        return literals;
+    }
+
+    public boolean matches(CharSequence input) {
+        return kinds.length < WORD_STATES ? matchesWord(input) : matchesWide(input);
+    }
+
+    private boolean matchesWord(CharSequence input) {
+        long accept = 1L << kinds.length;
+        long states = closure(1L);
+        int c = 0;
+
+        for (int i = 0, len = input.length(); i < len && states != 0; i += Character.charCount(c)) {
+            c = Character.codePointAt(input, i);
+            boolean terminator = isLineTerminator(c);
+
+            long next = (states & literalMask(c)) << 1;
+            if (!terminator) {
+                next |= (states & anyMask) << 1;
+                next |= states & doubleStarMask;
+            }
+            if (c != '/') {
+                next |= states & starMask;
+            }
+            states = closure(next);
+        }
+        return (states & accept) != 0;
+    }
+
+    private long literalMask(int c) {
+        if (c < 128) return asciiMasks[c];
+        for (int k = 0; k < otherChars.length; k++) {
+            if (otherChars[k] == c) return otherMasks[k];
+        }
+        return 0;
+    }
+
+    // A wildcard may match nothing, so reaching it also reaches the token after it
+    private long closure(long states) {
+        long previous;
+        do {
+            previous = states;
+            states |= (states & epsilonMask) << 1;
+        } while (states != previous);
+        return states;
+    }
+
+    /**
+     * Same simulation over a bitset, for patterns too long for one word.
+     */
+    private boolean matchesWide(CharSequence input) {
+        int n = kinds.length;
+        var states = new boolean[n + 1];
+        var next = new boolean[n + 1];
+        states[0] = true;
+        closeWide(states);
+
+        for (int i = 0, len = input.length(), c; i < len; i += Character.charCount(c)) {
+            c = Character.codePointAt(input, i);
+            boolean terminator = isLineTerminator(c);
+            boolean any = false;
+
+            Arrays.fill(next, false);
+            for (int s = 0; s < n; s++) {
+                if (!states[s]) continue;
+                switch (kinds[s]) {
+                    case LITERAL -> next[s + 1] |= literals[s] == c;
+                    case ANY -> next[s + 1] |= !terminator;
+                    case STAR -> next[s] |= c != '/';
+                    default -> next[s] |= !terminator;
+                }
+            }
+            closeWide(next);
+
+            var swap = states;
+            states = next;
+            next = swap;
+            for (var state : states) {
+                any |= state;
+            }
+            if (!any) return false;
+        }
+        return states[n];
+    }
+
+    private void closeWide(boolean[] states) {
+        for (int s = 0; s < kinds.length; s++) {
+            if (states[s] && kinds[s] != LITERAL && kinds[s] != ANY) {
+                states[s + 1] = true;
+            }
+        }
+    }
+
+    // The characters java.util.regex '.' refuses to match without DOTALL
+    static boolean isLineTerminator(int c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
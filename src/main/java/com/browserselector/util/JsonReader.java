@@ -0,0 +1,204 @@
+package com.browserselector.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull reader over a JSON stream, for picking a few values out of large files.
+ *
+ * Values are consumed one at a time; {@link #skipValue()} passes over a
+ * whole object or array without building anything, so memory stays at one
+ * small buffer plus the strings actually read. The reader is lenient: it
+ * doesn't check that commas and colons are where the grammar wants them.
+ */
+public final class JsonReader implements Closeable {
+
+    public enum Kind { OBJECT, ARRAY, STRING, LITERAL, END }
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+
+    public JsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * The kind of the next value, or END at the end of an object, array or the input.
+     */
+    public Kind peek() throws IOException {
+        return switch (peekChar()) {
+            case '{' -> Kind.OBJECT;
+            case '[' -> Kind.ARRAY;
+            case '"' -> Kind.STRING;
+            case '}', ']', -1 -> Kind.END;
+            default -> Kind.LITERAL;
+        };
+    }
+
+    public void beginObject() throws IOException {
+        expect('{');
+    }
+
+    public void endObject() throws IOException {
+        expect('}');
+    }
+
+    public void beginArray() throws IOException {
+        expect('[');
+    }
+
+    public void endArray() throws IOException {
+        expect(']');
+    }
+
+    /**
+     * Whether the current object or array has another member.
+     */
+    public boolean hasNext() throws IOException {
+        return peek() != Kind.END;
+    }
+
+    public String nextName() throws IOException {
+        var name = readString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * The next value as a string: a string's contents, a number or boolean
+     * as written, or null for null.
+     */
+    public String nextString() throws IOException {
+        if (peekChar() == '"') {
+            return readString();
+        }
+        var literal = new StringBuilder();
+        while (!atDelimiter()) {
+            literal.append(buffer[pos++]);
+        }
+        if (literal.isEmpty()) {
+            throw new IOException("Expected a value but found '" + (char) peekChar() + "'");
+        }
+        return literal.toString().equals("null") ? null : literal.toString();
+    }
+
+    /**
+     * Skips the next value, including everything nested in it.
+     */
+    public void skipValue() throws IOException {
+        int c = peekChar();
+        if (c == '"') {
+            skipString();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = read();
+                switch (c) {
+                    case '"' -> {
+                        pos--;
+                        skipString();
+                    }
+                    case '{', '[' -> depth++;
+                    case '}', ']' -> depth--;
+                    default -> {
+                        // Contents we don't need
+                    }
+                }
+            } while (depth > 0);
+        } else {
+            while (!atDelimiter()) {
+                pos++;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean fill() throws IOException {
+        if (pos < limit) return true;
+        limit = in.read(buffer);
+        pos = 0;
+        if (limit < 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (!fill()) throw new EOFException("Unexpected end of JSON");
+        return buffer[pos++];
+    }
+
+    // The next significant character, passing whitespace and the commas between values
+    private int peekChar() throws IOException {
+        while (fill()) {
+            var c = buffer[pos];
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == ',') {
+                pos++;
+            } else {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private boolean atDelimiter() throws IOException {
+        if (!fill()) return true;
+        var c = buffer[pos];
+        return c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = peekChar();
+        if (c != expected) {
+            throw new IOException("Expected '" + expected + "' but found " + (c < 0 ? "end of input" : "'" + (char) c + "'"));
+        }
+        pos++;
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        var text = new StringBuilder();
+        while (true) {
+            int c = read();
+            if (c == '"') return text.toString();
+            if (c != '\\') {
+                text.append((char) c);
+                continue;
+            }
+            c = read();
+            switch (c) {
+                case 'b' -> text.append('\b');
+                case 'f' -> text.append('\f');
+                case 'n' -> text.append('\n');
+                case 'r' -> text.append('\r');
+                case 't' -> text.append('\t');
+                case 'u' -> {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        code = code * 16 + Character.digit(read(), 16);
+                    }
+                    text.append((char) code);
+                }
+                default -> text.append((char) c);
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        while (true) {
+            int c = read();
+            if (c == '"') return;
+            if (c == '\\') read();
+        }
+    }
+}
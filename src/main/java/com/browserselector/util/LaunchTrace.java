@@ -0,0 +1,24 @@
+package com.browserselector.util;
+
+import java.time.Instant;
+
+/**
+ * Timestamps of the steps between a link click and the browser starting,
+ * printed when the {@code browserswitch.trace} system property is true.
+ *
+ * Each mark is one line, "[BrowserSwitch] trace &lt;step&gt; &lt;epoch micros&gt;",
+ * for a harness that also knows when it started the process and when the
+ * browser started to line up against.
+ */
+public final class LaunchTrace {
+
+    private static final boolean ENABLED = Boolean.getBoolean("browserswitch.trace");
+
+    private LaunchTrace() {}
+
+    public static void mark(String step) {
+        if (!ENABLED) return;
+        var now = Instant.now();
+        System.out.println("[BrowserSwitch] trace " + step + " " + (now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000));
+    }
+}
@@ -0,0 +1,354 @@
+package com.browserselector.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the whole process.
+ *
+ * Histograms are log-linear: each power of two is split into
+ * {@value #SUB_BUCKETS} equal buckets, so a percentile is within 12.5% of
+ * the true value and recording is an index computation plus one atomic
+ * increment. Most runs live for a fraction of a second, so figures are
+ * appended to a file (metrics.log in the data directory, rolled over to
+ * metrics.log.1 past {@value #MAX_FILE_BYTES} bytes) when the process exits,
+ * or periodically in the daemon, and {@link #aggregate()} adds up
+ * everything recorded there and in this process since its last flush.
+ */
+public final class Metrics {
+
+    private static final int SUB_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Values from 2^44 ns (about 5 hours) up share the last bucket
+    private static final int MAX_EXPONENT = 44;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS + 1;
+    private static final long MAX_FILE_BYTES = 512 * 1024;
+    // False keeps figures in memory only, e.g. for the test suite
+    private static final boolean PERSIST = !"false".equals(System.getProperty("browserswitch.metrics.persist"));
+
+    private static Metrics instance;
+
+    /**
+     * Durations in nanoseconds. Safe to record from any thread.
+     */
+    public static final class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private Histogram() {}
+
+        public void record(long nanos) {
+            var value = Math.max(0, nanos);
+            counts.incrementAndGet(bucket(value));
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        /**
+         * Records the time since {@code startNanos}, a {@link System#nanoTime()} reading.
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        private Counter() {}
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+    }
+
+    /**
+     * One histogram's figures, in nanoseconds.
+     */
+    public record Summary(long count, long mean, long p50, long p95, long p99, long max) {}
+
+    /**
+     * Everything recorded since {@code since}, or everything available if null.
+     */
+    public record Report(Instant since, Map<String, Long> counters, Map<String, Summary> histograms) {
+
+        /**
+         * A plain-text table, as printed by --stats.
+         */
+        public String format() {
+            var out = new StringBuilder();
+            out.append(since != null ? "Since " + since : "No metrics recorded yet").append('\n');
+            if (!histograms.isEmpty()) {
+                out.append(String.format(Locale.ROOT, "%n%-32s %9s %10s %10s %10s %10s %10s%n",
+                    "Timing (ms)", "count", "mean", "p50", "p95", "p99", "max"));
+                histograms.forEach((name, s) -> out.append(String.format(Locale.ROOT,
+                    "%-32s %9d %10.3f %10.3f %10.3f %10.3f %10.3f%n", name, s.count(),
+                    millis(s.mean()), millis(s.p50()), millis(s.p95()), millis(s.p99()), millis(s.max()))));
+            }
+            if (!counters.isEmpty()) {
+                out.append(String.format(Locale.ROOT, "%n%-32s %9s%n", "Counter", "value"));
+                counters.forEach((name, value) -> out.append(String.format(Locale.ROOT, "%-32s %9d%n", name, value)));
+            }
+            return out.toString();
+        }
+
+        public static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    // Accumulates flushed records and live values while aggregating
+    private static final class Totals {
+        final long[] counts = new long[BUCKETS];
+        long sum;
+        long max;
+    }
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param file where {@link #flush()} appends, or null to keep everything in memory
+     */
+    Metrics(Path file, long maxFileBytes) {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public static synchronized Metrics getInstance() {
+        if (instance == null) {
+            instance = new Metrics(PERSIST ? AppPaths.dataDir().resolve("metrics.log") : null, MAX_FILE_BYTES);
+            if (PERSIST) {
+                var metrics = instance;
+                Runtime.getRuntime().addShutdownHook(new Thread(metrics::flush, "browserswitch-metrics-flush"));
+            }
+        }
+        return instance;
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(checkName(name), n -> new Histogram());
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(checkName(name), n -> new Counter());
+    }
+
+    private static String checkName(String name) {
+        if (name.isEmpty() || name.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("Metric names can't be empty or contain whitespace: '" + name + "'");
+        }
+        return name;
+    }
+
+    /**
+     * Flushes every {@code interval} on a background thread, for a long-lived process.
+     */
+    public void flushEvery(Duration interval) {
+        Thread.ofVirtual().name("browserswitch-metrics").start(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Appends what was recorded since the last flush to the metrics file
+     * and resets it. Does nothing if nothing was recorded.
+     */
+    public synchronized void flush() {
+        if (file == null) return;
+        var now = System.currentTimeMillis();
+        var lines = new StringBuilder();
+        counters.forEach((name, counter) -> {
+            var value = counter.value.sumThenReset();
+            if (value != 0) {
+                lines.append(now).append(" c ").append(name).append(' ').append(value).append('\n');
+            }
+        });
+        histograms.forEach((name, histogram) -> {
+            var buckets = new StringBuilder();
+            for (int i = 0; i < BUCKETS; i++) {
+                var count = histogram.counts.getAndSet(i, 0);
+                if (count != 0) {
+                    buckets.append(buckets.isEmpty() ? "" : ",").append(i).append(':').append(count);
+                }
+            }
+            var sum = histogram.sum.sumThenReset();
+            var max = histogram.max.getThenReset();
+            if (!buckets.isEmpty()) {
+                lines.append(now).append(" h ").append(name).append(' ')
+                    .append(sum).append(' ').append(max).append(' ').append(buckets).append('\n');
+            }
+        });
+        if (lines.isEmpty()) return;
+
+        try {
+            if (Files.exists(file) && Files.size(file) > maxFileBytes) {
+                Files.move(file, rolledFile(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            // One write per flush keeps records from concurrent processes whole
+            Files.writeString(file, lines, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            System.err.println("[BrowserSwitch] Could not write metrics: " + e.getMessage());
+        }
+    }
+
+    private Path rolledFile() {
+        return file.resolveSibling(file.getFileName() + ".1");
+    }
+
+    /**
+     * Adds up the metrics file, its rolled-over predecessor and what this
+     * process recorded since it last flushed.
+     */
+    public Report aggregate() {
+        var counterTotals = new TreeMap<String, Long>();
+        var histogramTotals = new TreeMap<String, Totals>();
+        long since = Long.MAX_VALUE;
+
+        var files = file != null ? new Path[]{rolledFile(), file} : new Path[0];
+        for (var path : files) {
+            if (!Files.isRegularFile(path)) continue;
+            try (var lines = Files.lines(path, StandardCharsets.UTF_8)) {
+                for (var line : (Iterable<String>) lines::iterator) {
+                    var parts = line.split(" ");
+                    try {
+                        if (parts.length == 4 && parts[1].equals("c")) {
+                            counterTotals.merge(parts[2], Long.parseLong(parts[3]), Long::sum);
+                        } else if (parts.length == 6 && parts[1].equals("h")) {
+                            var sum = Long.parseLong(parts[3]);
+                            var max = Long.parseLong(parts[4]);
+                            var buckets = parts[5].split(",");
+                            var indexes = new int[buckets.length];
+                            var counts = new long[buckets.length];
+                            for (int i = 0; i < buckets.length; i++) {
+                                var colon = buckets[i].indexOf(':');
+                                indexes[i] = Integer.parseInt(buckets[i], 0, colon, 10);
+                                counts[i] = Long.parseLong(buckets[i], colon + 1, buckets[i].length(), 10);
+                            }
+                            // Merge only once the whole line parsed
+                            var totals = histogramTotals.computeIfAbsent(parts[2], n -> new Totals());
+                            totals.sum += sum;
+                            totals.max = Math.max(totals.max, max);
+                            for (int i = 0; i < indexes.length; i++) {
+                                if (indexes[i] >= 0 && indexes[i] < BUCKETS) {
+                                    totals.counts[indexes[i]] += counts[i];
+                                }
+                            }
+                        } else {
+                            continue;
+                        }
+                        since = Math.min(since, Long.parseLong(parts[0]));
+                    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                        // A torn or foreign line; skip it
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("[BrowserSwitch] Could not read metrics: " + e.getMessage());
+            }
+        }
+
+        var live = false;
+        for (var entry : counters.entrySet()) {
+            var value = entry.getValue().value.sum();
+            if (value != 0) {
+                counterTotals.merge(entry.getKey(), value, Long::sum);
+                live = true;
+            }
+        }
+        for (var entry : histograms.entrySet()) {
+            var histogram = entry.getValue();
+            var totals = histogramTotals.computeIfAbsent(entry.getKey(), n -> new Totals());
+            for (int i = 0; i < BUCKETS; i++) {
+                var count = histogram.counts.get(i);
+                totals.counts[i] += count;
+                live |= count != 0;
+            }
+            totals.sum += histogram.sum.sum();
+            totals.max = Math.max(totals.max, histogram.max.get());
+        }
+        if (live) {
+            since = Math.min(since, System.currentTimeMillis());
+        }
+
+        var summaries = new TreeMap<String, Summary>();
+        histogramTotals.forEach((name, totals) -> {
+            var summary = summarize(totals);
+            if (summary.count() > 0) {
+                summaries.put(name, summary);
+            }
+        });
+        return new Report(since == Long.MAX_VALUE ? null : Instant.ofEpochMilli(since), counterTotals, summaries);
+    }
+
+    private static Summary summarize(Totals totals) {
+        long count = 0;
+        for (var c : totals.counts) {
+            count += c;
+        }
+        if (count == 0) return new Summary(0, 0, 0, 0, 0, 0);
+        return new Summary(count, totals.sum / count,
+            Math.min(percentile(totals.counts, count, 0.50), totals.max),
+            Math.min(percentile(totals.counts, count, 0.95), totals.max),
+            Math.min(percentile(totals.counts, count, 0.99), totals.max),
+            totals.max);
+    }
+
+    // The midpoint of the bucket holding the value at rank ceil(p * count)
+    private static long percentile(long[] counts, long count, double p) {
+        var rank = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                var low = lowerBound(i);
+                var high = i + 1 < counts.length ? lowerBound(i + 1) - 1 : low;
+                return low + (high - low) / 2;
+            }
+        }
+        return lowerBound(counts.length - 1);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        if (exponent == MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+}
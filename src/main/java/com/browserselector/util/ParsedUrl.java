@@ -0,0 +1,312 @@
+package com.browserselector.util;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A URL split into its components by a single forward scan.
+ *
+ * {@link #host()} and {@link #path()} return exactly what
+ * {@link UrlUtils#extractDomain} and {@link UrlUtils#extractPath} always
+ * have: the URL is conceptually percent-decoded first and then parsed as a
+ * {@link URI}. The scanner decodes escapes on the fly while it walks the
+ * string, records component boundaries as offsets into the raw URL, and only
+ * builds decoded strings for the host and path. Anything outside the plain
+ * {@code scheme://host[:port][/path][?query][#fragment]} shape it
+ * understands (userinfo, IP literals, non-ASCII, characters URI rejects)
+ * is handed to the original URLDecoder + URI code instead.
+ */
+public final class ParsedUrl {
+
+    private static final ParsedUrl EMPTY = new ParsedUrl("", "", "");
+
+    // URI "unreserved" punctuation plus the reserved characters allowed unescaped in a path
+    private static final String PATH_CHARS = "-_.!~*'();:@&=+$,/";
+    // Query and fragment additionally allow '?'
+    private static final String QUERY_CHARS = PATH_CHARS + "?";
+
+    private final String raw;
+    private final int schemeEnd;
+    private final int hostStart;
+    private final int hostEnd;
+    private final int port;
+    private final int queryStart;
+    private final int queryEnd;
+    private final int fragmentStart;
+    private final String host;
+    private final String path;
+    private String hostAndPath;
+
+    private ParsedUrl(String raw, int schemeEnd, int hostStart, int hostEnd, int port,
+                      int pathStart, int pathEnd, int queryStart, int queryEnd, int fragmentStart) {
+        this.raw = raw;
+        this.schemeEnd = schemeEnd;
+        this.hostStart = hostStart;
+        this.hostEnd = hostEnd;
+        this.port = port;
+        this.queryStart = queryStart;
+        this.queryEnd = queryEnd;
+        this.fragmentStart = fragmentStart;
+        this.host = decode(raw, hostStart, hostEnd).toLowerCase();
+        this.path = decode(raw, pathStart, pathEnd);
+    }
+
+    // Result of the legacy parser: only host and path are known
+    private ParsedUrl(String raw, String host, String path) {
+        this.raw = raw;
+        this.schemeEnd = -1;
+        this.hostStart = -1;
+        this.hostEnd = -1;
+        this.port = -1;
+        this.queryStart = -1;
+        this.queryEnd = -1;
+        this.fragmentStart = -1;
+        this.host = host;
+        this.path = path;
+    }
+
+    public static ParsedUrl parse(String url) {
+        if (url == null || url.isBlank()) return EMPTY;
+
+        var parsed = scan(url);
+        return parsed != null ? parsed : new ParsedUrl(url, legacyDomain(url), legacyPath(url));
+    }
+
+    public String raw() {
+        return raw;
+    }
+
+    /**
+     * Lowercase, percent-decoded host, or "" when there is none.
+     */
+    public String host() {
+        return host;
+    }
+
+    /**
+     * Percent-decoded path, or "" when there is none.
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * {@code host() + path()} lowercased, as matched by {@link PatternMatcher}.
+     */
+    public String hostAndPath() {
+        if (hostAndPath == null) {
+            hostAndPath = (host + path).toLowerCase();
+        }
+        return hostAndPath;
+    }
+
+    /**
+     * The remaining accessors are only available when the fast scanner
+     * handled the URL; otherwise they return null (or -1 for the port).
+     * Query and fragment are returned as they appear in the raw URL.
+     */
+    public String scheme() {
+        return schemeEnd < 0 ? null : decode(raw, 0, schemeEnd);
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public String query() {
+        return queryStart < 0 ? null : raw.substring(queryStart, queryEnd);
+    }
+
+    public String fragment() {
+        return fragmentStart < 0 ? null : raw.substring(fragmentStart);
+    }
+
+    public boolean isFastPath() {
+        return hostStart >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+
+    /**
+     * Scans the URL as if percent-decoded. Returns null whenever the legacy
+     * URLDecoder + URI code might behave differently from this scanner.
+     */
+    private static ParsedUrl scan(String s) {
+        int n = s.length();
+        int i = 0;
+
+        // scheme = ALPHA *( ALPHA / DIGIT / "+" / "-" / "." ) ":"
+        int c = decodedAt(s, i);
+        if (!isAlpha(c)) return null;
+        i += width(s, i);
+        while (true) {
+            c = decodedAt(s, i);
+            if (c == ':') break;
+            if (!isAlpha(c) && !isDigit(c) && c != '+' && c != '-' && c != '.') return null;
+            i += width(s, i);
+        }
+        int schemeEnd = i;
+        i += width(s, i);
+
+        // "//" authority; opaque URIs like mailto: take the legacy path
+        if (decodedAt(s, i) != '/') return null;
+        i += width(s, i);
+        if (decodedAt(s, i) != '/') return null;
+        i += width(s, i);
+
+        // host = labels of alphanumerics and inner hyphens, the last starting with a letter
+        int hostStart = i;
+        int labelStart = i;
+        int prev = -1;
+        int lastLabelFirst = -1;
+        while (true) {
+            c = decodedAt(s, i);
+            if (c == '.' || c == ':' || c == '/' || c == '?' || c == '#' || c == -1) {
+                if (i == labelStart || prev == '-') return null;
+                lastLabelFirst = decodedAt(s, labelStart);
+                if (c != '.') break;
+                i += width(s, i);
+                labelStart = i;
+                prev = -1;
+                continue;
+            }
+            if (!isAlpha(c) && !isDigit(c) && !(c == '-' && i != labelStart)) return null;
+            prev = c;
+            i += width(s, i);
+        }
+        if (!isAlpha(lastLabelFirst)) return null;
+        int hostEnd = i;
+
+        int port = -1;
+        if (c == ':') {
+            i += width(s, i);
+            int digits = 0;
+            port = 0;
+            while (isDigit(c = decodedAt(s, i))) {
+                port = port * 10 + (c - '0');
+                digits++;
+                i += width(s, i);
+            }
+            if (digits == 0 || digits > 5) return null;
+            if (c != '/' && c != '?' && c != '#' && c != -1) return null;
+        }
+
+        int pathStart = i;
+        while ((c = decodedAt(s, i)) != '?' && c != '#' && c != -1) {
+            if (!isAlpha(c) && !isDigit(c) && PATH_CHARS.indexOf(c) < 0) return null;
+            i += width(s, i);
+        }
+        int pathEnd = i;
+
+        int queryStart = -1;
+        int queryEnd = -1;
+        if (c == '?') {
+            i += width(s, i);
+            queryStart = i;
+            while ((c = decodedAt(s, i)) != '#' && c != -1) {
+                if (!isAlpha(c) && !isDigit(c) && QUERY_CHARS.indexOf(c) < 0) return null;
+                i += width(s, i);
+            }
+            queryEnd = i;
+        }
+
+        int fragmentStart = -1;
+        if (c == '#') {
+            i += width(s, i);
+            fragmentStart = i;
+            while ((c = decodedAt(s, i)) != -1) {
+                if (!isAlpha(c) && !isDigit(c) && QUERY_CHARS.indexOf(c) < 0) return null;
+                i += width(s, i);
+            }
+        }
+
+        if (i != n) return null;
+        return new ParsedUrl(s, schemeEnd, hostStart, hostEnd, port,
+            pathStart, pathEnd, queryStart, queryEnd, fragmentStart);
+    }
+
+    /**
+     * The character at {@code i} after URL decoding, -1 at the end of input,
+     * or -2 for anything the scanner doesn't handle (malformed or non-ASCII
+     * escapes, raw non-ASCII, '+' which decodes to a space, a decoded '%').
+     */
+    private static int decodedAt(String s, int i) {
+        if (i >= s.length()) return -1;
+        char c = s.charAt(i);
+        if (c == '%') {
+            if (i + 2 >= s.length()) return -2;
+            int hi = Character.digit(s.charAt(i + 1), 16);
+            int lo = Character.digit(s.charAt(i + 2), 16);
+            if (hi < 0 || lo < 0 || !isAsciiHex(s.charAt(i + 1)) || !isAsciiHex(s.charAt(i + 2))) return -2;
+            int v = hi * 16 + lo;
+            return v >= 0x80 || v == '%' ? -2 : v;
+        }
+        if (c == '+' || c >= 0x80) return -2;
+        return c;
+    }
+
+    private static int width(String s, int i) {
+        return s.charAt(i) == '%' ? 3 : 1;
+    }
+
+    private static String decode(String s, int start, int end) {
+        if (start < 0) return "";
+        int pct = s.indexOf('%', start);
+        if (pct < 0 || pct >= end) return s.substring(start, end);
+
+        var sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i += width(s, i)) {
+            sb.append((char) decodedAt(s, i));
+        }
+        return sb.toString();
+    }
+
+    private static boolean isAlpha(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsciiHex(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static String legacyDomain(String url) {
+        String decoded;
+        try {
+            decoded = URLDecoder.decode(url, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            // Malformed escape: fall through to the manual extraction below
+            decoded = url;
+        }
+
+        try {
+            var uri = URI.create(decoded);
+            var host = uri.getHost();
+            return host != null ? host.toLowerCase() : "";
+        } catch (Exception e) {
+            // Fallback: try to extract domain manually
+            var cleaned = decoded.replaceFirst("^https?://", "");
+            var slashIdx = cleaned.indexOf('/');
+            var domain = slashIdx > 0 ? cleaned.substring(0, slashIdx) : cleaned;
+            var colonIdx = domain.indexOf(':');
+            return (colonIdx > 0 ? domain.substring(0, colonIdx) : domain).toLowerCase();
+        }
+    }
+
+    private static String legacyPath(String url) {
+        try {
+            var uri = URI.create(URLDecoder.decode(url, StandardCharsets.UTF_8));
+            var path = uri.getPath();
+            return path != null ? path : "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.browserselector.util;
 
-import java.util.regex.Pattern;
-
 public final class PatternMatcher {
 
     private PatternMatcher() {}
@@ -9,71 +7,78 @@ public final class PatternMatcher {
     public static boolean matches(String pattern, String url) {
         if (pattern == null || url == null) return false;
 
-        var domain = UrlUtils.extractDomain(url);
-        var path = UrlUtils.extractPath(url);
-        var fullMatch = domain + path;
+        return compile(pattern).matches(ParsedUrl.parse(url));
+    }
+
+    /**
+     * Compiles a pattern once so it can be evaluated against many URLs.
+     */
+    public static Compiled compile(String pattern) {
         var patternLower = pattern.toLowerCase();
+        var glob = GlobMatcher.compile(patternLower);
+        var plainDomain = !pattern.contains("*") && !pattern.contains("?") && !pattern.contains("/");
+        var bareDomain = patternLower.startsWith("*.") ? patternLower.substring(2) : null;
+        return new Compiled(patternLower, glob, plainDomain, bareDomain);
+    }
 
-        // Convert wildcard pattern to regex
-        var regex = patternToRegex(patternLower);
+    /**
+     * Which check of {@link Compiled#matches} accepted a URL, in the order they run.
+     */
+    public enum Branch {
+        FULL_URL("glob on host + path"),
+        DOMAIN("glob on host"),
+        SUBDOMAIN_SUFFIX("subdomain of plain domain"),
+        BARE_DOMAIN("bare domain of *."),
+        NONE("no match");
 
-        // Check if pattern matches the full URL (domain + path) or just the domain
-        if (Pattern.matches(regex, fullMatch.toLowerCase()) ||
-            Pattern.matches(regex, domain.toLowerCase())) {
-            return true;
-        }
+        private final String label;
 
-        // Special handling for plain domain patterns (no wildcards):
-        // A pattern like "google.com" should match both "google.com" and "www.google.com"
-        if (!pattern.contains("*") && !pattern.contains("?") && !pattern.contains("/")) {
-            // Check if domain ends with the pattern (subdomain match)
-            if (domain.toLowerCase().endsWith("." + patternLower)) {
-                return true;
-            }
+        Branch(String label) {
+            this.label = label;
         }
 
-        // Special handling for *.domain patterns: also match the bare domain
-        // Pattern "*.google.com" should also match "google.com"
-        if (patternLower.startsWith("*.")) {
-            var baseDomain = patternLower.substring(2);
-            if (domain.toLowerCase().equals(baseDomain)) {
-                return true;
-            }
+        public boolean matched() {
+            return this != NONE;
         }
 
-        return false;
+        @Override
+        public String toString() {
+            return label;
+        }
     }
 
-    private static String patternToRegex(String pattern) {
-        var sb = new StringBuilder();
-        sb.append("^");
-
-        for (int i = 0; i < pattern.length(); i++) {
-            char c = pattern.charAt(i);
-            switch (c) {
-                case '*' -> {
-                    // Check for ** (match across path separators)
-                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
-                        sb.append(".*");
-                        i++; // Skip next *
-                    } else {
-                        // Single * matches anything except /
-                        sb.append("[^/]*");
-                    }
-                }
-                case '?' -> sb.append(".");
-                case '.' -> sb.append("\\.");
-                case '\\' -> sb.append("\\\\");
-                case '^', '$', '|', '+', '[', ']', '(', ')', '{', '}' -> {
-                    sb.append("\\");
-                    sb.append(c);
-                }
-                default -> sb.append(c);
-            }
+    public record Compiled(String pattern, GlobMatcher glob, boolean plainDomain, String bareDomain) {
+
+        public boolean matches(ParsedUrl url) {
+            return branch(url.host(), url.hostAndPath()) != Branch.NONE;
+        }
+
+        /**
+         * Like {@link #matches}, but says which check matched.
+         */
+        public Branch explain(ParsedUrl url) {
+            return branch(url.host(), url.hostAndPath());
         }
 
-        sb.append("$");
-        return sb.toString();
+        /**
+         * @param domain lowercase host as returned by {@link ParsedUrl#host()}
+         * @param hostAndPath as returned by {@link ParsedUrl#hostAndPath()}
+         */
+        private Branch branch(String domain, String hostAndPath) {
+            // Check if pattern matches the full URL (domain + path) or just the domain
+            if (glob.matches(hostAndPath)) return Branch.FULL_URL;
+            if (glob.matches(domain)) return Branch.DOMAIN;
+
+            // Special handling for plain domain patterns (no wildcards):
+            // A pattern like "google.com" should match both "google.com" and "www.google.com"
+            if (plainDomain && domain.endsWith("." + pattern)) {
+                return Branch.SUBDOMAIN_SUFFIX;
+            }
+
+            // Special handling for *.domain patterns: also match the bare domain
+            // Pattern "*.google.com" should also match "google.com"
+            return bareDomain != null && domain.equals(bareDomain) ? Branch.BARE_DOMAIN : Branch.NONE;
+        }
     }
 
     public static boolean isValidPattern(String pattern) {
@@ -81,14 +86,7 @@ public final class PatternMatcher {
 
         // Must contain at least one non-wildcard character
         var stripped = pattern.replace("*", "").replace("?", "");
-        if (stripped.isBlank()) return false;
-
-        try {
-            patternToRegex(pattern);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return !stripped.isBlank();
     }
 
     public static String domainToPattern(String domain) {
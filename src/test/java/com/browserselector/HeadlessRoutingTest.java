@@ -0,0 +1,79 @@
+package com.browserselector;
+
+import com.browserselector.model.Browser;
+import com.browserselector.model.UrlRule;
+import com.browserselector.service.DatabaseService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class HeadlessRoutingTest {
+
+    @TempDir
+    Path home;
+
+    /**
+     * Runs in a fresh JVM: seeds a rule and a stub browser, then routes a matching URL through Main.
+     */
+    public static class MatchedUrlProbe {
+        public static void main(String[] args) {
+            var db = DatabaseService.getInstance();
+            db.saveBrowser(new Browser("stub", "Stub Browser", Path.of("/bin/true"),
+                null, null, "--incognito", false, null, true));
+            db.saveRule(new UrlRule("example.com", "stub"));
+
+            Main.main(new String[]{"https://www.example.com/page"});
+        }
+    }
+
+    @Test
+    @DisplayName("rule-matched URL launches without loading Swing, AWT or FlatLaf")
+    void matchedPathLoadsNoUiClasses() throws Exception {
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var process = new ProcessBuilder(java,
+                "-verbose:class",
+                "-Duser.home=" + home,
+                "-cp", System.getProperty("java.class.path"),
+                MatchedUrlProbe.class.getName())
+            .redirectErrorStream(true);
+        process.environment().remove("APPDATA");
+
+        var child = process.start();
+        var output = new ArrayList<String>();
+        try (var reader = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.add(line);
+            }
+        }
+        assertThat(child.waitFor(60, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(output).contains("[BrowserSwitch] Launching: Stub Browser");
+        assertThat(loadedClasses(output))
+            .contains("com.browserselector.service.BrowserLauncher")
+            .noneMatch(name -> name.startsWith("javax.swing.")
+                || name.startsWith("java.awt.")
+                || name.startsWith("com.formdev.flatlaf.")
+                || name.startsWith("com.browserselector.ui."));
+    }
+
+    private static List<String> loadedClasses(List<String> output) {
+        // -verbose:class lines look like "[0.012s][info][class,load] java.lang.Object source: ..."
+        return output.stream()
+            .filter(line -> line.contains("[class,load] "))
+            .map(line -> line.substring(line.indexOf("[class,load] ") + 13).split(" ")[0])
+            .toList();
+    }
+}
@@ -0,0 +1,360 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BrowserDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path executable;
+
+    @BeforeEach
+    void createExecutable() throws IOException {
+        executable = Files.createFile(tempDir.resolve("browser-bin"));
+    }
+
+    private Path desktopDir(String name) throws IOException {
+        return Files.createDirectories(tempDir.resolve(name));
+    }
+
+    private void writeDesktopFile(Path dir, String fileName, String name, String mimeType) throws IOException {
+        Files.writeString(dir.resolve(fileName), """
+            [Desktop Entry]
+            Type=Application
+            Name=%s
+            Exec=%s %%u
+            MimeType=%s
+            """.formatted(name, executable, mimeType));
+    }
+
+    @Test
+    @DisplayName("finds browsers across directories and skips other applications")
+    void findsBrowsers() throws IOException {
+        var system = desktopDir("system");
+        var flatpak = desktopDir("flatpak");
+        writeDesktopFile(system, "firefox.desktop", "Firefox", "text/html;x-scheme-handler/http;");
+        writeDesktopFile(system, "gedit.desktop", "Text Editor", "text/plain;");
+        writeDesktopFile(flatpak, "com.brave.Browser.desktop", "Brave", "x-scheme-handler/http;x-scheme-handler/https;");
+        Files.writeString(flatpak.resolve("README"), "not a desktop file");
+
+        var detector = new BrowserDetector(List.of(system, tempDir.resolve("missing"), flatpak), true);
+        var browsers = detector.detectLinuxBrowsers();
+
+        assertThat(browsers).extracting(Browser::id).containsExactly("firefox", "com.brave.browser");
+        assertThat(browsers.get(0).exePath()).isEqualTo(executable);
+        assertThat(browsers.get(0).incognitoArg()).isEqualTo("-private-window");
+        assertThat(detector.lastScanTimings().desktopFiles()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("earlier directories win duplicate ids, and the order is stable")
+    void deterministicDedupe() throws IOException {
+        var first = desktopDir("first");
+        var second = desktopDir("second");
+        for (int i = 0; i < 50; i++) {
+            writeDesktopFile(first, "browser" + i + ".desktop", "First " + i, "x-scheme-handler/http;");
+            writeDesktopFile(second, "browser" + i + ".desktop", "Second " + i, "x-scheme-handler/http;");
+        }
+        writeDesktopFile(second, "extra.desktop", "Extra", "x-scheme-handler/http;");
+
+        var detector = new BrowserDetector(List.of(first, second), true);
+        var expected = detector.detectLinuxBrowsers();
+
+        assertThat(expected).hasSize(51);
+        assertThat(expected.subList(0, 50)).allMatch(browser -> browser.name().startsWith("First"));
+        assertThat(expected.get(50).name()).isEqualTo("Extra");
+        for (int round = 0; round < 10; round++) {
+            assertThat(detector.detectLinuxBrowsers()).isEqualTo(expected);
+        }
+    }
+
+    @Nested
+    @DisplayName("mimeinfo.cache pre-filter")
+    class MimeCache {
+
+        private Path applications;
+
+        @BeforeEach
+        void createTree() throws IOException {
+            applications = desktopDir("applications");
+            writeDesktopFile(applications, "firefox.desktop", "Firefox", "text/html;x-scheme-handler/http;");
+            writeDesktopFile(applications, "chromium.desktop", "Chromium", "x-scheme-handler/https;x-scheme-handler/http;");
+            writeDesktopFile(applications, "mail.desktop", "Mail", "x-scheme-handler/mailto;");
+            for (int i = 0; i < 20; i++) {
+                writeDesktopFile(applications, "tool" + i + ".desktop", "Tool " + i, "text/plain;");
+            }
+            // A hidden browser is a candidate but still rejected by the parser
+            Files.writeString(applications.resolve("hidden.desktop"), """
+                [Desktop Entry]
+                Type=Application
+                Name=Hidden
+                Exec=%s
+                MimeType=x-scheme-handler/http;
+                NoDisplay=true
+                """.formatted(executable));
+        }
+
+        private void writeCache(String content) throws IOException {
+            var cache = applications.resolve("mimeinfo.cache");
+            Files.writeString(cache, content);
+            Files.setLastModifiedTime(cache, FileTime.fromMillis(
+                Files.getLastModifiedTime(applications).toMillis() + 1_000));
+        }
+
+        private List<Browser> fullScan() {
+            return new BrowserDetector(List.of(applications), false).detectLinuxBrowsers();
+        }
+
+        @Test
+        @DisplayName("parses only the cached candidates and matches the full scan")
+        void matchesFullScan() throws IOException {
+            writeCache("""
+                [MIME Cache]
+                text/plain=tool0.desktop;tool1.desktop;
+                x-scheme-handler/http=firefox.desktop;chromium.desktop;hidden.desktop;kde4-gone.desktop;
+                x-scheme-handler/https=chromium.desktop;
+                x-scheme-handler/mailto=mail.desktop;
+                """);
+
+            var detector = new BrowserDetector(List.of(applications), true);
+            var browsers = detector.detectLinuxBrowsers();
+
+            assertThat(browsers).isEqualTo(fullScan());
+            assertThat(browsers).extracting(Browser::id).containsExactly("chromium", "firefox");
+            assertThat(detector.lastScanTimings().desktopFiles()).isEqualTo(3);
+            assertThat(detector.lastScanTimings().indexedDirs()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("mimeapps.list associations add candidates")
+        void mimeAppsList() throws IOException {
+            writeCache("""
+                [MIME Cache]
+                x-scheme-handler/http=firefox.desktop;
+                """);
+            Files.writeString(applications.resolve("mimeapps.list"), """
+                [Added Associations]
+                x-scheme-handler/http=chromium.desktop;
+                """);
+            // Creating mimeapps.list touched the directory
+            Files.setLastModifiedTime(applications.resolve("mimeinfo.cache"), FileTime.fromMillis(
+                Files.getLastModifiedTime(applications).toMillis() + 1_000));
+
+            var browsers = new BrowserDetector(List.of(applications), true).detectLinuxBrowsers();
+
+            assertThat(browsers).extracting(Browser::id).containsExactly("chromium", "firefox");
+        }
+
+        @Test
+        @DisplayName("falls back to the full scan when the cache is stale or missing")
+        void fallsBack() throws IOException {
+            var missing = new BrowserDetector(List.of(applications), true);
+            assertThat(missing.detectLinuxBrowsers()).isEqualTo(fullScan());
+            assertThat(missing.lastScanTimings().indexedDirs()).isZero();
+
+            writeCache("""
+                [MIME Cache]
+                x-scheme-handler/http=firefox.desktop;
+                """);
+            Files.setLastModifiedTime(applications.resolve("mimeinfo.cache"), FileTime.fromMillis(
+                Files.getLastModifiedTime(applications).toMillis() - 1_000));
+
+            var stale = new BrowserDetector(List.of(applications), true);
+            assertThat(stale.detectLinuxBrowsers()).extracting(Browser::id).containsExactly("chromium", "firefox");
+            assertThat(stale.lastScanTimings().indexedDirs()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("incremental Linux scan")
+    class IncrementalLinux {
+
+        @Test
+        @DisplayName("reuses unchanged files and reports what was added, changed and removed")
+        void reportsDelta() throws IOException {
+            var dir = desktopDir("applications");
+            writeDesktopFile(dir, "firefox.desktop", "Firefox", "x-scheme-handler/http;");
+            writeDesktopFile(dir, "chromium.desktop", "Chromium", "x-scheme-handler/http;");
+            writeDesktopFile(dir, "gedit.desktop", "Text Editor", "text/plain;");
+            var detector = new BrowserDetector(List.of(dir), false);
+
+            var first = detector.scanLinux(ScanSnapshot.EMPTY);
+            assertThat(first.reparsed()).isEqualTo(3);
+            assertThat(first.delta().added()).extracting(Browser::id).containsExactly("chromium", "firefox");
+
+            var unchanged = detector.scanLinux(first.snapshot());
+            assertThat(unchanged.reparsed()).isZero();
+            assertThat(unchanged.delta().isEmpty()).isTrue();
+            assertThat(unchanged.browsers()).isEqualTo(first.browsers());
+
+            writeDesktopFile(dir, "firefox.desktop", "Firefox Nightly", "x-scheme-handler/http;");
+            Files.delete(dir.resolve("chromium.desktop"));
+            writeDesktopFile(dir, "brave.desktop", "Brave", "x-scheme-handler/http;");
+
+            var rescan = detector.scanLinux(unchanged.snapshot());
+            assertThat(rescan.reparsed()).isEqualTo(2);
+            assertThat(rescan.delta().added()).extracting(Browser::id).containsExactly("brave");
+            assertThat(rescan.delta().changed()).extracting(Browser::name).containsExactly("Firefox Nightly");
+            assertThat(rescan.delta().removed()).containsExactly("chromium");
+            assertThat(rescan.browsers()).isEqualTo(new BrowserDetector(List.of(dir), false).detectLinuxBrowsers());
+        }
+
+        @Test
+        @DisplayName("reparses an unchanged file whose executable is gone")
+        void reparsesWhenExecutableMissing() throws IOException {
+            var dir = desktopDir("applications");
+            writeDesktopFile(dir, "firefox.desktop", "Firefox", "x-scheme-handler/http;");
+            var detector = new BrowserDetector(List.of(dir), false);
+            var first = detector.scanLinux(ScanSnapshot.EMPTY);
+
+            Files.delete(executable);
+            var rescan = detector.scanLinux(first.snapshot());
+
+            assertThat(rescan.reparsed()).isEqualTo(1);
+            assertThat(rescan.delta().removed()).containsExactly("firefox");
+        }
+
+        @Test
+        @DisplayName("a rescan brings back a browser the user deleted")
+        void restoresDeletedBrowser() throws IOException {
+            var dir = desktopDir("applications");
+            writeDesktopFile(dir, "firefox.desktop", "Firefox", "x-scheme-handler/http;");
+            writeDesktopFile(dir, "chromium.desktop", "Chromium", "x-scheme-handler/http;");
+            var detector = new BrowserDetector(List.of(dir), false);
+            var db = new DatabaseService(tempDir.resolve("test.db"));
+            try {
+                var first = detector.scanLinux(db.loadScanSnapshot());
+                db.applyBrowserScan(first.delta(), first.snapshot());
+
+                db.deleteBrowser("firefox");
+                var rescan = detector.scanLinux(db.loadScanSnapshot());
+                db.applyBrowserScan(rescan.delta(), rescan.snapshot());
+
+                assertThat(rescan.delta().added()).extracting(Browser::id).containsExactly("firefox");
+                assertThat(rescan.reparsed()).isEqualTo(1);
+                assertThat(db.getAllBrowsers()).extracting(Browser::id).containsExactlyInAnyOrder("chromium", "firefox");
+            } finally {
+                db.close();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("incremental Windows scan")
+    class IncrementalWindows {
+
+        private static final String CLIENTS = "SOFTWARE\\Clients\\StartMenuInternet";
+
+        private final FakeRegistry registry = new FakeRegistry();
+        private final BrowserDetector detector = new BrowserDetector(List.of(), false, registry);
+
+        private void addBrowser(String key, String name, Path exe, long written) {
+            var path = CLIENTS + "\\" + key;
+            registry.put(path, name, written);
+            registry.put(path + "\\shell\\open\\command", "\"" + exe + "\" --url", written);
+        }
+
+        @Test
+        @DisplayName("rereads only keys with a newer last-write time")
+        void reportsDelta() throws IOException {
+            var chrome = Files.createFile(tempDir.resolve("chrome.exe"));
+            var firefox = Files.createFile(tempDir.resolve("firefox.exe"));
+            addBrowser("Google Chrome", "Google Chrome", chrome, 1);
+            addBrowser("Firefox-308046B0AF4A39CB", "Firefox", firefox, 1);
+
+            var first = detector.scanWindows(ScanSnapshot.EMPTY);
+            assertThat(first.reparsed()).isEqualTo(2);
+            assertThat(first.delta().added()).extracting(Browser::id).containsExactly("firefox", "chrome");
+
+            var unchanged = detector.scanWindows(first.snapshot());
+            assertThat(unchanged.reparsed()).isZero();
+            assertThat(unchanged.delta().isEmpty()).isTrue();
+            assertThat(registry.reads).isEqualTo(2);
+
+            addBrowser("Firefox-308046B0AF4A39CB", "Mozilla Firefox", firefox, 2);
+            registry.remove(CLIENTS + "\\Google Chrome");
+
+            var rescan = detector.scanWindows(unchanged.snapshot());
+            assertThat(rescan.reparsed()).isEqualTo(1);
+            assertThat(rescan.delta().changed()).extracting(Browser::name).containsExactly("Mozilla Firefox");
+            assertThat(rescan.delta().removed()).containsExactly("chrome");
+        }
+    }
+
+    /**
+     * An in-memory registry with every key under HKEY_LOCAL_MACHINE.
+     */
+    private static final class FakeRegistry implements RegistryReader {
+
+        private record Key(String value, long written) {}
+
+        private final Map<String, Key> keys = new HashMap<>();
+        int reads;
+
+        void put(String path, String value, long written) {
+            keys.put(path, new Key(value, written));
+        }
+
+        void remove(String path) {
+            keys.keySet().removeIf(key -> key.equals(path) || key.startsWith(path + "\\"));
+        }
+
+        private boolean isParent(Hive hive, String path) {
+            return hive == Hive.LOCAL_MACHINE
+                && keys.keySet().stream().anyMatch(key -> key.startsWith(path + "\\"));
+        }
+
+        @Override
+        public boolean keyExists(Hive hive, String path) {
+            return hive == Hive.LOCAL_MACHINE && keys.containsKey(path) || isParent(hive, path);
+        }
+
+        @Override
+        public List<String> subKeys(Hive hive, String path) {
+            var children = new ArrayList<String>();
+            if (hive != Hive.LOCAL_MACHINE) return children;
+            for (var key : keys.keySet()) {
+                if (key.startsWith(path + "\\")) {
+                    var child = key.substring(path.length() + 1).split("\\\\")[0];
+                    if (!children.contains(child)) {
+                        children.add(child);
+                    }
+                }
+            }
+            children.sort(null);
+            return children;
+        }
+
+        @Override
+        public String defaultValue(Hive hive, String path) {
+            var key = hive == Hive.LOCAL_MACHINE ? keys.get(path) : null;
+            if (key != null && path.endsWith("command")) {
+                reads++;
+            }
+            return key != null ? key.value() : null;
+        }
+
+        @Override
+        public long lastWriteTime(Hive hive, String path) {
+            var key = hive == Hive.LOCAL_MACHINE ? keys.get(path) : null;
+            return key != null ? key.written() : -1;
+        }
+    }
+}
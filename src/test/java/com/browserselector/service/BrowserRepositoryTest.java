@@ -0,0 +1,131 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import com.browserselector.model.Setting;
+import com.browserselector.model.UrlRule;
+import com.browserselector.util.Events;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BrowserRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DatabaseService db;
+    private BrowserRepository repository;
+
+    @BeforeEach
+    void open() {
+        db = new DatabaseService(tempDir.resolve("test.db"));
+        db.saveBrowser(new Browser("firefox", "Firefox", Path.of("/usr/bin/firefox")));
+        repository = new BrowserRepository(db);
+    }
+
+    @AfterEach
+    void closeDb() {
+        db.close();
+    }
+
+    @Test
+    @DisplayName("serves reads from the snapshot taken at startup")
+    void readsFromSnapshot() {
+        // Written behind the repository's back
+        db.saveBrowser(new Browser("chrome", "Chrome", Path.of("/usr/bin/chrome")));
+
+        assertThat(repository.getAllBrowsers()).extracting(Browser::id).containsExactly("firefox");
+        assertThat(repository.getBrowser("chrome")).isEmpty();
+
+        repository.reload();
+        assertThat(repository.getBrowser("chrome")).isPresent();
+    }
+
+    @Test
+    @DisplayName("writes go through to the database and replace the snapshot")
+    void writesThrough() {
+        var before = repository.snapshot();
+
+        repository.saveRule(new UrlRule("example.com", "firefox"));
+        repository.saveSetting(Setting.toggle(Setting.Toggle.ADVANCED_MODE, true));
+
+        assertThat(before.rules()).isEmpty();
+        assertThat(repository.getAllRules()).extracting(UrlRule::id).allMatch(id -> id > 0);
+        assertThat(db.getAllRules()).isEqualTo(repository.getAllRules());
+        assertThat(repository.getToggle(Setting.Toggle.ADVANCED_MODE, false)).isTrue();
+    }
+
+    @Test
+    @DisplayName("listeners hear which table changed")
+    void notifiesListeners() {
+        var changes = new ArrayList<BrowserRepository.Table>();
+        BrowserRepository.ChangeListener listener = (table, snapshot) -> changes.add(table);
+        repository.addListener(listener);
+
+        repository.saveBrowsers(List.of(new Browser("brave", "Brave", Path.of("/usr/bin/brave"))));
+        repository.deleteRules(List.of(1));
+        repository.removeListener(listener);
+        repository.saveSetting(Setting.toggle(Setting.Toggle.DARK_THEME, true));
+
+        assertThat(changes).containsExactly(BrowserRepository.Table.BROWSERS, BrowserRepository.Table.RULES);
+    }
+
+    @Test
+    @DisplayName("rule changes and the matcher setting rebuild the rule matcher")
+    void rebuildsMatcher() {
+        repository.saveRule(new UrlRule("example.com", "firefox"));
+        assertThat(repository.findMatchingRule("https://www.example.com")).isPresent();
+        assertThat(repository.getRuleMatcher()).isInstanceOf(RuleIndex.class);
+
+        repository.saveSetting(Setting.toggle(Setting.Toggle.AUTOMATON_MATCHING, true));
+        assertThat(repository.getRuleMatcher()).isInstanceOf(RuleAutomaton.class);
+
+        repository.deleteRule(repository.getAllRules().get(0).id());
+        assertThat(repository.findMatchingRule("https://www.example.com")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("rule matches and database calls emit flight recorder events")
+    void emitsEvents() throws Exception {
+        repository.saveRule(new UrlRule("*.example.com", "firefox"));
+        var file = tempDir.resolve("test.jfr");
+        Events.enable();
+        try (var recording = new Recording()) {
+            recording.enable("browserswitch.RuleMatch");
+            recording.enable("browserswitch.Database");
+            recording.start();
+            repository.findMatchingRule("https://docs.example.com/guide");
+            repository.findMatchingRule("https://other.org/");
+            db.getAllRules();
+            recording.stop();
+            recording.dump(file);
+        }
+        var events = RecordingFile.readAllEvents(file);
+
+        var matches = events.stream().filter(e -> e.getEventType().getName().equals("browserswitch.RuleMatch")).toList();
+        assertThat(matches).hasSize(2);
+        assertThat(matches.get(0).getString("host")).isEqualTo("docs.example.com");
+        assertThat(matches.get(0).getString("pattern")).isEqualTo("*.example.com");
+        assertThat(matches.get(0).getString("browserId")).isEqualTo("firefox");
+        assertThat(matches.get(0).getInt("rules")).isEqualTo(1);
+        assertThat(matches.get(1).getString("pattern")).isNull();
+
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("browserswitch.Database"))
+            .singleElement()
+            .satisfies(e -> {
+                assertThat(e.getString("operation")).isEqualTo("getAllRules");
+                assertThat(e.getString("kind")).isEqualTo("query");
+                assertThat(e.getLong("rows")).isEqualTo(1);
+            });
+    }
+}
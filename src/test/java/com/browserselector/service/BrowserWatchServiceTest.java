@@ -0,0 +1,124 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Desktop directories are only scanned on Linux
+@EnabledOnOs(OS.LINUX)
+class BrowserWatchServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path applications;
+    private Path executable;
+    private DatabaseService db;
+    private BrowserRepository repository;
+    private BrowserWatchService watcher;
+
+    @BeforeEach
+    void start() throws IOException {
+        applications = Files.createDirectories(tempDir.resolve("applications"));
+        executable = Files.createFile(tempDir.resolve("browser-bin"));
+        Files.createDirectories(tempDir.resolve("local/Google\\Chrome/User Data"));
+        writeDesktopFile("chromium.desktop", "Chromium");
+
+        db = new DatabaseService(tempDir.resolve("test.db"));
+        repository = new BrowserRepository(db);
+        var detector = new BrowserDetector(List.of(applications), false);
+        repository.applyBrowserScan(detector.scan(ScanSnapshot.EMPTY));
+
+        watcher = new BrowserWatchService(repository, detector,
+            new ProfileDetector(tempDir.resolve("local"), tempDir.resolve("roaming")),
+            Duration.ofMillis(50), Duration.ofMillis(200), Duration.ofMillis(300));
+        watcher.start();
+    }
+
+    @AfterEach
+    void stop() {
+        watcher.close();
+        db.close();
+    }
+
+    private void writeDesktopFile(String fileName, String name) throws IOException {
+        Files.writeString(applications.resolve(fileName), """
+            [Desktop Entry]
+            Type=Application
+            Name=%s
+            Exec=%s %%u
+            MimeType=x-scheme-handler/http;
+            """.formatted(name, executable));
+    }
+
+    private void awaitBrowsers(Predicate<List<Browser>> condition) throws InterruptedException {
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.test(repository.getAllBrowsers())) {
+            assertThat(System.nanoTime()).as("browsers: %s", repository.getAllBrowsers()).isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private static List<String> ids(List<Browser> browsers) {
+        return browsers.stream().map(Browser::id).toList();
+    }
+
+    @Test
+    @DisplayName("adds an installed browser and keeps the others' enabled flags")
+    void picksUpNewBrowser() throws Exception {
+        repository.saveBrowser(repository.getBrowser("chromium").orElseThrow().withEnabled(false));
+
+        writeDesktopFile("firefox.desktop", "Firefox");
+        awaitBrowsers(browsers -> ids(browsers).contains("firefox"));
+
+        assertThat(repository.getBrowser("chromium")).map(Browser::enabled).contains(false);
+
+        Files.delete(applications.resolve("firefox.desktop"));
+        awaitBrowsers(browsers -> !ids(browsers).contains("firefox"));
+    }
+
+    @Test
+    @DisplayName("re-detects profiles when Local State changes")
+    void picksUpProfiles() throws Exception {
+        var localState = tempDir.resolve("local/Google\\Chrome/User Data/Local State");
+        Files.writeString(localState, """
+            {"profile": {"info_cache": {"Profile 1": {"name": "Work"}}}}
+            """);
+        awaitBrowsers(browsers -> ids(browsers).contains("chromium-profile-1"));
+
+        Files.writeString(localState, """
+            {"profile": {"info_cache": {"Profile 2": {"name": "Home"}}}}
+            """);
+        awaitBrowsers(browsers -> ids(browsers).contains("chromium-profile-2")
+            && !ids(browsers).contains("chromium-profile-1"));
+    }
+
+    @Test
+    @DisplayName("coalesces an install storm into a few rescans")
+    void coalescesStorm() throws Exception {
+        var changes = new AtomicInteger();
+        repository.addListener((table, snapshot) -> changes.incrementAndGet());
+
+        for (int i = 0; i < 200; i++) {
+            writeDesktopFile("browser" + i + ".desktop", "Browser " + i);
+        }
+        awaitBrowsers(browsers -> browsers.size() == 201);
+
+        assertThat(changes.get()).isLessThan(20);
+    }
+}
@@ -0,0 +1,123 @@
+package com.browserselector.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DaemonServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("forward() returns false when no daemon is running")
+    void noDaemon() {
+        assertThat(DaemonService.forward(tempDir.resolve("daemon.sock"), "open https://example.com")).isFalse();
+    }
+
+    @Test
+    @DisplayName("forwarded commands reach the handler")
+    void forwardsCommands() throws Exception {
+        var socket = tempDir.resolve("daemon.sock");
+        var received = new LinkedBlockingQueue<String>();
+        var daemon = new DaemonService(socket);
+        daemon.start(received::add);
+
+        try {
+            assertThat(DaemonService.forward(socket, "open https://example.com/a b")).isTrue();
+            assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("open https://example.com/a b");
+        } finally {
+            daemon.stop();
+        }
+        assertThat(socket).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("stop command closes the socket")
+    void stopCommand() throws Exception {
+        var socket = tempDir.resolve("daemon.sock");
+        var received = new LinkedBlockingQueue<String>();
+        var daemon = new DaemonService(socket);
+        daemon.start(received::add);
+
+        assertThat(DaemonService.forward(socket, DaemonService.STOP)).isTrue();
+        assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo(DaemonService.STOP);
+        assertThat(daemon.isRunning()).isFalse();
+        assertThat(DaemonService.forward(socket, "open https://example.com")).isFalse();
+    }
+
+    @Test
+    @DisplayName("stale socket file is replaced on start")
+    void staleSocket() throws Exception {
+        var socket = tempDir.resolve("daemon.sock");
+        Files.createFile(socket);
+
+        assertThat(DaemonService.forward(socket, "open https://example.com")).isFalse();
+
+        var daemon = new DaemonService(socket);
+        daemon.start(command -> {});
+        try {
+            assertThat(DaemonService.forward(socket, "settings")).isTrue();
+        } finally {
+            daemon.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("second daemon on the same socket is refused")
+    void secondDaemonRefused() throws Exception {
+        var socket = tempDir.resolve("daemon.sock");
+        var daemon = new DaemonService(socket);
+        daemon.start(command -> {});
+        try {
+            assertThatThrownBy(() -> new DaemonService(socket).start(command -> {}))
+                .isInstanceOf(IOException.class);
+        } finally {
+            daemon.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("an idle client doesn't hold up the next one")
+    void idleClient() throws Exception {
+        var socket = tempDir.resolve("daemon.sock");
+        var received = new LinkedBlockingQueue<String>();
+        var daemon = new DaemonService(socket);
+        daemon.start(received::add);
+
+        try (var idle = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            assertThat(DaemonService.forward(socket, "open https://example.com")).isTrue();
+            assertThat(received.poll(5, TimeUnit.SECONDS)).isEqualTo("open https://example.com");
+        } finally {
+            daemon.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("forward() gives up on a daemon that never answers")
+    void unresponsiveDaemon() throws Exception {
+        var socket = tempDir.resolve("daemon.sock");
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+
+            long start = System.nanoTime();
+            assertThat(DaemonService.forward(socket, "open https://example.com")).isFalse();
+            assertThat(Duration.ofNanos(System.nanoTime() - start))
+                .isBetween(DaemonService.READ_TIMEOUT, DaemonService.READ_TIMEOUT.multipliedBy(3));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import com.browserselector.model.Setting;
+import com.browserselector.model.UrlRule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatabaseServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private DatabaseService db;
+
+    @BeforeEach
+    void open() {
+        db = new DatabaseService(tempDir.resolve("test.db"));
+    }
+
+    @AfterEach
+    void closeDb() {
+        db.close();
+    }
+
+    @Test
+    @DisplayName("browsers, rules and settings round-trip through the shared connection")
+    void roundTrip() {
+        db.saveBrowser(new Browser("firefox", "Firefox", Path.of("/usr/bin/firefox")));
+        db.saveRule(new UrlRule(0, "example.com", "firefox", 1, Instant.EPOCH));
+        db.saveSetting(Setting.toggle(Setting.Toggle.ADVANCED_MODE, true));
+        db.saveSetting(Setting.text(Setting.Text.LAST_BROWSER, "firefox"));
+
+        assertThat(db.getBrowser("firefox")).map(Browser::name).contains("Firefox");
+        assertThat(db.getAllRules()).extracting(UrlRule::pattern).containsExactly("example.com");
+        assertThat(db.getToggle(Setting.Toggle.ADVANCED_MODE, false)).isTrue();
+        assertThat(db.getText(Setting.Text.LAST_BROWSER, null)).isEqualTo("firefox");
+        assertThat(db.getToggle("missing", true)).isTrue();
+        assertThat(db.getAllSettings()).containsEntry(Setting.Text.LAST_BROWSER, "firefox");
+    }
+
+    @Test
+    @DisplayName("a rescan that fails partway rolls back to the previous browsers")
+    void failedScanRollsBack() {
+        var chrome = new Browser("chrome", "Chrome", Path.of("/usr/bin/chrome"));
+        var firefox = new Browser("firefox", "Firefox", Path.of("/usr/bin/firefox"));
+        var previous = new ScanSnapshot(List.of(
+            new ScanSnapshot.Entry("/apps/chrome.desktop", "1@a", chrome),
+            new ScanSnapshot.Entry("/apps/firefox.desktop", "1@a", firefox)
+        ));
+        db.applyBrowserScan(ScanDelta.between(List.of(), previous.browsers()), previous);
+
+        // The browsers are written first; the snapshot's null source then violates NOT NULL
+        var brave = new Browser("brave", "Brave", Path.of("/usr/bin/brave"));
+        var broken = new ScanSnapshot(List.of(
+            new ScanSnapshot.Entry("/apps/brave.desktop", "2@b", brave),
+            new ScanSnapshot.Entry(null, "2@b", null)
+        ));
+        db.applyBrowserScan(ScanDelta.between(previous.browsers(), broken.browsers()), broken);
+
+        assertThat(db.getAllBrowsers()).containsExactly(chrome, firefox);
+        assertThat(db.loadScanSnapshot()).isEqualTo(previous);
+    }
+
+    @Test
+    @DisplayName("saveRules() and deleteRules() apply every row")
+    void batchRules() {
+        db.saveRules(List.of(
+            new UrlRule(0, "a.com", "x", 0, Instant.EPOCH),
+            new UrlRule(0, "b.com", "y", 0, Instant.EPOCH),
+            new UrlRule(0, "c.com", "z", 0, Instant.EPOCH)
+        ));
+        assertThat(db.getAllRules()).hasSize(3);
+
+        var ids = db.getAllRules().stream()
+            .filter(rule -> !rule.pattern().equals("c.com"))
+            .map(UrlRule::id)
+            .toList();
+        db.deleteRules(ids);
+
+        assertThat(db.getAllRules()).extracting(UrlRule::pattern).containsExactly("c.com");
+    }
+
+    @Test
+    @DisplayName("opens the database in WAL mode")
+    void walMode() throws Exception {
+        try (var conn = DriverManager.getConnection("jdbc:sqlite:" + tempDir.resolve("test.db"));
+             var rs = conn.createStatement().executeQuery("PRAGMA journal_mode")) {
+            assertThat(rs.getString(1)).isEqualToIgnoringCase("wal");
+        }
+    }
+
+    @Test
+    @DisplayName("reopens the connection after close()")
+    void reopensAfterClose() {
+        db.saveBrowser(new Browser("chrome", "Chrome", Path.of("/usr/bin/chrome")));
+        db.close();
+
+        assertThat(db.getAllBrowsers()).extracting(Browser::id).containsExactly("chrome");
+    }
+
+    @Test
+    @DisplayName("applyBrowserScan() keeps enabled flags and drops removed browsers with their profiles")
+    void applyBrowserScan() {
+        var chrome = new Browser("chrome", "Chrome", Path.of("/usr/bin/chrome"));
+        var firefox = new Browser("firefox", "Firefox", Path.of("/usr/bin/firefox"));
+        db.saveBrowsers(List.of(
+            chrome.withEnabled(false),
+            firefox,
+            firefox.withProfile("firefox-work", "Work", "-P work")
+        ));
+
+        var snapshot = new ScanSnapshot(List.of(
+            new ScanSnapshot.Entry("/apps/chrome.desktop", "1@a", new Browser("chrome", "Chromium", Path.of("/usr/bin/chromium"))),
+            new ScanSnapshot.Entry("/apps/gedit.desktop", "2@b", null)
+        ));
+        var delta = ScanDelta.between(List.of(chrome, firefox), snapshot.browsers());
+        db.applyBrowserScan(delta, snapshot);
+
+        assertThat(db.getAllBrowsers()).extracting(Browser::id).containsExactly("chrome");
+        var updated = db.getBrowser("chrome").orElseThrow();
+        assertThat(updated.name()).isEqualTo("Chromium");
+        assertThat(updated.enabled()).isFalse();
+        assertThat(db.loadScanSnapshot()).isEqualTo(snapshot);
+    }
+
+    @Test
+    @DisplayName("browsers stored before the scan snapshot existed are dropped by the next rescan")
+    void seedsSnapshotFromLegacyBrowsers() throws Exception {
+        var file = tempDir.resolve("legacy.db");
+        try (var conn = DriverManager.getConnection("jdbc:sqlite:" + file); var stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE browsers (
+                    id TEXT PRIMARY KEY, name TEXT NOT NULL, exe_path TEXT NOT NULL, icon_path TEXT,
+                    profile_arg TEXT, incognito_arg TEXT, is_profile INTEGER DEFAULT 0,
+                    parent_browser_id TEXT, enabled INTEGER DEFAULT 1
+                )""");
+            stmt.execute("INSERT INTO browsers (id, name, exe_path) VALUES ('chrome', 'Chrome', '/usr/bin/chrome')");
+            stmt.execute("INSERT INTO browsers (id, name, exe_path) VALUES ('firefox', 'Firefox', '/usr/bin/firefox')");
+            stmt.execute("""
+                INSERT INTO browsers (id, name, exe_path, profile_arg, is_profile, parent_browser_id)
+                VALUES ('firefox-work', 'Work', '/usr/bin/firefox', '-P work', 1, 'firefox')""");
+        }
+
+        var legacy = new DatabaseService(file);
+        try {
+            var previous = legacy.loadScanSnapshot();
+            assertThat(previous.browsers()).extracting(Browser::id).containsExactly("chrome", "firefox");
+
+            // Firefox was uninstalled before the upgrade's first rescan
+            var chrome = new Browser("chrome", "Chrome", Path.of("/usr/bin/chrome"));
+            var rescan = new ScanSnapshot(List.of(new ScanSnapshot.Entry("/apps/chrome.desktop", "1@a", chrome)));
+            legacy.applyBrowserScan(ScanDelta.between(previous.browsers(), rescan.browsers()), rescan);
+
+            assertThat(legacy.getAllBrowsers()).extracting(Browser::id).containsExactly("chrome");
+            assertThat(legacy.loadScanSnapshot()).isEqualTo(rescan);
+        } finally {
+            legacy.close();
+        }
+
+        // Seeded once, when the table is created
+        var reopened = new DatabaseService(file);
+        try {
+            assertThat(reopened.loadScanSnapshot().entries()).hasSize(1);
+        } finally {
+            reopened.close();
+        }
+    }
+}
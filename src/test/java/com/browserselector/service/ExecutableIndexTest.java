@@ -0,0 +1,97 @@
+package com.browserselector.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Relies on POSIX permissions and symlinks
+@EnabledOnOs({OS.LINUX, OS.MAC})
+class ExecutableIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path first;
+    private Path second;
+    private Path common;
+    private ExecutableIndex index;
+
+    @BeforeEach
+    void createDirs() throws IOException {
+        first = Files.createDirectories(tempDir.resolve("first"));
+        second = Files.createDirectories(tempDir.resolve("second"));
+        common = Files.createDirectories(tempDir.resolve("common"));
+        index = new ExecutableIndex(List.of(first, tempDir.resolve("missing"), second), List.of(common));
+    }
+
+    private Path file(Path dir, String name, boolean executable) throws IOException {
+        return Files.createFile(dir.resolve(name),
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(executable ? "rwxr-xr-x" : "rw-r--r--")));
+    }
+
+    @Test
+    @DisplayName("finds the first executable on PATH, skipping non-executable files")
+    void firstExecutable() throws IOException {
+        file(first, "firefox", false);
+        var expected = file(second, "firefox", true);
+        file(common, "firefox", true);
+
+        assertThat(index.find("firefox")).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("falls back to existing files in the common directories")
+    void commonDirs() throws IOException {
+        Files.createSymbolicLink(first.resolve("chromium"), tempDir.resolve("nowhere"));
+        var expected = file(common, "chromium", false);
+
+        assertThat(index.find("chromium")).isEqualTo(expected);
+        assertThat(index.find("missing-browser")).isNull();
+        assertThat(index.find(" ")).isNull();
+    }
+
+    @Test
+    @DisplayName("follows symlinks to executables")
+    void symlinks() throws IOException {
+        var target = file(tempDir, "brave-bin", true);
+        var link = Files.createSymbolicLink(first.resolve("brave"), target);
+
+        assertThat(index.find("brave")).isEqualTo(link);
+    }
+
+    @Test
+    @DisplayName("answers absolute paths in indexed directories from the listing")
+    void absolutePaths() throws IOException {
+        var browser = file(second, "vivaldi", true);
+        var elsewhere = file(tempDir, "opera", true);
+
+        assertThat(index.exists(browser)).isTrue();
+        assertThat(index.exists(second.resolve("edge"))).isFalse();
+        assertThat(index.exists(elsewhere)).isTrue();
+        assertThat(index.find(browser.toString())).isEqualTo(browser);
+    }
+
+    @Test
+    @DisplayName("repeated lookups save stat calls")
+    void savesStatCalls() throws IOException {
+        file(second, "firefox", true);
+        for (int i = 0; i < 100; i++) {
+            index.find("firefox");
+            index.find("env");
+        }
+
+        // Probing would stat every directory on every lookup
+        assertThat(index.statCallsSaved()).isGreaterThan(500);
+    }
+}
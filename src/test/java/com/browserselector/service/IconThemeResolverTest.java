@@ -0,0 +1,188 @@
+package com.browserselector.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IconThemeResolverTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path user;
+    private Path system;
+    private Path pixmaps;
+
+    @BeforeEach
+    void createThemes() throws IOException {
+        user = tempDir.resolve("user-icons");
+        system = tempDir.resolve("system-icons");
+        pixmaps = Files.createDirectories(tempDir.resolve("pixmaps"));
+
+        Files.createDirectories(user.resolve("Adwaita"));
+        Files.writeString(user.resolve("Adwaita/index.theme"), """
+            [Icon Theme]
+            Name=Adwaita
+            Inherits=Parent
+            Directories=16x16/apps,48x48/apps,scalable/apps
+
+            [16x16/apps]
+            Size=16
+            Type=Fixed
+
+            [48x48/apps]
+            Size=48
+            Type=Fixed
+
+            [scalable/apps]
+            Size=128
+            MinSize=64
+            MaxSize=512
+            Type=Scalable
+            """);
+        Files.createDirectories(system.resolve("Parent"));
+        Files.writeString(system.resolve("Parent/index.theme"), """
+            [Icon Theme]
+            Directories=256x256/apps
+
+            [256x256/apps]
+            Size=256
+            """);
+        Files.createDirectories(system.resolve("hicolor"));
+        Files.writeString(system.resolve("hicolor/index.theme"), """
+            [Icon Theme]
+            Directories=48x48/apps,32x32/apps
+
+            [48x48/apps]
+            Size=48
+            Type=Threshold
+
+            [32x32/apps]
+            Size=32
+            Type=Threshold
+            """);
+    }
+
+    private Path icon(Path base, String dir, String fileName) throws IOException {
+        var directory = Files.createDirectories(base.resolve(dir));
+        return Files.createFile(directory.resolve(fileName));
+    }
+
+    private IconThemeResolver resolver(Path cacheFile) {
+        return new IconThemeResolver("Adwaita", List.of(user, system), List.of(pixmaps), cacheFile);
+    }
+
+    @Nested
+    @DisplayName("find()")
+    class Find {
+
+        @Test
+        @DisplayName("returns the exact size from the configured theme")
+        void exactSize() throws IOException {
+            icon(user, "Adwaita/16x16/apps", "firefox.png");
+            var expected = icon(user, "Adwaita/48x48/apps", "firefox.png");
+            icon(system, "hicolor/48x48/apps", "firefox.png");
+
+            assertThat(resolver(null).find("firefox", 48, 1)).isEqualTo(expected);
+        }
+
+        @Test
+        @DisplayName("prefers the closest size in a nearer theme over an exact one further up")
+        void closestInNearestTheme() throws IOException {
+            var expected = icon(user, "Adwaita/16x16/apps", "brave.png");
+            icon(system, "hicolor/48x48/apps", "brave.png");
+
+            assertThat(resolver(null).find("brave", 48, 1)).isEqualTo(expected);
+        }
+
+        @Test
+        @DisplayName("follows Inherits, then hicolor, then pixmaps")
+        void fallbacks() throws IOException {
+            var inherited = icon(system, "Parent/256x256/apps", "chromium.png");
+            var hicolor = icon(system, "hicolor/32x32/apps", "vivaldi.png");
+            var pixmap = icon(pixmaps, ".", "opera.png");
+
+            var resolver = resolver(null);
+            assertThat(resolver.find("chromium", 48, 1)).isEqualTo(inherited);
+            assertThat(resolver.find("vivaldi", 48, 1)).isEqualTo(hicolor);
+            assertThat(resolver.find("opera", 48, 1)).isEqualTo(pixmap.normalize());
+            assertThat(resolver.find("missing", 48, 1)).isNull();
+        }
+
+        @Test
+        @DisplayName("matches scalable directories and prefers png within a directory")
+        void scalableAndFormats() throws IOException {
+            var png = icon(user, "Adwaita/scalable/apps", "epiphany.png");
+            icon(user, "Adwaita/scalable/apps", "epiphany.svg");
+
+            assertThat(resolver(null).find("epiphany", 96, 1)).isEqualTo(png);
+        }
+
+        @Test
+        @DisplayName("skips formats it can't decode and falls through to hicolor and pixmaps")
+        void skipsUndecodable() throws IOException {
+            icon(user, "Adwaita/scalable/apps", "firefox.svg");
+            var hicolor = icon(system, "hicolor/48x48/apps", "firefox.png");
+            icon(user, "Adwaita/48x48/apps", "opera.svg");
+            var pixmap = icon(pixmaps, ".", "opera.png");
+            icon(pixmaps, ".", "konqueror.xpm");
+
+            var resolver = resolver(null);
+            assertThat(resolver.find("firefox", 48, 1)).isEqualTo(hicolor);
+            assertThat(resolver.find("opera", 48, 1)).isEqualTo(pixmap.normalize());
+            assertThat(resolver.find("konqueror", 48, 1)).isNull();
+        }
+    }
+
+    @Nested
+    @DisplayName("disk cache")
+    class DiskCache {
+
+        @Test
+        @DisplayName("is reused while the directories are unchanged and rebuilt once one changes")
+        void revalidates() throws IOException {
+            var cacheFile = tempDir.resolve("cache/icon-theme.cache");
+            var dir = Files.createDirectories(user.resolve("Adwaita/48x48/apps"));
+            var firefox = icon(user, "Adwaita/48x48/apps", "firefox.png");
+            assertThat(resolver(cacheFile).find("firefox", 48, 1)).isEqualTo(firefox);
+            assertThat(cacheFile).exists();
+
+            // A deletion the directory mtime doesn't reveal is served from the cache
+            var modified = Files.getLastModifiedTime(dir);
+            Files.delete(firefox);
+            Files.setLastModifiedTime(dir, modified);
+            assertThat(resolver(cacheFile).find("firefox", 48, 1)).isEqualTo(firefox);
+
+            var brave = icon(user, "Adwaita/48x48/apps", "brave.png");
+            Files.setLastModifiedTime(dir, FileTime.fromMillis(modified.toMillis() + 1_000));
+            var rebuilt = resolver(cacheFile);
+            assertThat(rebuilt.find("brave", 48, 1)).isEqualTo(brave);
+            assertThat(rebuilt.find("firefox", 48, 1)).isNull();
+        }
+
+        @Test
+        @DisplayName("is rebuilt when the searched directories change")
+        void keyedByDirectories() throws IOException {
+            var cacheFile = tempDir.resolve("cache/icon-theme.cache");
+            icon(system, "hicolor/48x48/apps", "firefox.png");
+            var other = tempDir.resolve("other-icons");
+            Files.createDirectories(other.resolve("hicolor"));
+            Files.copy(system.resolve("hicolor/index.theme"), other.resolve("hicolor/index.theme"));
+            var moved = icon(other, "hicolor/48x48/apps", "firefox.png");
+            assertThat(resolver(cacheFile).find("firefox", 48, 1)).isNotNull();
+
+            var resolver = new IconThemeResolver("Adwaita", List.of(user, other), List.of(pixmaps), cacheFile);
+            assertThat(resolver.find("firefox", 48, 1)).isEqualTo(moved);
+        }
+    }
+}
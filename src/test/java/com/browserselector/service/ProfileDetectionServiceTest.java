@@ -0,0 +1,207 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProfileDetectionServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path chromeState;
+    private Path firefoxIni;
+    private DatabaseService db;
+    private BrowserRepository repository;
+    private ProfileDetectionService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        var local = tempDir.resolve("local");
+        var roaming = tempDir.resolve("roaming");
+        chromeState = Files.createDirectories(local.resolve("Google\\Chrome").resolve("User Data")).resolve("Local State");
+        firefoxIni = Files.createDirectories(roaming.resolve("Mozilla/Firefox")).resolve("profiles.ini");
+
+        db = new DatabaseService(tempDir.resolve("test.db"));
+        repository = new BrowserRepository(db);
+        repository.saveBrowsers(List.of(
+            new Browser("chrome", "Google Chrome", Path.of("/usr/bin/chrome")),
+            new Browser("firefox", "Firefox", Path.of("/usr/bin/firefox")),
+            new Browser("edge", "Microsoft Edge", Path.of("/usr/bin/edge"))
+        ));
+        service = new ProfileDetectionService(repository, new ProfileDetector(local, roaming));
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    private void writeChromeProfiles(String... names) throws IOException {
+        var cache = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) cache.append(',');
+            cache.append("\"Profile %d\": {\"name\": \"%s\"}".formatted(i + 1, names[i]));
+        }
+        Files.writeString(chromeState, "{\"profile\": {\"info_cache\": {" + cache + "}}}");
+    }
+
+    private void writeFirefoxProfiles(String... names) throws IOException {
+        var ini = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            ini.append("[Profile%d]\nName=%s\nPath=profile%d\n".formatted(i, names[i], i));
+        }
+        Files.writeString(firefoxIni, ini);
+    }
+
+    private List<String> ids(List<Browser> browsers) {
+        return browsers.stream().map(Browser::id).toList();
+    }
+
+    private ScanDelta detectAndApply() throws InterruptedException {
+        var changes = service.detectChanges(ProfileDetectionService.Progress.NONE);
+        service.apply(changes);
+        return changes;
+    }
+
+    @Nested
+    @DisplayName("detectChanges()")
+    class DetectChanges {
+
+        @Test
+        @DisplayName("finds Chromium and Firefox profiles and reports progress per browser")
+        void detectsAll() throws Exception {
+            writeChromeProfiles("Work", "Home");
+            writeFirefoxProfiles("Testing");
+
+            var done = new ArrayList<String>();
+            var changes = service.detectChanges((browser, count, total) -> {
+                synchronized (done) {
+                    done.add(browser.id() + " " + total);
+                }
+            });
+
+            assertThat(ids(changes.added()))
+                .containsExactlyInAnyOrder("chrome-profile-1", "chrome-profile-2", "firefox-testing");
+            assertThat(changes.changed()).isEmpty();
+            assertThat(changes.removed()).isEmpty();
+            assertThat(done).containsExactlyInAnyOrder("chrome 3", "firefox 3", "edge 3");
+        }
+
+        @Test
+        @DisplayName("keeps the enabled flag of renamed profiles and removes deleted ones")
+        void diffsAgainstStored() throws Exception {
+            writeChromeProfiles("Work", "Home");
+            detectAndApply();
+            repository.saveBrowser(repository.getBrowser("chrome-profile-1").orElseThrow().withEnabled(false));
+
+            writeChromeProfiles("Office");
+            var changes = detectAndApply();
+
+            assertThat(changes.added()).isEmpty();
+            assertThat(ids(changes.changed())).containsExactly("chrome-profile-1");
+            assertThat(changes.removed()).containsExactly("chrome-profile-2");
+            assertThat(repository.getBrowser("chrome-profile-1"))
+                .hasValueSatisfying(profile -> {
+                    assertThat(profile.name()).isEqualTo("Google Chrome (Office)");
+                    assertThat(profile.enabled()).isFalse();
+                });
+            assertThat(repository.getBrowser("chrome-profile-2")).isEmpty();
+        }
+
+        @Test
+        @DisplayName("updates profiles whose parent moved to another executable")
+        void followsParentPaths() throws Exception {
+            writeChromeProfiles("Work", "Home");
+            detectAndApply();
+            repository.saveBrowser(repository.getBrowser("chrome-profile-1").orElseThrow().withEnabled(false));
+
+            repository.saveBrowser(new Browser("chrome", "Google Chrome", Path.of("/opt/google/chrome")));
+            var changes = detectAndApply();
+
+            assertThat(ids(changes.changed())).containsExactlyInAnyOrder("chrome-profile-1", "chrome-profile-2");
+            assertThat(repository.getBrowser("chrome-profile-1"))
+                .hasValueSatisfying(profile -> {
+                    assertThat(profile.exePath()).isEqualTo(Path.of("/opt/google/chrome"));
+                    assertThat(profile.enabled()).isFalse();
+                });
+            assertThat(repository.getBrowser("chrome-profile-2"))
+                .map(Browser::exePath).contains(Path.of("/opt/google/chrome"));
+        }
+
+        @Test
+        @DisplayName("leaves stored profiles alone when their profile file is missing")
+        void missingSource() throws Exception {
+            writeFirefoxProfiles("Testing");
+            detectAndApply();
+
+            Files.delete(firefoxIni);
+
+            assertThat(detectAndApply().isEmpty()).isTrue();
+            assertThat(repository.getBrowser("firefox-testing")).isPresent();
+        }
+
+        @Test
+        @DisplayName("throws when the calling thread is interrupted")
+        void interrupted() throws Exception {
+            writeChromeProfiles("Work");
+
+            Thread.currentThread().interrupt();
+            try {
+                assertThatThrownBy(() -> service.detectChanges(ProfileDetectionService.Progress.NONE))
+                    .isInstanceOf(InterruptedException.class);
+            } finally {
+                Thread.interrupted();
+            }
+            assertThat(repository.getBrowser("chrome-profile-1")).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("cache")
+    class Cache {
+
+        @Test
+        @DisplayName("skips profile files whose mtime and size are unchanged")
+        void reusesUnchangedFiles() throws Exception {
+            writeChromeProfiles("Work");
+            writeFirefoxProfiles("Testing");
+            detectAndApply();
+            assertThat(service.reads()).isEqualTo(2);
+
+            assertThat(detectAndApply().isEmpty()).isTrue();
+            assertThat(service.reads()).isEqualTo(2);
+
+            var modified = Files.getLastModifiedTime(chromeState);
+            writeChromeProfiles("Home");
+            Files.setLastModifiedTime(chromeState, FileTime.fromMillis(modified.toMillis() + 1_000));
+            assertThat(ids(detectAndApply().changed())).containsExactly("chrome-profile-1");
+            assertThat(service.reads()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("isn't invalidated by toggling the parent browser")
+        void ignoresEnabledFlag() throws Exception {
+            writeChromeProfiles("Work");
+            detectAndApply();
+            repository.saveBrowser(repository.getBrowser("chrome").orElseThrow().withEnabled(false));
+
+            detectAndApply();
+            assertThat(service.reads()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.browserselector.service;
+
+import com.browserselector.model.Browser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class ProfileDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final String LOCAL_STATE = """
+        {
+          "browser": {"last_redirect_origin": "", "enabled_labs_experiments": ["a@1", "b@2"]},
+          "profile": {
+            "last_used": "Profile 1",
+            "info_cache": {
+              "Default": {"name": "Person 1", "avatar_icon": "chrome://theme/IDR_PROFILE_AVATAR_0"},
+              "Profile 1": {
+                "active_time": 1.7e9,
+                "gaia_info": {"picture": {"url": "https://x/{y}"}},
+                "name": "Work",
+                "avatar_icon": "chrome://theme/IDR_PROFILE_AVATAR_26"
+              },
+              "Profile 3": {"hosted_domain": {}, "name": "Home \\"Q\\""},
+              "Guest": {"is_ephemeral": true}
+            }
+          },
+          "variations_seed": "abc"
+        }
+        """;
+
+    @Nested
+    @DisplayName("readChromiumProfiles()")
+    class ReadChromiumProfiles {
+
+        @Test
+        @DisplayName("reads every named profile, even ones with nested objects")
+        void readsProfiles() throws IOException {
+            var profiles = ProfileDetector.readChromiumProfiles(new StringReader(LOCAL_STATE));
+
+            assertThat(profiles).containsExactly(
+                new ProfileDetector.ChromiumProfile("Default", "Person 1", "chrome://theme/IDR_PROFILE_AVATAR_0"),
+                new ProfileDetector.ChromiumProfile("Profile 1", "Work", "chrome://theme/IDR_PROFILE_AVATAR_26"),
+                new ProfileDetector.ChromiumProfile("Profile 3", "Home \"Q\"", null)
+            );
+        }
+
+        @Test
+        @DisplayName("returns nothing for files without an info_cache")
+        void noInfoCache() throws IOException {
+            assertThat(ProfileDetector.readChromiumProfiles(new StringReader("{\"profile\": {\"x\": 1}}"))).isEmpty();
+            assertThat(ProfileDetector.readChromiumProfiles(new StringReader(""))).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("detectProfiles() turns Local State entries into profile browsers")
+    void detectsChromiumProfiles() throws IOException {
+        var userData = Files.createDirectories(tempDir.resolve("Google\\Chrome").resolve("User Data"));
+        Files.writeString(userData.resolve("Local State"), LOCAL_STATE);
+        var chrome = new Browser("chrome", "Google Chrome", Path.of("/opt/chrome"));
+
+        var profiles = new ProfileDetector(tempDir, null).detectProfiles(chrome);
+
+        assertThat(profiles).extracting(Browser::id).containsExactly("chrome-profile-1", "chrome-profile-3");
+        assertThat(profiles.get(0).name()).isEqualTo("Google Chrome (Work)");
+        assertThat(profiles.get(0).profileArg()).isEqualTo("--profile-directory=\"Profile 1\"");
+    }
+
+    @Nested
+    @DisplayName("performance")
+    class Performance {
+
+        @Test
+        @DisplayName("streams a 10 MB Local State")
+        void largeLocalState() throws IOException {
+            var file = tempDir.resolve("Local State");
+            try (var out = Files.newBufferedWriter(file)) {
+                out.write("{\"browser\": {\"history\": [");
+                for (int i = 0; i < 130_000; i++) {
+                    out.write((i > 0 ? "," : "") + "{\"url\": \"https://example.com/" + i
+                        + "\", \"visits\": [1, 2, 3], \"title\": \"Page {" + i + "}\"}");
+                }
+                out.write("]}, \"profile\": {\"info_cache\": {");
+                for (int i = 0; i < 200; i++) {
+                    out.write((i > 0 ? "," : "") + "\"Profile " + i + "\": {\"gaia_info\": {\"x\": {}}, \"name\": \"P" + i + "\"}");
+                }
+                out.write("}}}");
+            }
+            assertThat(Files.size(file)).isGreaterThan(10_000_000);
+
+            var profiles = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                try (var reader = Files.newBufferedReader(file)) {
+                    return ProfileDetector.readChromiumProfiles(reader);
+                }
+            });
+            assertThat(profiles).hasSize(200);
+        }
+    }
+}
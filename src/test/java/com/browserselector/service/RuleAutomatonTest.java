@@ -0,0 +1,117 @@
+package com.browserselector.service;
+
+import com.browserselector.model.UrlRule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuleAutomatonTest {
+
+    private static final String[] PATTERNS = {
+        "google.com", "*.google.com", "mail.google.com", "**.google.com",
+        "example.com/**", "example.com/api/**", "example.com/*.html", "example.co?",
+        "exampl?.com", "github.com/org/*", "*.github.com", "*oogle.com",
+        "https://example.com", "localhost", "*.", "docs.*.com/**", "GitHub.com",
+        "*.exa*.com", "**/api/**", "*/org/*", "??????.com", "*.com/**/*.html"
+    };
+
+    private static final String[] URLS = {
+        "https://google.com", "https://www.google.com/search?q=x", "https://mail.google.com/mail/u/0",
+        "https://notgoogle.com", "https://example.com", "https://example.com/api/v1/users",
+        "https://example.com/page.html", "https://example.com/a/page.html", "https://github.com/org/repo",
+        "https://github.com/org", "https://gist.github.com/x", "http://localhost:8080/x",
+        "google.com", "example.com/api/v1", "https://docs.foo.com/a/b", "https://GITHUB.com",
+        "mailto:someone@example.com", "https://evil.com/google.com", "https://exa.com",
+        "https://www.exam.com/x/y/z.html", "https://bücher.example/api/x"
+    };
+
+    private static UrlRule rule(int id, String pattern, int priority) {
+        return new UrlRule(id, pattern, "browser-" + id, priority, Instant.EPOCH);
+    }
+
+    @Nested
+    @DisplayName("findMatch() agrees with RuleIndex")
+    class Differential {
+
+        @Test
+        @DisplayName("every single-rule automaton matches like the index")
+        void singleRules() {
+            for (var pattern : PATTERNS) {
+                var rules = List.of(rule(1, pattern, 0));
+                var automaton = RuleAutomaton.build(rules);
+                var index = RuleIndex.build(rules);
+                for (var url : URLS) {
+                    assertThat(automaton.findMatch(url))
+                        .as("%s against %s", pattern, url)
+                        .isEqualTo(index.findMatch(url));
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("random rule sets pick the same rule as the index")
+        void randomRuleSets() {
+            var random = new Random(7);
+            for (int round = 0; round < 300; round++) {
+                var rules = new ArrayList<UrlRule>();
+                for (int i = 0; i < 10; i++) {
+                    rules.add(rule(i + 1, PATTERNS[random.nextInt(PATTERNS.length)], random.nextInt(3)));
+                }
+                var automaton = RuleAutomaton.build(rules);
+                var index = RuleIndex.build(rules);
+                for (var url : URLS) {
+                    assertThat(automaton.findMatch(url))
+                        .as("%s against %s", rules, url)
+                        .isEqualTo(index.findMatch(url));
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("thousands of path rules resolve to the best one")
+        void largeRuleSet() {
+            var rules = new ArrayList<UrlRule>();
+            for (int i = 0; i < 5_000; i++) {
+                rules.add(rule(i + 1, "host" + (i % 500) + ".com/team" + i + "/**", i % 7));
+            }
+            rules.add(rule(9_999, "**/team42/**", 3));
+            var automaton = RuleAutomaton.build(rules);
+            var index = RuleIndex.build(rules);
+
+            for (var url : List.of("https://host42.com/team42/x", "https://host7.com/team42/y",
+                    "https://host1.com/team1", "https://host1.com/team1001/a", "https://nowhere.com/")) {
+                assertThat(automaton.findMatch(url)).as(url).isEqualTo(index.findMatch(url));
+            }
+            assertThat(automaton.isOverBudget()).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("memory cap")
+    class MemoryCap {
+
+        @Test
+        @DisplayName("falls back to per-rule matching once the cap is exceeded")
+        void fallsBack() {
+            var rules = List.of(
+                rule(1, "*a*b*c*d*/**", 0),
+                rule(2, "example.com/api/**", 1),
+                rule(3, "google.com", 0)
+            );
+            var automaton = RuleAutomaton.build(rules, 2_048);
+            var index = RuleIndex.build(rules);
+
+            for (var url : URLS) {
+                assertThat(automaton.findMatch(url)).as(url).isEqualTo(index.findMatch(url));
+            }
+            assertThat(automaton.isOverBudget()).isTrue();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.browserselector.service;
+
+import com.browserselector.model.UrlRule;
+import com.browserselector.util.ParsedUrl;
+import com.browserselector.util.PatternMatcher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuleExplanationTest {
+
+    private static UrlRule rule(int id, String pattern, String browserId, int priority) {
+        return new UrlRule(id, pattern, browserId, priority, Instant.EPOCH);
+    }
+
+    private static final List<UrlRule> RULES = List.of(
+        rule(1, "*.example.com", "firefox", 0),
+        rule(2, "docs.example.com/**", "chrome", 5),
+        rule(3, "example.com", "brave", 0),
+        rule(4, "*.other.org", "edge", 0)
+    );
+
+    private static RuleExplanation explain(String url) {
+        return RuleExplanation.explain(RULES, ParsedUrl.parse(url), RuleIndex.build(RULES));
+    }
+
+    @Test
+    @DisplayName("checks every rule in priority order and picks the first match")
+    void evaluatesInOrder() {
+        var explanation = explain("https://docs.example.com/guide");
+
+        assertThat(explanation.evaluations()).extracting(e -> e.rule().id()).containsExactly(2, 1, 3, 4);
+        assertThat(explanation.evaluations()).extracting(RuleExplanation.Evaluation::branch).containsExactly(
+            PatternMatcher.Branch.FULL_URL, PatternMatcher.Branch.DOMAIN,
+            PatternMatcher.Branch.SUBDOMAIN_SUFFIX, PatternMatcher.Branch.NONE);
+        assertThat(explanation.evaluations()).allMatch(e -> e.nanos() >= 0);
+        assertThat(explanation.winner()).map(UrlRule::id).contains(2);
+        assertThat(explanation.consistent()).isTrue();
+    }
+
+    @Test
+    @DisplayName("agrees with the index and automaton")
+    void agreesWithMatchers() {
+        var automaton = RuleAutomaton.build(RULES);
+        for (var url : List.of("https://example.com", "https://www.example.com/x", "https://docs.example.com",
+                "https://other.org", "https://a.b.other.org/path", "https://unrelated.net", "example.com")) {
+            var explanation = RuleExplanation.explain(RULES, ParsedUrl.parse(url), automaton);
+            assertThat(explanation.consistent()).as(url).isTrue();
+            assertThat(explanation.winner()).as(url).isEqualTo(RuleIndex.build(RULES).findMatch(url));
+        }
+    }
+
+    @Test
+    @DisplayName("flags a matcher that routes elsewhere")
+    void flagsDisagreement() {
+        RuleMatcher broken = new RuleMatcher() {
+            @Override
+            public Optional<UrlRule> findMatch(ParsedUrl url) {
+                return Optional.of(RULES.get(3));
+            }
+
+            @Override
+            public int size() {
+                return RULES.size();
+            }
+        };
+        var explanation = RuleExplanation.explain(RULES, ParsedUrl.parse("https://example.com"), broken);
+
+        assertThat(explanation.consistent()).isFalse();
+        assertThat(explanation.format()).contains("Warning").contains("*.other.org -> edge");
+    }
+
+    @Test
+    @DisplayName("the report ends with the winner, or says the selector is shown")
+    void formatsWinner() {
+        assertThat(explain("https://www.example.com").format())
+            .contains("Host     www.example.com")
+            .contains("subdomain of plain domain")
+            .contains("Winner   *.example.com -> firefox (rule 1, priority 0)")
+            .doesNotContain("Warning");
+        assertThat(explain("https://unrelated.net").format()).contains("Winner   none, the selector is shown");
+    }
+}
@@ -0,0 +1,125 @@
+package com.browserselector.service;
+
+import com.browserselector.model.UrlRule;
+import com.browserselector.util.PatternMatcher;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RuleIndexTest {
+
+    private static UrlRule rule(int id, String pattern, int priority) {
+        return new UrlRule(id, pattern, "browser-" + id, priority, Instant.EPOCH);
+    }
+
+    private static Optional<UrlRule> linearMatch(List<UrlRule> rules, String url) {
+        return rules.stream()
+            .sorted((a, b) -> a.priority() != b.priority()
+                ? Integer.compare(b.priority(), a.priority())
+                : Integer.compare(a.id(), b.id()))
+            .filter(rule -> PatternMatcher.matches(rule.pattern(), url))
+            .findFirst();
+    }
+
+    @Nested
+    @DisplayName("findMatch() ordering")
+    class Ordering {
+
+        @Test
+        @DisplayName("higher priority wins over lower id")
+        void priorityWins() {
+            var index = RuleIndex.build(List.of(
+                rule(1, "google.com", 0),
+                rule(2, "mail.google.com", 5)
+            ));
+
+            assertThat(index.findMatch("https://mail.google.com/inbox"))
+                .map(UrlRule::id).contains(2);
+            assertThat(index.findMatch("https://www.google.com"))
+                .map(UrlRule::id).contains(1);
+        }
+
+        @Test
+        @DisplayName("lower id wins on equal priority across index structures")
+        void lowerIdWins() {
+            var index = RuleIndex.build(List.of(
+                rule(3, "*.google.com", 0),
+                rule(2, "google.com/mail/**", 0),
+                rule(1, "*oogle.com", 0)
+            ));
+
+            assertThat(index.findMatch("https://google.com/mail/u/0"))
+                .map(UrlRule::id).contains(1);
+        }
+
+        @Test
+        @DisplayName("returns empty when nothing matches")
+        void noMatch() {
+            var index = RuleIndex.build(List.of(rule(1, "google.com", 0)));
+
+            assertThat(index.findMatch("https://bing.com")).isEmpty();
+            assertThat(index.findMatch((String) null)).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("findMatch() agrees with PatternMatcher")
+    class Differential {
+
+        private static final String[] PATTERNS = {
+            "google.com", "*.google.com", "mail.google.com", "**.google.com",
+            "example.com/**", "example.com/api/**", "example.com/*.html", "example.co?",
+            "exampl?.com", "github.com/org/*", "*.github.com", "*oogle.com",
+            "https://example.com", "localhost", "*.", "docs.*.com/**", "GitHub.com"
+        };
+
+        private static final String[] URLS = {
+            "https://google.com", "https://www.google.com/search?q=x", "https://mail.google.com/mail/u/0",
+            "https://notgoogle.com", "https://example.com", "https://example.com/api/v1/users",
+            "https://example.com/page.html", "https://example.com/a/page.html", "https://github.com/org/repo",
+            "https://github.com/org", "https://gist.github.com/x", "http://localhost:8080/x",
+            "google.com", "example.com/api/v1", "https://docs.foo.com/a/b", "https://GITHUB.com",
+            "mailto:someone@example.com", "https://evil.com/google.com"
+        };
+
+        @Test
+        @DisplayName("every single-rule index matches like PatternMatcher.matches")
+        void singleRules() {
+            for (var pattern : PATTERNS) {
+                var rules = List.of(rule(1, pattern, 0));
+                var index = RuleIndex.build(rules);
+                for (var url : URLS) {
+                    assertThat(index.findMatch(url))
+                        .as("%s against %s", pattern, url)
+                        .isEqualTo(linearMatch(rules, url));
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("random rule sets pick the same rule as a linear scan")
+        void randomRuleSets() {
+            var random = new Random(42);
+            for (int round = 0; round < 200; round++) {
+                var rules = new ArrayList<UrlRule>();
+                for (int i = 0; i < 6; i++) {
+                    rules.add(rule(i + 1, PATTERNS[random.nextInt(PATTERNS.length)], random.nextInt(3)));
+                }
+                var index = RuleIndex.build(rules);
+                for (var url : URLS) {
+                    assertThat(index.findMatch(url))
+                        .as("%s against %s", rules, url)
+                        .isEqualTo(linearMatch(rules, url));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.browserselector.ui;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BackgroundTasksTest {
+
+    private BackgroundTasks tasks;
+    private JButton control;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            tasks = new BackgroundTasks();
+            control = new JButton("Scan");
+            tasks.disableWhileRunning(control);
+        });
+    }
+
+    private static <T> T onEdt(Callable<T> call) throws Exception {
+        var result = new AtomicReference<T>();
+        var failure = new AtomicReference<Exception>();
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result.set(call.call());
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        if (failure.get() != null) throw failure.get();
+        return result.get();
+    }
+
+    // Lets done() run; it is queued on the EDT after the job returns
+    private void awaitIdle() throws Exception {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (onEdt(tasks::isRunning)) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    @DisplayName("runs the job off the EDT and hands its result over on the EDT")
+    void runsInBackground() throws Exception {
+        var jobOnEdt = new AtomicBoolean(true);
+        var doneOnEdt = new AtomicBoolean(false);
+        var result = new AtomicReference<String>();
+        var release = new CountDownLatch(1);
+
+        assertThat(onEdt(() -> tasks.start("Scanning", status -> {
+            jobOnEdt.set(SwingUtilities.isEventDispatchThread());
+            release.await();
+            return "done";
+        }, value -> {
+            doneOnEdt.set(SwingUtilities.isEventDispatchThread());
+            result.set(value);
+        }))).isTrue();
+        assertThat(onEdt(control::isEnabled)).isFalse();
+
+        release.countDown();
+        awaitIdle();
+
+        assertThat(jobOnEdt).isFalse();
+        assertThat(doneOnEdt).isTrue();
+        assertThat(result).hasValue("done");
+        assertThat(onEdt(control::isEnabled)).isTrue();
+    }
+
+    @Test
+    @DisplayName("won't start a second job while one is running")
+    void noOverlap() throws Exception {
+        var release = new CountDownLatch(1);
+        onEdt(() -> tasks.start("First", status -> release.await(5, TimeUnit.SECONDS), value -> {}));
+
+        assertThat(onEdt(() -> tasks.start("Second", status -> true, value -> {}))).isFalse();
+
+        release.countDown();
+        awaitIdle();
+        assertThat(onEdt(() -> tasks.start("Third", status -> true, value -> {}))).isTrue();
+        awaitIdle();
+    }
+
+    @Test
+    @DisplayName("cancelling interrupts the job and drops its result")
+    void cancels() throws Exception {
+        var started = new CountDownLatch(1);
+        var interrupted = new AtomicBoolean();
+        var handedOver = new AtomicBoolean();
+
+        onEdt(() -> tasks.start("Detecting", status -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw e;
+            }
+            return "late";
+        }, value -> handedOver.set(true)));
+        started.await();
+
+        // Still busy until the job has actually returned
+        onEdt(() -> {
+            tasks.cancel();
+            return null;
+        });
+        awaitIdle();
+
+        assertThat(interrupted).isTrue();
+        assertThat(handedOver).isFalse();
+    }
+
+    @Test
+    @DisplayName("ignores cancel requests once the job has committed")
+    void commitEndsCancellation() throws Exception {
+        var committed = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var result = new AtomicReference<String>();
+
+        onEdt(() -> tasks.start("Saving", status -> {
+            status.commit();
+            committed.countDown();
+            release.await();
+            return "saved";
+        }, result::set));
+        committed.await();
+
+        onEdt(() -> {
+            tasks.cancel();
+            return null;
+        });
+        release.countDown();
+        awaitIdle();
+
+        assertThat(result).hasValue("saved");
+    }
+}
@@ -0,0 +1,105 @@
+package com.browserselector.ui;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.MultiResolutionImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IconCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeIcon(String name, int width, int height) throws IOException {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        var g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        var file = tempDir.resolve(name);
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    private long cachedFiles(Path cacheDir) throws IOException {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.filter(f -> f.toString().endsWith(".png")).count();
+        }
+    }
+
+    @Test
+    @DisplayName("icons are 24 px with 24, 32 and 48 px variants")
+    void multiResolution() throws IOException {
+        var cache = new IconCache(tempDir.resolve("cache"), 8);
+        var icon = (ImageIcon) cache.iconFor(writeIcon("browser.png", 256, 128));
+
+        assertThat(icon.getIconWidth()).isEqualTo(24);
+        var variants = ((MultiResolutionImage) icon.getImage()).getResolutionVariants();
+        assertThat(variants).extracting(image -> image.getWidth(null)).containsExactly(24, 32, 48);
+    }
+
+    @Test
+    @DisplayName("the same icon instance is served until the file changes")
+    void reusesDecodedIcons() throws IOException {
+        var file = writeIcon("browser.png", 64, 64);
+        var cache = new IconCache(tempDir.resolve("cache"), 8);
+
+        assertThat(cache.iconFor(file)).isSameAs(cache.iconFor(file));
+    }
+
+    @Test
+    @DisplayName("variants are cached on disk by path and mtime, replacing older versions")
+    void diskCache() throws IOException {
+        var file = writeIcon("browser.png", 64, 64);
+        var cacheDir = tempDir.resolve("cache");
+
+        new IconCache(cacheDir, 8).iconFor(file);
+        assertThat(cachedFiles(cacheDir)).isEqualTo(3);
+
+        // A fresh cache reads the PNGs instead of writing new ones
+        assertThat(new IconCache(cacheDir, 8).iconFor(file)).isNotNull();
+        assertThat(cachedFiles(cacheDir)).isEqualTo(3);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() - 10_000));
+        new IconCache(cacheDir, 8).iconFor(file);
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            var modified = Files.getLastModifiedTime(file).toMillis();
+            assertThat(files.map(f -> f.getFileName().toString()))
+                .hasSize(3)
+                .allMatch(name -> name.contains("-" + modified + "-"));
+        }
+    }
+
+    @Test
+    @DisplayName("missing and undecodable files have no icon")
+    void noIcon() throws IOException {
+        var cache = new IconCache(tempDir.resolve("cache"), 8);
+        var text = Files.writeString(tempDir.resolve("notes.png"), "not an image");
+
+        assertThat(cache.iconFor(null)).isNull();
+        assertThat(cache.iconFor(tempDir.resolve("missing.png"))).isNull();
+        assertThat(cache.iconFor(text)).isNull();
+    }
+
+    @Test
+    @DisplayName("scale() keeps the aspect ratio inside the square")
+    void scaleKeepsAspect() {
+        var wide = new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB);
+        var scaled = IconCache.scale(wide, 48);
+
+        assertThat(scaled.getWidth()).isEqualTo(48);
+        assertThat(scaled.getHeight()).isEqualTo(48);
+    }
+}
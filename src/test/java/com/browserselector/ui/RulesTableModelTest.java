@@ -0,0 +1,147 @@
+package com.browserselector.ui;
+
+import com.browserselector.model.Browser;
+import com.browserselector.model.UrlRule;
+import com.browserselector.service.BrowserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class RulesTableModelTest {
+
+    private static final Browser FIREFOX = new Browser("firefox", "Firefox", Path.of("/usr/bin/firefox"));
+    private static final Browser CHROME = new Browser("chrome", "Chrome", Path.of("/usr/bin/chrome"));
+
+    private static UrlRule rule(int id, String browserId) {
+        return new UrlRule(id, "site" + id + ".com", browserId, id, Instant.EPOCH);
+    }
+
+    private static List<UrlRule> rules(int count) {
+        var rules = new ArrayList<UrlRule>(count);
+        for (int i = 0; i < count; i++) {
+            rules.add(rule(i, i % 2 == 0 ? "firefox" : "chrome"));
+        }
+        return rules;
+    }
+
+    private static BrowserRepository.Snapshot snapshot(List<UrlRule> rules, Browser... browsers) {
+        var byId = new LinkedHashMap<String, Browser>();
+        for (var browser : browsers) {
+            byId.put(browser.id(), browser);
+        }
+        return new BrowserRepository.Snapshot(List.of(browsers), byId, List.copyOf(rules), Map.of());
+    }
+
+    // Events as "type first-last"
+    private static List<String> events(RulesTableModel model) {
+        var events = new ArrayList<String>();
+        model.addTableModelListener(e -> events.add(switch (e.getType()) {
+            case TableModelEvent.INSERT -> "insert";
+            case TableModelEvent.DELETE -> "delete";
+            default -> "update";
+        } + " " + e.getFirstRow() + "-" + e.getLastRow()));
+        return events;
+    }
+
+    @Test
+    @DisplayName("shows each rule's pattern, browser name and priority")
+    void cells() {
+        var model = new RulesTableModel(snapshot(List.of(rule(1, "firefox"), rule(2, "gone")), FIREFOX));
+
+        assertThat(model.getRowCount()).isEqualTo(2);
+        assertThat(model.getValueAt(0, 0)).isEqualTo("site1.com");
+        assertThat(model.getValueAt(0, 1)).isEqualTo("Firefox");
+        assertThat(model.getValueAt(0, 2)).isEqualTo(1);
+        assertThat(model.getValueAt(1, 1)).isEqualTo("gone");
+        assertThat(model.ruleAt(1).id()).isEqualTo(2);
+        assertThat(model.ruleAt(2)).isNull();
+        assertThat(model.ruleAt(-1)).isNull();
+    }
+
+    @Nested
+    @DisplayName("update()")
+    class Update {
+
+        @Test
+        @DisplayName("fires nothing when the rows are unchanged")
+        void unchanged() {
+            var model = new RulesTableModel(snapshot(rules(10), FIREFOX, CHROME));
+            var events = events(model);
+
+            model.update(snapshot(rules(10), FIREFOX, CHROME));
+
+            assertThat(events).isEmpty();
+        }
+
+        @Test
+        @DisplayName("fires row events for inserts, deletes and swaps")
+        void rowEvents() {
+            var model = new RulesTableModel(snapshot(rules(10), FIREFOX, CHROME));
+            var events = events(model);
+
+            var inserted = new ArrayList<>(rules(10));
+            inserted.add(4, rule(99, "firefox"));
+            model.update(snapshot(inserted, FIREFOX, CHROME));
+
+            var deleted = new ArrayList<>(inserted);
+            deleted.remove(7);
+            model.update(snapshot(deleted, FIREFOX, CHROME));
+
+            var swapped = new ArrayList<>(deleted);
+            swapped.set(2, deleted.get(3));
+            swapped.set(3, deleted.get(2));
+            model.update(snapshot(swapped, FIREFOX, CHROME));
+
+            assertThat(events).containsExactly("insert 4-4", "delete 7-7", "update 2-3");
+            assertThat(model.getRowCount()).isEqualTo(10);
+            assertThat(model.ruleAt(2)).isEqualTo(deleted.get(3));
+        }
+
+        @Test
+        @DisplayName("updates the rows of a renamed browser")
+        void renamedBrowser() {
+            var model = new RulesTableModel(snapshot(List.of(rule(1, "firefox"), rule(2, "chrome"), rule(3, "chrome")),
+                FIREFOX, CHROME));
+            var events = events(model);
+
+            var renamed = new Browser("firefox", "Firefox ESR", FIREFOX.exePath());
+            model.update(snapshot(List.of(rule(1, "firefox"), rule(2, "chrome"), rule(3, "chrome")), renamed, CHROME));
+
+            assertThat(events).containsExactly("update 0-0");
+            assertThat(model.getValueAt(0, 1)).isEqualTo("Firefox ESR");
+        }
+    }
+
+    @Nested
+    class Performance {
+
+        @Test
+        @DisplayName("opens and edits a 100k-rule table quickly")
+        void largeTable() {
+            var rules = rules(100_000);
+            var before = snapshot(rules, FIREFOX, CHROME);
+            var edited = new ArrayList<>(rules);
+            edited.remove(50_000);
+            var after = snapshot(edited, FIREFOX, CHROME);
+
+            assertTimeoutPreemptively(Duration.ofMillis(500), () -> {
+                var model = new RulesTableModel(before);
+                var events = events(model);
+                model.update(after);
+                assertThat(events).containsExactly("delete 50000-50000");
+            });
+        }
+    }
+}
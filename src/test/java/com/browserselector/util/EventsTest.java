@@ -0,0 +1,95 @@
+package com.browserselector.util;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<RecordedEvent> events(Path file, String name) throws IOException {
+        return RecordingFile.readAllEvents(file).stream()
+            .filter(event -> event.getEventType().getName().equals(name))
+            .toList();
+    }
+
+    @Nested
+    @DisplayName("Database results")
+    class DatabaseResults {
+
+        private Events.Database event(Object result) {
+            var event = new Events.Database();
+            event.result(result);
+            return event;
+        }
+
+        @Test
+        @DisplayName("Update counts are updates")
+        void updates() {
+            assertThat(event(3).kind).isEqualTo("update");
+            assertThat(event(3).rows).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Batch counts are summed, ignoring SUCCESS_NO_INFO")
+        void batches() {
+            var event = event(new int[]{1, 1, -2, 1});
+            assertThat(event.kind).isEqualTo("batch");
+            assertThat(event.rows).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("Collections, maps and optionals are queries")
+        void queries() {
+            assertThat(event(List.of("a", "b")).rows).isEqualTo(2);
+            assertThat(event(Map.of("k", "v")).rows).isEqualTo(1);
+            assertThat(event(Optional.empty()).rows).isZero();
+            assertThat(event(List.of()).kind).isEqualTo("query");
+        }
+
+        @Test
+        @DisplayName("Anything else has unknown rows")
+        void unknown() {
+            assertThat(event(null).rows).isEqualTo(-1);
+            assertThat(event("text").rows).isEqualTo(-1);
+        }
+    }
+
+    @Nested
+    @DisplayName("Recording")
+    class Recordings {
+
+        @Test
+        @DisplayName("startRecording turns events on and writes to the given directory")
+        void startRecording() throws IOException {
+            var file = Events.startRecording(tempDir.resolve("recordings"));
+            assertThat(Events.enabled()).isTrue();
+            Events.phase("test").done();
+
+            var recording = FlightRecorder.getFlightRecorder().getRecordings().stream()
+                .filter(r -> file.equals(r.getDestination()))
+                .findFirst()
+                .orElseThrow();
+            recording.stop();
+            recording.close();
+
+            assertThat(file).exists().hasParent(tempDir.resolve("recordings"));
+            assertThat(events(file, "browserswitch.Phase"))
+                .anySatisfy(event -> assertThat(event.getString("phase")).isEqualTo("test"));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.browserselector.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class GlobMatcherTest {
+
+    /**
+     * The wildcard-to-regex translation PatternMatcher used before GlobMatcher.
+     */
+    private static Pattern legacyRegex(String pattern) {
+        var sb = new StringBuilder("^");
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                        sb.append(".*");
+                        i++;
+                    } else {
+                        sb.append("[^/]*");
+                    }
+                }
+                case '?' -> sb.append(".");
+                case '.' -> sb.append("\\.");
+                case '\\' -> sb.append("\\\\");
+                case '^', '$', '|', '+', '[', ']', '(', ')', '{', '}' -> sb.append("\\").append(c);
+                default -> sb.append(c);
+            }
+        }
+        return Pattern.compile(sb.append("$").toString());
+    }
+
+    private static void assertSameAsRegex(String pattern, String input) {
+        assertThat(GlobMatcher.compile(pattern).matches(input))
+            .as("'%s' against '%s'", pattern, input)
+            .isEqualTo(legacyRegex(pattern).matcher(input).matches());
+    }
+
+    @Nested
+    @DisplayName("wildcard semantics")
+    class Semantics {
+
+        @ParameterizedTest
+        @CsvSource({
+            "example.com/*, example.com/page, true",
+            "example.com/*, example.com/a/b, false",
+            "example.com/**, example.com/a/b, true",
+            "example.com/**, example.com/, true",
+            "*.google.com, mail.google.com, true",
+            "*.google.com, a/b.google.com, false",
+            "**.google.com, a/b.google.com, true",
+            "exampl?.com, example.com, true",
+            "exampl?.com, exampl.com, false",
+            "a+b(c), a+b(c), true",
+            "a.b, axb, false"
+        })
+        @DisplayName("matches like the regex translation")
+        void basic(String pattern, String input, boolean expected) {
+            assertThat(GlobMatcher.compile(pattern).matches(input)).isEqualTo(expected);
+            assertSameAsRegex(pattern, input);
+        }
+
+        @Test
+        @DisplayName("? and ** never match a line terminator, * does")
+        void lineTerminators() {
+            assertSameAsRegex("a?b", "a\nb");
+            assertSameAsRegex("a**b", "a\u2028b");
+            assertSameAsRegex("a*b", "a\rb");
+            assertSameAsRegex("a***b", "a\n/b");
+        }
+
+        @Test
+        @DisplayName("? matches a whole supplementary code point")
+        void codePoints() {
+            assertSameAsRegex("a?b", "a😀b");
+            assertSameAsRegex("a??b", "a😀b");
+            assertSameAsRegex("a😀*", "a😀xyz");
+        }
+
+        @Test
+        @DisplayName("patterns longer than one word still match")
+        void longPatterns() {
+            var pattern = "a?".repeat(40) + "**/" + "*b".repeat(10);
+            var input = "ax".repeat(40) + "q/r/" + "zb".repeat(10);
+            assertThat(GlobMatcher.compile(pattern).matches(input)).isTrue();
+            assertSameAsRegex(pattern, input);
+            assertSameAsRegex(pattern, input + "/");
+        }
+    }
+
+    @Nested
+    @DisplayName("performance")
+    class Performance {
+
+        @Test
+        @DisplayName("pathological pattern stays linear")
+        void noCatastrophicBacktracking() {
+            var matcher = GlobMatcher.compile("*a*a*a*a*a*a*a*a*b");
+            var input = "a".repeat(200_000);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+                assertThat(matcher.matches(input)).isFalse();
+            });
+        }
+    }
+
+    @Nested
+    @DisplayName("differential against java.util.regex")
+    class Differential {
+
+        @Test
+        @DisplayName("random patterns and inputs")
+        void randomCases() {
+            var random = new Random(7);
+            var patternAlphabet = "ab./*?*?-+(\\né";
+            var inputAlphabet = "ab./-+(\\né\n\r";
+
+            for (int round = 0; round < 20_000; round++) {
+                var pattern = randomString(random, patternAlphabet, 8);
+                var input = randomString(random, inputAlphabet, 10);
+                assertSameAsRegex(pattern, input);
+            }
+        }
+
+        private static String randomString(Random random, String alphabet, int maxLength) {
+            var sb = new StringBuilder();
+            int length = random.nextInt(maxLength + 1);
+            for (int i = 0; i < length; i++) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            return sb.toString();
+        }
+    }
+}
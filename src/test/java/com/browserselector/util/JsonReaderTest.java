@@ -0,0 +1,70 @@
+package com.browserselector.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonReaderTest {
+
+    @Test
+    @DisplayName("reads names, strings and literals")
+    void readsValues() throws IOException {
+        var json = new JsonReader(new StringReader("""
+            {"a": "x\\"y\\u00e9\\n", "b": 42, "c": true, "d": null, "e": -1.5e3}
+            """));
+
+        json.beginObject();
+        assertThat(json.nextName()).isEqualTo("a");
+        assertThat(json.nextString()).isEqualTo("x\"yé\n");
+        assertThat(json.nextName()).isEqualTo("b");
+        assertThat(json.peek()).isEqualTo(JsonReader.Kind.LITERAL);
+        assertThat(json.nextString()).isEqualTo("42");
+        assertThat(json.nextName()).isEqualTo("c");
+        assertThat(json.nextString()).isEqualTo("true");
+        assertThat(json.nextName()).isEqualTo("d");
+        assertThat(json.nextString()).isNull();
+        assertThat(json.nextName()).isEqualTo("e");
+        assertThat(json.nextString()).isEqualTo("-1.5e3");
+        assertThat(json.hasNext()).isFalse();
+        json.endObject();
+        assertThat(json.peek()).isEqualTo(JsonReader.Kind.END);
+    }
+
+    @Test
+    @DisplayName("skips nested values, including brackets inside strings")
+    void skipsNested() throws IOException {
+        var json = new JsonReader(new StringReader("""
+            {"skip": {"x": [1, {"y": "}]\\"{"}], "z": {}}, "keep": "yes", "list": ["a", "b"]}
+            """));
+
+        json.beginObject();
+        assertThat(json.nextName()).isEqualTo("skip");
+        json.skipValue();
+        assertThat(json.nextName()).isEqualTo("keep");
+        assertThat(json.nextString()).isEqualTo("yes");
+        assertThat(json.nextName()).isEqualTo("list");
+        json.beginArray();
+        assertThat(json.nextString()).isEqualTo("a");
+        json.skipValue();
+        assertThat(json.hasNext()).isFalse();
+        json.endArray();
+        json.endObject();
+    }
+
+    @Test
+    @DisplayName("reports truncated input")
+    void truncated() {
+        var json = new JsonReader(new StringReader("{\"a\": \"unterminated"));
+
+        assertThatThrownBy(() -> {
+            json.beginObject();
+            json.nextName();
+            json.nextString();
+        }).isInstanceOf(IOException.class);
+    }
+}
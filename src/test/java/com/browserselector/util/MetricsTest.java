@@ -0,0 +1,231 @@
+package com.browserselector.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class MetricsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Nested
+    @DisplayName("Buckets")
+    class Buckets {
+
+        @Test
+        @DisplayName("Small values get a bucket each")
+        void smallValuesAreExact() {
+            for (long value = 0; value < Metrics.SUB_BUCKETS; value++) {
+                assertThat(Metrics.bucket(value)).isEqualTo((int) value);
+                assertThat(Metrics.lowerBound((int) value)).isEqualTo(value);
+            }
+        }
+
+        @Test
+        @DisplayName("Every bucket's lower bound falls in that bucket")
+        void lowerBoundRoundTrips() {
+            for (int bucket = 0; bucket < Metrics.BUCKETS; bucket++) {
+                assertThat(Metrics.bucket(Metrics.lowerBound(bucket))).isEqualTo(bucket);
+            }
+        }
+
+        @Test
+        @DisplayName("Buckets are contiguous and no wider than 1/8 of their lower bound")
+        void bucketsAreNarrow() {
+            for (int bucket = Metrics.SUB_BUCKETS; bucket < Metrics.BUCKETS - 1; bucket++) {
+                var low = Metrics.lowerBound(bucket);
+                var next = Metrics.lowerBound(bucket + 1);
+                assertThat(Metrics.bucket(next - 1)).isEqualTo(bucket);
+                assertThat(next - low).isLessThanOrEqualTo(low / Metrics.SUB_BUCKETS);
+            }
+        }
+
+        @Test
+        @DisplayName("Huge and negative values are clamped")
+        void clampsOutOfRange() {
+            assertThat(Metrics.bucket(Long.MAX_VALUE)).isEqualTo(Metrics.BUCKETS - 1);
+
+            var metrics = new Metrics(null, Long.MAX_VALUE);
+            metrics.histogram("t").record(-5);
+            assertThat(metrics.aggregate().histograms().get("t").max()).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("Recording")
+    class Recording {
+
+        @Test
+        @DisplayName("Percentiles are within 12.5% of the exact values")
+        void percentilesAreAccurate() {
+            var metrics = new Metrics(null, Long.MAX_VALUE);
+            var histogram = metrics.histogram("latency");
+            var random = new Random(42);
+            var values = new long[10_000];
+            for (int i = 0; i < values.length; i++) {
+                // Log-normal-ish, from microseconds to a few hundred milliseconds
+                values[i] = (long) Math.exp(7 + random.nextGaussian() * 2);
+                histogram.record(values[i]);
+            }
+            Arrays.sort(values);
+
+            var summary = metrics.aggregate().histograms().get("latency");
+            assertThat(summary.count()).isEqualTo(values.length);
+            assertThat(summary.max()).isEqualTo(values[values.length - 1]);
+            assertThat(summary.mean()).isEqualTo(Arrays.stream(values).sum() / values.length);
+            assertThat((double) summary.p50()).isCloseTo(values[4_999], within(values[4_999] * 0.125));
+            assertThat((double) summary.p95()).isCloseTo(values[9_499], within(values[9_499] * 0.125));
+            assertThat((double) summary.p99()).isCloseTo(values[9_899], within(values[9_899] * 0.125));
+        }
+
+        @Test
+        @DisplayName("Counters add up")
+        void countersAddUp() {
+            var metrics = new Metrics(null, Long.MAX_VALUE);
+            metrics.counter("hits").increment();
+            metrics.counter("hits").add(4);
+
+            assertThat(metrics.aggregate().counters()).containsEntry("hits", 5L);
+        }
+
+        @Test
+        @DisplayName("The same name returns the same metric")
+        void namesAreShared() {
+            var metrics = new Metrics(null, Long.MAX_VALUE);
+            assertThat(metrics.histogram("a")).isSameAs(metrics.histogram("a"));
+            assertThat(metrics.counter("a")).isSameAs(metrics.counter("a"));
+        }
+
+        @Test
+        @DisplayName("Names with whitespace are rejected")
+        void rejectsWhitespace() {
+            var metrics = new Metrics(null, Long.MAX_VALUE);
+            assertThatThrownBy(() -> metrics.histogram("db save")).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> metrics.counter("")).isInstanceOf(IllegalArgumentException.class);
+        }
+
+        @Test
+        @DisplayName("An empty registry has nothing to report")
+        void emptyReport() {
+            var report = new Metrics(null, Long.MAX_VALUE).aggregate();
+
+            assertThat(report.since()).isNull();
+            assertThat(report.histograms()).isEmpty();
+            assertThat(report.format()).contains("No metrics recorded yet");
+        }
+    }
+
+    @Nested
+    @DisplayName("Persistence")
+    class Persistence {
+
+        @Test
+        @DisplayName("Flushed metrics from several processes are added up")
+        void aggregatesAcrossProcesses() {
+            var file = tempDir.resolve("metrics.log");
+            var first = new Metrics(file, Long.MAX_VALUE);
+            first.histogram("rules.match").record(1_000);
+            first.counter("rules.matched").increment();
+            first.flush();
+
+            var second = new Metrics(file, Long.MAX_VALUE);
+            second.histogram("rules.match").record(3_000);
+            second.counter("rules.matched").add(2);
+            second.flush();
+            // Not flushed yet: only counted by this instance
+            second.histogram("rules.match").record(5_000);
+
+            var report = second.aggregate();
+            assertThat(report.counters()).containsEntry("rules.matched", 3L);
+            var summary = report.histograms().get("rules.match");
+            assertThat(summary.count()).isEqualTo(3);
+            assertThat(summary.mean()).isEqualTo(3_000);
+            assertThat(summary.max()).isEqualTo(5_000);
+            assertThat(report.since()).isNotNull();
+
+            assertThat(new Metrics(file, Long.MAX_VALUE).aggregate().histograms().get("rules.match").count())
+                .isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("Flushing resets the live values")
+        void flushResets() {
+            var file = tempDir.resolve("metrics.log");
+            var metrics = new Metrics(file, Long.MAX_VALUE);
+            metrics.histogram("t").record(10);
+            metrics.flush();
+            metrics.flush();
+
+            assertThat(metrics.aggregate().histograms().get("t").count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("Nothing is written when nothing was recorded")
+        void skipsEmptyFlush() {
+            var file = tempDir.resolve("metrics.log");
+            var metrics = new Metrics(file, Long.MAX_VALUE);
+            metrics.histogram("t");
+            metrics.flush();
+
+            assertThat(file).doesNotExist();
+        }
+
+        @Test
+        @DisplayName("A full file rolls over and both files are read")
+        void rollsOver() {
+            var file = tempDir.resolve("metrics.log");
+            var metrics = new Metrics(file, 1);
+            metrics.counter("c").increment();
+            metrics.flush();
+            metrics.counter("c").increment();
+            metrics.flush();
+            metrics.counter("c").increment();
+            metrics.flush();
+
+            assertThat(tempDir.resolve("metrics.log.1")).exists();
+            // The oldest record was dropped by the second roll
+            assertThat(new Metrics(file, 1).aggregate().counters()).containsEntry("c", 2L);
+        }
+
+        @Test
+        @DisplayName("Torn and foreign lines are skipped")
+        void skipsBadLines() throws IOException {
+            var file = tempDir.resolve("metrics.log");
+            Files.writeString(file, """
+                garbage
+                1700000000000 c hits 2
+                1700000000000 h t 10 10 abc
+                1700000000000 h t 10 10 3:1,x
+                1700000000000 c hi
+                """);
+
+            var report = new Metrics(file, Long.MAX_VALUE).aggregate();
+            assertThat(report.counters()).containsOnlyKeys("hits").containsEntry("hits", 2L);
+            assertThat(report.histograms()).isEmpty();
+            assertThat(report.since()).isNotNull();
+        }
+
+        @Test
+        @DisplayName("A registry without a file keeps everything in memory")
+        void memoryOnly() {
+            var metrics = new Metrics(null, Long.MAX_VALUE);
+            metrics.counter("c").increment();
+            metrics.flush();
+
+            assertThat(metrics.aggregate().counters()).containsEntry("c", 1L);
+            assertThat(tempDir).isEmptyDirectory();
+        }
+    }
+}
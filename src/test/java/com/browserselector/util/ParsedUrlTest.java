@@ -0,0 +1,168 @@
+package com.browserselector.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+class ParsedUrlTest {
+
+    /**
+     * The URLDecoder + URI implementation UrlUtils used before ParsedUrl.
+     */
+    private static final class Legacy {
+
+        static String extractDomain(String url) {
+            if (url == null || url.isBlank()) return "";
+
+            var decoded = URLDecoder.decode(url, StandardCharsets.UTF_8);
+
+            try {
+                var uri = URI.create(decoded);
+                var host = uri.getHost();
+                return host != null ? host.toLowerCase() : "";
+            } catch (Exception e) {
+                var cleaned = decoded.replaceFirst("^https?://", "");
+                var slashIdx = cleaned.indexOf('/');
+                var domain = slashIdx > 0 ? cleaned.substring(0, slashIdx) : cleaned;
+                var colonIdx = domain.indexOf(':');
+                return (colonIdx > 0 ? domain.substring(0, colonIdx) : domain).toLowerCase();
+            }
+        }
+
+        static String extractPath(String url) {
+            if (url == null || url.isBlank()) return "";
+
+            try {
+                var uri = URI.create(URLDecoder.decode(url, StandardCharsets.UTF_8));
+                var path = uri.getPath();
+                return path != null ? path : "";
+            } catch (Exception e) {
+                return "";
+            }
+        }
+    }
+
+    private static void assertSameAsLegacy(String url) {
+        String legacyDomain;
+        try {
+            legacyDomain = Legacy.extractDomain(url);
+        } catch (IllegalArgumentException e) {
+            // The old code threw on malformed escapes; the new one must not
+            assertThatCode(() -> ParsedUrl.parse(url)).as(url).doesNotThrowAnyException();
+            return;
+        }
+
+        var parsed = ParsedUrl.parse(url);
+        assertThat(parsed.host()).as("host of %s", url).isEqualTo(legacyDomain);
+        assertThat(parsed.path()).as("path of %s", url).isEqualTo(Legacy.extractPath(url));
+    }
+
+    @Nested
+    @DisplayName("components")
+    class Components {
+
+        @Test
+        @DisplayName("records every component of a plain URL")
+        void allComponents() {
+            var url = ParsedUrl.parse("HTTPS://Mail.Example.COM:8443/Inbox/Today?q=a&b=c#top");
+
+            assertThat(url.isFastPath()).isTrue();
+            assertThat(url.scheme()).isEqualTo("HTTPS");
+            assertThat(url.host()).isEqualTo("mail.example.com");
+            assertThat(url.port()).isEqualTo(8443);
+            assertThat(url.path()).isEqualTo("/Inbox/Today");
+            assertThat(url.query()).isEqualTo("q=a&b=c");
+            assertThat(url.fragment()).isEqualTo("top");
+            assertThat(url.hostAndPath()).isEqualTo("mail.example.com/inbox/today");
+        }
+
+        @Test
+        @DisplayName("absent components are empty or null")
+        void absentComponents() {
+            var url = ParsedUrl.parse("https://example.com");
+
+            assertThat(url.path()).isEmpty();
+            assertThat(url.port()).isEqualTo(-1);
+            assertThat(url.query()).isNull();
+            assertThat(url.fragment()).isNull();
+        }
+
+        @Test
+        @DisplayName("decodes escapes in host and path before splitting")
+        void decodesEscapes() {
+            var url = ParsedUrl.parse("https://ex%61mple.com%2Fa%2Fb%3Fq");
+
+            assertThat(url.host()).isEqualTo("example.com");
+            assertThat(url.path()).isEqualTo("/a/b");
+            assertThat(url.query()).isEqualTo("q");
+        }
+
+        @Test
+        @DisplayName("blank input has empty host and path")
+        void blankInput() {
+            assertThat(ParsedUrl.parse(null).host()).isEmpty();
+            assertThat(ParsedUrl.parse("  ").path()).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("agrees with the URLDecoder + URI implementation")
+    class Differential {
+
+        @ParameterizedTest
+        @ValueSource(strings = {
+            "https://google.com", "https://www.google.com", "http://google.com/search?q=test",
+            "https://example.org/page/sub", "https://localhost:8080/api", "http://example.com:3000/path",
+            "https://example.com/path%20with%20spaces", "https://GOOGLE.COM/Path", "https://Example.ORG",
+            "https://example.com/", "https://example.com/api/v1/users", "google.com", "example.org/path",
+            "ftp://example.com", "file:///path/to/file", "mailto:someone@example.com",
+            "https://user:pw@example.com/x", "https://127.0.0.1/x", "https://[::1]:80/x",
+            "https://a-.com", "https://-a.com", "https://a..com", "https://a.com.", "https://a_b.com/x",
+            "https://a.com:/x", "https://a.com:123456/x", "https://a.com/a+b", "https://a.com/%2B",
+            "https://a.com/%25", "https://a.com/%zz", "https://a.com/100%", "https://a.com/%C3%A9",
+            "https://a.com/é", "https://a.com/a b", "https://a.com/?q=[1]", "https://a.com/#a#b",
+            "https://a.com/x%23y?z", " https://a.com", "https://a.com/x\ty", "HTTP://A.COM/B",
+            "https://123.com/x", "https://x.123", "https://a.com/%2e%2E/x", "https://a.com%3A99/x"
+        })
+        @DisplayName("known edge cases")
+        void edgeCases(String url) {
+            assertSameAsLegacy(url);
+        }
+
+        @Test
+        @DisplayName("fuzz corpus")
+        void fuzzCorpus() {
+            var random = new Random(1234);
+            var schemes = new String[]{"https://", "http://", "HTTPS://", "ftp://", "", "https:/", "x+y://", "1http://"};
+            var hosts = new String[]{"example.com", "WWW.Example.org", "localhost", "a-b.co", "1.2.3.4",
+                "xn--bcher-kva.example", "under_score.com", "-bad.com", "bad-.com", "ex%61mple.com", "", "a.b.c.d.e"};
+            var pieces = new String[]{"/", "a", "Z", "9", "-", "_", ".", "~", "!", "*", "'", "(", ")", ";", ":",
+                "@", "&", "=", "+", "$", ",", "?", "#", "%", "%2F", "%3F", "%23", "%20", "%41", "%7e", "%25",
+                "%C3%A9", "%zz", "%4", " ", "\"", "<", ">", "[", "]", "{", "}", "|", "\\", "^", "`", "é", "\t"};
+
+            for (int round = 0; round < 20_000; round++) {
+                var sb = new StringBuilder();
+                sb.append(schemes[random.nextInt(schemes.length)]);
+                sb.append(hosts[random.nextInt(hosts.length)]);
+                if (random.nextInt(4) == 0) {
+                    sb.append(':').append(random.nextInt(70000));
+                }
+                int length = random.nextInt(12);
+                for (int i = 0; i < length; i++) {
+                    sb.append(pieces[random.nextInt(pieces.length)]);
+                }
+                assertSameAsLegacy(sb.toString());
+            }
+        }
+    }
+}
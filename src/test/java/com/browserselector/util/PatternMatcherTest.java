@@ -175,4 +175,26 @@ class PatternMatcherTest {
             assertThat(PatternMatcher.domainToPattern("   ")).isEqualTo("");
         }
     }
+
+    @Nested
+    @DisplayName("Compiled.explain()")
+    class Explain {
+
+        @ParameterizedTest
+        @CsvSource({
+            "github.com/org/**, https://github.com/org/repo, FULL_URL",
+            "*.google.com, https://mail.google.com/inbox, DOMAIN",
+            "google.com, https://mail.google.com, SUBDOMAIN_SUFFIX",
+            "*.google.com, https://google.com, BARE_DOMAIN",
+            "google.com, https://example.com, NONE"
+        })
+        @DisplayName("names the check that matched")
+        void namesBranch(String pattern, String url, PatternMatcher.Branch expected) {
+            var compiled = PatternMatcher.compile(pattern);
+            var parsed = ParsedUrl.parse(url);
+
+            assertThat(compiled.explain(parsed)).isEqualTo(expected);
+            assertThat(compiled.matches(parsed)).isEqualTo(expected.matched());
+        }
+    }
 }